@@ -0,0 +1,66 @@
+package com.sistemagestionapp.demojava.jmh;
+
+import com.sistemagestionapp.demojava.busqueda.IndiceTrigramas;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consultas al índice de trigramas sin Spring ni base de datos, con un catálogo sintético.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class BusquedaBenchmark {
+
+    private static final String[] PALABRAS = {
+            "camiseta", "pantalón", "zapatilla", "chaqueta", "bolso", "reloj", "gafas", "gorra",
+            "roja", "azul", "negra", "blanca", "verde", "algodón", "cuero", "deportiva",
+            "hombre", "mujer", "niño", "verano", "invierno", "oferta", "premium", "clásico"
+    };
+
+    @Param({"1000000"})
+    public int productos;
+
+    @Param({"camiseta azul", "cuer", "ga", "zapatilla deportiva negra", "oferta premium"})
+    public String consulta;
+
+    private IndiceTrigramas indice;
+
+    @Setup(Level.Trial)
+    public void cargar() {
+        Random random = new Random(42);
+        indice = new IndiceTrigramas();
+        for (int i = 0; i < productos; i++) {
+            String nombre = PALABRAS[random.nextInt(8)] + " " + PALABRAS[8 + random.nextInt(8)] + " " + i;
+            String descripcion = PALABRAS[8 + random.nextInt(16)] + " " + PALABRAS[random.nextInt(PALABRAS.length)];
+            indice.indexar(String.valueOf(i), nombre, descripcion, random.nextInt(10_000) / 100.0);
+        }
+    }
+
+    @Benchmark
+    public List<IndiceTrigramas.Resultado> top20() {
+        return indice.buscar(consulta, null, null, 20);
+    }
+
+    @Benchmark
+    public List<IndiceTrigramas.Resultado> top20RangoPrecio() {
+        return indice.buscar(consulta, 10.0, 20.0, 20);
+    }
+}
@@ -0,0 +1,61 @@
+package com.sistemagestionapp.demojava.jmh;
+
+import com.sistemagestionapp.demojava.DemoJavaApplication;
+import com.sistemagestionapp.demojava.model.Producto;
+import com.sistemagestionapp.demojava.service.ProductoService;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Arranca la aplicación completa sobre H2 en memoria para los benchmarks.
+ * Cada arranque usa una base de datos distinta para que no se mezclen datos entre trials.
+ */
+final class ContextoBenchmark {
+
+    private ContextoBenchmark() {
+    }
+
+    static ConfigurableApplicationContext arrancar(Map<String, Object> propiedades) {
+        Map<String, Object> props = new LinkedHashMap<>();
+        props.put("spring.profiles.active", "h2");
+        props.put("app.db.name", "bench_" + UUID.randomUUID().toString().replace("-", ""));
+        props.put("server.port", "0");
+        props.put("logging.level.root", "WARN");
+        props.putAll(propiedades);
+
+        // Como argumentos de línea de comandos para que tengan prioridad sobre application*.properties
+        String[] args = props.entrySet().stream()
+                .map(e -> "--" + e.getKey() + "=" + e.getValue())
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(DemoJavaApplication.class).run(args);
+    }
+
+    /**
+     * Inserta {@code filas} productos de prueba y devuelve sus ids.
+     */
+    static List<String> sembrarProductos(ProductoService productoService, int filas) throws Exception {
+        List<Producto> lote = new ArrayList<>(1000);
+        for (int i = 0; i < filas; i++) {
+            Producto p = new Producto();
+            p.setNombre("Producto " + i);
+            p.setDescripcion("Descripción del producto de prueba número " + i);
+            p.setPrecio(1 + (i % 1000) / 10.0);
+            lote.add(p);
+            if (lote.size() == 1000) {
+                productoService.guardarLote(lote);
+                lote = new ArrayList<>(1000);
+            }
+        }
+        productoService.guardarLote(lote);
+
+        List<String> ids = new ArrayList<>(filas);
+        productoService.recorrerCatalogo(null, (id, nombre, descripcion, precio) -> ids.add(id));
+        return ids;
+    }
+}
@@ -0,0 +1,84 @@
+package com.sistemagestionapp.demojava.jmh;
+
+import com.sistemagestionapp.demojava.service.ProductoService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ProductoService contra H2 en memoria, con y sin las cachés locales.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductoServiceBenchmark {
+
+    @Param({"1000", "10000"})
+    public int filas;
+
+    @Param({"true", "false"})
+    public boolean cache;
+
+    private ConfigurableApplicationContext contexto;
+    private ProductoService productoService;
+    private List<String> ids;
+
+    @Setup(Level.Trial)
+    public void arrancar() throws Exception {
+        int entradas = cache ? 10_000 : 0;
+        contexto = ContextoBenchmark.arrancar(Map.of(
+                "app.cache.productos.max-entradas", entradas,
+                "app.cache.paginas.max-entradas", entradas));
+        productoService = contexto.getBean(ProductoService.class);
+        ids = ContextoBenchmark.sembrarProductos(productoService, filas);
+    }
+
+    @TearDown(Level.Trial)
+    public void parar() {
+        contexto.close();
+    }
+
+    private String idAleatorio() {
+        return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+
+    @Benchmark
+    public Object listarTodos() {
+        return productoService.listarTodos();
+    }
+
+    @Benchmark
+    public Object listarPrimeraPagina() {
+        return productoService.listarPagina("id", null, null, ProductoService.TAMANO_PAGINA_POR_DEFECTO);
+    }
+
+    @Benchmark
+    public Object buscarPorId() {
+        return productoService.buscarPorId(idAleatorio());
+    }
+
+    @Benchmark
+    public void guardar() {
+        productoService.guardar(idAleatorio(), "Producto editado", "Editado desde el benchmark",
+                ThreadLocalRandom.current().nextInt(1, 1000) / 10.0, null);
+    }
+}
@@ -0,0 +1,111 @@
+package com.sistemagestionapp.demojava.jmh;
+
+import com.sistemagestionapp.demojava.model.OrdenProductos;
+import com.sistemagestionapp.demojava.model.PaginaProductos;
+import com.sistemagestionapp.demojava.model.Producto;
+import com.sistemagestionapp.demojava.model.ProductoResumen;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.servlet.DispatcherServlet;
+import org.springframework.web.servlet.View;
+import org.thymeleaf.spring6.view.ThymeleafViewResolver;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renderizado de productos.html con la misma vista Thymeleaf que usa Spring MVC,
+ * pero sin Tomcat ni base de datos: el modelo se construye en memoria.
+ * "renderizarConTablaCacheada" es el caso de un acierto en la caché de la tabla:
+ * el HTML de las filas ya está hecho y la página solo lo inserta.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RenderizadoProductosBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int filas;
+
+    private ConfigurableApplicationContext contexto;
+    private MockServletContext servletContext;
+    private View vista;
+    private Map<String, Object> modelo;
+    private Map<String, Object> modeloConTabla;
+
+    @Setup(Level.Trial)
+    public void arrancar() throws Exception {
+        contexto = ContextoBenchmark.arrancar(Map.of());
+        servletContext = new MockServletContext();
+        vista = contexto.getBean(ThymeleafViewResolver.class).resolveViewName("productos", Locale.getDefault());
+
+        List<ProductoResumen> productos = new ArrayList<>(filas);
+        for (int i = 0; i < filas; i++) {
+            productos.add(new ProductoResumen((long) i, "Producto " + i, 1 + (i % 1000) / 10.0, 0L));
+        }
+        PaginaProductos pagina = new PaginaProductos(productos, OrdenProductos.ID, filas, "c2lndWllbnRl", null);
+
+        modelo = new HashMap<>();
+        modelo.put("pagina", pagina);
+        modelo.put("productos", productos);
+        modelo.put("producto", new Producto());
+
+        // la tabla renderizada una vez, como la guarda TablaProductos
+        View fragmento = contexto.getBean(ThymeleafViewResolver.class)
+                .resolveViewName("fragmentos/tabla-productos :: tabla", Locale.getDefault());
+        MockHttpServletResponse respuestaTabla = new MockHttpServletResponse();
+        fragmento.render(new HashMap<>(modelo), peticion(), respuestaTabla);
+        modeloConTabla = new HashMap<>(modelo);
+        modeloConTabla.put("tablaHtml", respuestaTabla.getContentAsString());
+    }
+
+    @TearDown(Level.Trial)
+    public void parar() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public int renderizar() throws Exception {
+        return renderizar(modelo);
+    }
+
+    @Benchmark
+    public int renderizarConTablaCacheada() throws Exception {
+        return renderizar(modeloConTabla);
+    }
+
+    private int renderizar(Map<String, Object> datos) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        vista.render(new HashMap<>(datos), peticion(), response);
+        return response.getContentAsByteArray().length;
+    }
+
+    private MockHttpServletRequest peticion() {
+        MockHttpServletRequest request = new MockHttpServletRequest(servletContext, "GET", "/productos");
+        request.setAttribute(DispatcherServlet.WEB_APPLICATION_CONTEXT_ATTRIBUTE, (WebApplicationContext) contexto);
+        return request;
+    }
+}
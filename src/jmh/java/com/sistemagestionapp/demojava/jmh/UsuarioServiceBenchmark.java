@@ -0,0 +1,75 @@
+package com.sistemagestionapp.demojava.jmh;
+
+import com.sistemagestionapp.demojava.model.Usuario;
+import com.sistemagestionapp.demojava.service.UsuarioService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Camino del login: loadUserByUsername solo y seguido de la comprobación de la
+ * contraseña con el PasswordEncoder configurado (BCrypt en su pool acotado).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UsuarioServiceBenchmark {
+
+    private static final String CORREO = "bench@bench.com";
+    private static final String PASSWORD = "secreto";
+
+    @Param({"true", "false"})
+    public boolean cache;
+
+    @Param({"10"})
+    public int costeBcrypt;
+
+    private ConfigurableApplicationContext contexto;
+    private UsuarioService usuarioService;
+    private PasswordEncoder passwordEncoder;
+
+    @Setup(Level.Trial)
+    public void arrancar() {
+        contexto = ContextoBenchmark.arrancar(Map.of(
+                "app.cache.usuarios.enabled", cache,
+                "app.password.bcrypt.coste", costeBcrypt));
+        usuarioService = contexto.getBean(UsuarioService.class);
+        passwordEncoder = contexto.getBean(PasswordEncoder.class);
+        usuarioService.registrarUsuario(new Usuario("Bench", CORREO, PASSWORD));
+    }
+
+    @TearDown(Level.Trial)
+    public void parar() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public UserDetails loadUserByUsername() {
+        return usuarioService.loadUserByUsername(CORREO);
+    }
+
+    @Benchmark
+    public boolean login() {
+        UserDetails usuario = usuarioService.loadUserByUsername(CORREO);
+        return passwordEncoder.matches(PASSWORD, usuario.getPassword());
+    }
+}
@@ -1,18 +1,24 @@
 package com.sistemagestionapp.demojava;
 
+import com.sistemagestionapp.demojava.model.Producto;
 import com.sistemagestionapp.demojava.model.Usuario;
 import com.sistemagestionapp.demojava.model.mongo.UsuarioMongo;
+import com.sistemagestionapp.demojava.repository.ProductosFragmentados;
 import com.sistemagestionapp.demojava.repository.UsuarioRepository;
 import com.sistemagestionapp.demojava.repository.mongo.UsuarioMongoRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.context.annotation.Profile;
 
+import javax.sql.DataSource;
+
 
 @Configuration
 @Profile("!mongo")
@@ -26,9 +32,11 @@ public class DataInitializer {
 
     @Bean
     public CommandLineRunner initUsers(UsuarioRepository usuarioRepository,
-                                       UsuarioMongoRepository usuarioMongoRepository,
+                                       ObjectProvider<UsuarioMongoRepository> usuarioMongoRepositoryProvider,
                                        PasswordEncoder passwordEncoder) {
         return args -> {
+            // con app.mongo.enabled=false (perfil h2) no hay repositorios Mongo
+            UsuarioMongoRepository usuarioMongoRepository = usuarioMongoRepositoryProvider.getIfAvailable();
 
             // ======================
             // 1) Usuario admin en SQL (MySQL / Postgres)
@@ -50,7 +58,7 @@ public class DataInitializer {
             // ======================
             // 2) Usuario admin en Mongo (solo si DB_ENGINE = mongo)
             // ======================
-            if ("mongo".equalsIgnoreCase(dbEngine)) {
+            if ("mongo".equalsIgnoreCase(dbEngine) && usuarioMongoRepository != null) {
                 String correoAdminMongo = "admin@mongo.com";
 
                 // Usamos el count() genérico del repositorio
@@ -72,4 +80,50 @@ public class DataInitializer {
             }
         };
     }
-}
\ No newline at end of file
+
+    /**
+     * Los productos usaban IDENTITY y ahora usan la secuencia producto_seq (ver {@link Producto}).
+     * En una base de datos que ya tenía productos la secuencia empieza en 1 y chocaría con
+     * los ids existentes, así que al arrancar se adelanta por encima del id máximo.
+     * Con el optimizador pooled Hibernate usa los ids (valor - bloque, valor], por eso el
+     * siguiente valor tiene que ser al menos max(id) + 1 + bloque.
+     * Con fragmentos la secuencia que cuenta es la del fragmento 0 y el máximo, el de todos.
+     */
+    @Bean
+    public CommandLineRunner alinearSecuenciaProductos(ProductosFragmentados productos,
+                                                       DataSource dataSource) {
+        return args -> {
+            Long maxId = productos.maxId();
+            if (maxId == null) {
+                return;
+            }
+            long siguiente = maxId + 1 + Producto.TAMANO_BLOQUE_IDS;
+            JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+
+            int ajustada;
+            if ("postgres".equalsIgnoreCase(dbEngine) || "postgresql".equalsIgnoreCase(dbEngine)) {
+                // setval(n) hace que el próximo nextval devuelva n + incremento
+                Long actual = jdbc.queryForObject("select last_value from producto_seq", Long.class);
+                ajustada = actual != null && actual + Producto.TAMANO_BLOQUE_IDS >= siguiente ? 0 : 1;
+                if (ajustada > 0) {
+                    jdbc.queryForObject("select setval('producto_seq', ?)", Long.class, siguiente - Producto.TAMANO_BLOQUE_IDS);
+                }
+            } else if ("h2".equalsIgnoreCase(dbEngine)) {
+                Long actual = jdbc.queryForObject(
+                        "select base_value from information_schema.sequences where sequence_name = 'PRODUCTO_SEQ'",
+                        Long.class);
+                ajustada = actual != null && actual >= siguiente ? 0 : 1;
+                if (ajustada > 0) {
+                    jdbc.execute("alter sequence producto_seq restart with " + siguiente);
+                }
+            } else {
+                // MySQL no tiene secuencias: Hibernate la emula con la tabla producto_seq(next_val)
+                ajustada = jdbc.update("update producto_seq set next_val = ? where next_val < ?", siguiente, siguiente);
+            }
+
+            if (ajustada > 0) {
+                log.info("ℹ️ Secuencia producto_seq adelantada a {} (max id = {})", siguiente, maxId);
+            }
+        };
+    }
+}
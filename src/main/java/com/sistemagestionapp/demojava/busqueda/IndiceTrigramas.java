@@ -0,0 +1,440 @@
+package com.sistemagestionapp.demojava.busqueda;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Índice invertido de trigramas en memoria para nombre y descripción de productos.
+ *
+ * <p>Cada producto recibe un número de documento interno (int) y cada trigrama una
+ * lista de esos números, ordenada y en un {@code int[]}, sin objetos por entrada. Una
+ * búsqueda interseca bajo demanda las listas de los trigramas de la consulta y para en
+ * cuanto tiene los resultados pedidos. Las palabras se indexan como en pg_trgm, con dos espacios delante y uno
+ * detrás: así una consulta de 1 o 2 letras busca por prefijo de palabra y una de 3 o más
+ * busca la subcadena.</p>
+ *
+ * <p>Modificar o borrar no toca las listas: el documento viejo se marca como muerto y el
+ * nuevo se añade al final, con lo que las listas siguen ordenadas. Cuando los muertos
+ * pasan de la mitad se compacta. Lecturas y escrituras van con un ReadWriteLock.</p>
+ */
+public class IndiceTrigramas {
+
+    /**
+     * Un resultado: id del producto, nombre, precio (NaN si no tiene) y puntuación (2 = en el
+     * nombre, 1 = en la descripción).
+     */
+    public record Resultado(String id, String nombre, double precio, int puntuacion) {
+    }
+
+    private static final int CAMPO_NOMBRE = 0;
+    private static final int CAMPO_DESCRIPCION = 1;
+    private static final Pattern NO_ALFANUMERICO = Pattern.compile("[^\\p{Alnum}]+");
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+    private static final int[] VACIA = new int[0];
+
+    /** Lista de documentos de un trigrama: int[] creciente con su tamaño ocupado. */
+    private static final class Postings {
+        int[] docs = new int[4];
+        int tamano;
+
+        void anadir(int doc) {
+            // un mismo trigrama puede salir dos veces en el texto: se guarda una vez
+            if (tamano > 0 && docs[tamano - 1] == doc) {
+                return;
+            }
+            if (tamano == docs.length) {
+                docs = Arrays.copyOf(docs, tamano + (tamano >> 1) + 1);
+            }
+            docs[tamano++] = doc;
+        }
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Postings> postings = new HashMap<>();
+    private final Map<String, Integer> docPorId = new HashMap<>();
+
+    private String[] ids = new String[1024];
+    private String[] nombres = new String[1024];
+    private double[] precios = new double[1024];
+    private final BitSet muertos = new BitSet();
+    private int numDocs;
+    private int numMuertos;
+
+    // Durante la carga inicial: ids borrados que el recorrido del catálogo aún puede traer
+    private Set<String> borradosEnCarga;
+
+    /**
+     * Empieza la carga inicial: a partir de aquí {@link #indexarSiFalta} no resucita los
+     * productos que se borren mientras tanto.
+     */
+    public void iniciarCarga() {
+        lock.writeLock().lock();
+        try {
+            borradosEnCarga = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void terminarCarga() {
+        lock.writeLock().lock();
+        try {
+            borradosEnCarga = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Añade o sustituye el producto {@code id}. Sin precio, {@code precio} es NaN.
+     */
+    public void indexar(String id, String nombre, String descripcion, double precio) {
+        lock.writeLock().lock();
+        try {
+            Integer anterior = docPorId.get(id);
+            if (anterior != null) {
+                marcarMuerto(anterior);
+            }
+            int doc = nuevoDoc(id, nombre, precio);
+            docPorId.put(id, doc);
+            anadirTrigramas(doc, CAMPO_NOMBRE, nombre);
+            anadirTrigramas(doc, CAMPO_DESCRIPCION, descripcion);
+            compactarSiHaceFalta();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Añade el producto solo si no está ya ni se ha borrado durante la carga (la carga
+     * inicial va en paralelo con las escrituras, y lo que escribe el servicio es más nuevo
+     * que lo que trae el recorrido del catálogo).
+     */
+    public void indexarSiFalta(String id, String nombre, String descripcion, double precio) {
+        lock.writeLock().lock();
+        try {
+            if (!docPorId.containsKey(id) && (borradosEnCarga == null || !borradosEnCarga.contains(id))) {
+                int doc = nuevoDoc(id, nombre, precio);
+                docPorId.put(id, doc);
+                anadirTrigramas(doc, CAMPO_NOMBRE, nombre);
+                anadirTrigramas(doc, CAMPO_DESCRIPCION, descripcion);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void eliminar(String id) {
+        lock.writeLock().lock();
+        try {
+            if (borradosEnCarga != null) {
+                borradosEnCarga.add(id);
+            }
+            Integer doc = docPorId.remove(id);
+            if (doc != null) {
+                marcarMuerto(doc);
+                compactarSiHaceFalta();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Productos cuyo nombre o descripción contienen todos los trigramas de {@code texto},
+     * con precio entre {@code precioMin} y {@code precioMax} (null = sin límite). Devuelve
+     * como mucho {@code limite}: primero los que casan en el nombre y después los que solo
+     * casan en la descripción, cada grupo en el orden en que se indexaron.
+     *
+     * <p>Las intersecciones se recorren bajo demanda y se para al tener {@code limite}
+     * resultados, así que el coste depende de cuántos candidatos hay que mirar para llenar
+     * la respuesta, no de cuántos productos casan en total.</p>
+     */
+    public List<Resultado> buscar(String texto, Double precioMin, Double precioMax, int limite) {
+        long[] trigramas = trigramasConsulta(texto);
+        if (trigramas.length == 0 || limite <= 0) {
+            return List.of();
+        }
+        double min = precioMin == null ? Double.NEGATIVE_INFINITY : precioMin;
+        double max = precioMax == null ? Double.POSITIVE_INFINITY : precioMax;
+
+        lock.readLock().lock();
+        try {
+            List<Resultado> resultados = new ArrayList<>(Math.min(limite, 64));
+            int[] enNombre = new int[limite];
+            int n = 0;
+
+            Interseccion nombre = interseccion(trigramas, CAMPO_NOMBRE);
+            for (int doc = nombre.siguiente(); doc >= 0 && n < limite; doc = nombre.siguiente()) {
+                if (aceptable(doc, min, max)) {
+                    enNombre[n++] = doc;
+                    resultados.add(new Resultado(ids[doc], nombres[doc], precios[doc], 2));
+                }
+            }
+
+            Interseccion descripcion = interseccion(trigramas, CAMPO_DESCRIPCION);
+            for (int doc = descripcion.siguiente(); doc >= 0 && resultados.size() < limite; doc = descripcion.siguiente()) {
+                // enNombre está ordenado: los que ya salieron por el nombre no se repiten
+                if (aceptable(doc, min, max) && Arrays.binarySearch(enNombre, 0, n, doc) < 0) {
+                    resultados.add(new Resultado(ids[doc], nombres[doc], precios[doc], 1));
+                }
+            }
+            return resultados;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // un producto sin precio (NaN) solo sale si no se filtra por precio
+    private boolean aceptable(int doc, double min, double max) {
+        if (muertos.get(doc)) {
+            return false;
+        }
+        double precio = precios[doc];
+        return Double.isNaN(precio)
+                ? min == Double.NEGATIVE_INFINITY && max == Double.POSITIVE_INFINITY
+                : precio >= min && precio <= max;
+    }
+
+    public int getTamano() {
+        lock.readLock().lock();
+        try {
+            return docPorId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getTrigramas() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // --- intersección de listas ---
+
+    /**
+     * Recorre bajo demanda los documentos presentes en todas las listas. Cuando una lista
+     * salta por encima del candidato, el candidato pasa a ser ese valor y las demás listas
+     * avanzan hasta él con búsqueda exponencial; así los tramos sin coincidencias se saltan
+     * en lugar de recorrerse (leapfrog).
+     */
+    private static final class Interseccion {
+        private final int[][] listas;
+        private final int[] tamanos;
+        private final int[] posiciones;
+        private int siguienteCandidato;
+
+        Interseccion(int[][] listas, int[] tamanos) {
+            this.listas = listas;
+            this.tamanos = tamanos;
+            this.posiciones = new int[listas.length];
+        }
+
+        /** Siguiente documento común, o -1 si no quedan. */
+        int siguiente() {
+            int candidato = siguienteCandidato;
+            int iguales = 0;
+            int t = 0;
+            while (iguales < listas.length) {
+                int pos = buscarDesde(listas[t], posiciones[t], tamanos[t], candidato);
+                if (pos >= tamanos[t]) {
+                    siguienteCandidato = Integer.MAX_VALUE; // una lista se ha acabado: no hay más comunes
+                    posiciones[t] = pos;
+                    return -1;
+                }
+                posiciones[t] = pos;
+                int valor = listas[t][pos];
+                if (valor == candidato) {
+                    iguales++;
+                } else {
+                    candidato = valor;
+                    iguales = 1;
+                }
+                t = t + 1 == listas.length ? 0 : t + 1;
+            }
+            siguienteCandidato = candidato + 1;
+            return candidato;
+        }
+    }
+
+    private static final Interseccion VACIO = new Interseccion(new int[][]{VACIA}, new int[]{0});
+
+    private Interseccion interseccion(long[] trigramas, int campo) {
+        int[][] listas = new int[trigramas.length][];
+        int[] tamanos = new int[trigramas.length];
+        for (int t = 0; t < trigramas.length; t++) {
+            Postings p = postings.get(clave(trigramas[t], campo));
+            if (p == null) {
+                return VACIO;
+            }
+            listas[t] = p.docs;
+            tamanos[t] = p.tamano;
+        }
+        return new Interseccion(listas, tamanos);
+    }
+
+    /** Primera posición >= desde con valor >= doc: búsqueda exponencial y luego binaria. */
+    private static int buscarDesde(int[] lista, int desde, int tamano, int doc) {
+        int salto = 1;
+        int hasta = desde;
+        while (hasta < tamano && lista[hasta] < doc) {
+            desde = hasta + 1;
+            hasta += salto;
+            salto <<= 1;
+        }
+        int pos = Arrays.binarySearch(lista, desde, Math.min(hasta + 1, tamano), doc);
+        return pos >= 0 ? pos : -pos - 1;
+    }
+
+    // --- documentos ---
+
+    private int nuevoDoc(String id, String nombre, double precio) {
+        if (numDocs == ids.length) {
+            int nuevo = numDocs + (numDocs >> 1);
+            ids = Arrays.copyOf(ids, nuevo);
+            nombres = Arrays.copyOf(nombres, nuevo);
+            precios = Arrays.copyOf(precios, nuevo);
+        }
+        ids[numDocs] = id;
+        nombres[numDocs] = nombre == null ? "" : nombre;
+        precios[numDocs] = precio;
+        return numDocs++;
+    }
+
+    private void marcarMuerto(int doc) {
+        muertos.set(doc);
+        ids[doc] = null;
+        nombres[doc] = null;
+        numMuertos++;
+    }
+
+    private void anadirTrigramas(int doc, int campo, String texto) {
+        for (long trigrama : trigramasTexto(texto)) {
+            postings.computeIfAbsent(clave(trigrama, campo), k -> new Postings()).anadir(doc);
+        }
+    }
+
+    /**
+     * Renumera los documentos vivos de forma consecutiva y quita los muertos de todas las
+     * listas. La renumeración respeta el orden, así que las listas siguen ordenadas.
+     */
+    private void compactarSiHaceFalta() {
+        if (numMuertos < 1024 || numMuertos * 2 < numDocs) {
+            return;
+        }
+        int[] nuevoNumero = new int[numDocs];
+        int vivos = 0;
+        for (int doc = 0; doc < numDocs; doc++) {
+            if (muertos.get(doc)) {
+                nuevoNumero[doc] = -1;
+            } else {
+                nuevoNumero[doc] = vivos;
+                ids[vivos] = ids[doc];
+                nombres[vivos] = nombres[doc];
+                precios[vivos] = precios[doc];
+                vivos++;
+            }
+        }
+        Arrays.fill(ids, vivos, numDocs, null);
+        Arrays.fill(nombres, vivos, numDocs, null);
+
+        postings.values().removeIf(p -> {
+            int n = 0;
+            for (int k = 0; k < p.tamano; k++) {
+                int nuevo = nuevoNumero[p.docs[k]];
+                if (nuevo >= 0) {
+                    p.docs[n++] = nuevo;
+                }
+            }
+            p.tamano = n;
+            if (n < p.docs.length / 2) {
+                p.docs = Arrays.copyOf(p.docs, Math.max(n, 4));
+            }
+            return n == 0;
+        });
+
+        docPorId.replaceAll((id, doc) -> nuevoNumero[doc]);
+        muertos.clear();
+        numDocs = vivos;
+        numMuertos = 0;
+    }
+
+    // --- trigramas ---
+
+    private static long clave(long trigrama, int campo) {
+        return trigrama | ((long) campo << 48);
+    }
+
+    static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        String sinAcentos = MARCAS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        return NO_ALFANUMERICO.matcher(sinAcentos.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    /** Trigramas de cada palabra con relleno "  palabra ", sin repetir. */
+    private static long[] trigramasTexto(String texto) {
+        String normalizado = normalizar(texto);
+        if (normalizado.isEmpty()) {
+            return new long[0];
+        }
+        long[] trigramas = new long[normalizado.length() * 3 + 3];
+        int n = 0;
+        for (String palabra : normalizado.split(" ")) {
+            String conRelleno = "  " + palabra + " ";
+            for (int i = 0; i + 3 <= conRelleno.length(); i++) {
+                trigramas[n++] = trigrama(conRelleno, i);
+            }
+        }
+        return Arrays.stream(trigramas, 0, n).sorted().distinct().toArray();
+    }
+
+    /**
+     * Trigramas de la consulta: una palabra de 1 o 2 letras se busca como prefijo (con el
+     * relleno de delante); una de 3 o más, como subcadena (sin relleno). Salen alternando
+     * palabras (1º de cada una, 2º de cada una...): las listas de una misma palabra casi
+     * coinciden, y así la intersección compara pronto listas de palabras distintas.
+     */
+    private static long[] trigramasConsulta(String texto) {
+        String normalizado = normalizar(texto);
+        if (normalizado.isEmpty()) {
+            return new long[0];
+        }
+        List<String> palabras = new ArrayList<>();
+        int largo = 0;
+        for (String palabra : normalizado.split(" ")) {
+            String s = palabra.length() < 3 ? "  " + palabra : palabra;
+            palabras.add(s);
+            largo = Math.max(largo, s.length() - 2);
+        }
+        List<Long> trigramas = new ArrayList<>();
+        for (int i = 0; i < largo; i++) {
+            for (String s : palabras) {
+                if (i + 3 <= s.length()) {
+                    trigramas.add(trigrama(s, i));
+                }
+            }
+        }
+        return trigramas.stream().mapToLong(Long::longValue).distinct().toArray();
+    }
+
+    private static long trigrama(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+}
@@ -0,0 +1,136 @@
+package com.sistemagestionapp.demojava.cache;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Agrupa las llamadas concurrentes con la misma clave (single-flight): la primera hace la
+ * carga en su hilo y las que llegan mientras tanto esperan y reciben el mismo resultado, o
+ * la misma excepción, en lugar de lanzar otra consulta igual. No guarda nada: en cuanto la
+ * carga termina, la siguiente llamada vuelve a cargar (para eso está {@link CacheLocal}).
+ *
+ * <p>Cada espera está acotada por el timeout. Si la carga en curso tarda más, la llamada deja
+ * de esperarla, la suelta para que nadie más se le una y empieza una nueva (a la que se
+ * juntan las que lleguen después). {@link #olvidar} hace lo mismo tras una escritura, para
+ * que nadie reciba un resultado que se empezó a leer antes de ella.</p>
+ *
+ * <p>El resultado es el mismo objeto para todas las llamadas agrupadas: no se debe modificar.
+ * Con timeout 0 queda desactivado y {@link #ejecutar} llama siempre al cargador.</p>
+ */
+public class AgrupadorLlamadas<K, V> {
+
+    private final String nombre;
+    private final long timeoutNanos;
+    private final Map<K, CompletableFuture<V>> enCurso = new ConcurrentHashMap<>();
+
+    private final LongAdder ejecutadas = new LongAdder();
+    private final LongAdder agrupadas = new LongAdder();
+    private final LongAdder agotadas = new LongAdder();
+
+    public AgrupadorLlamadas(String nombre, long timeoutMs) {
+        this.nombre = nombre;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, timeoutMs));
+    }
+
+    public boolean isActivo() {
+        return timeoutNanos > 0;
+    }
+
+    public V ejecutar(K clave, Function<? super K, ? extends V> cargador) {
+        if (!isActivo()) {
+            return cargador.apply(clave);
+        }
+
+        while (true) {
+            CompletableFuture<V> propia = new CompletableFuture<>();
+            CompletableFuture<V> existente = enCurso.putIfAbsent(clave, propia);
+            if (existente == null) {
+                return cargar(clave, propia, cargador);
+            }
+            try {
+                V valor = existente.get(timeoutNanos, TimeUnit.NANOSECONDS);
+                agrupadas.increment();
+                return valor;
+            } catch (ExecutionException e) {
+                agrupadas.increment();
+                throw relanzable(e.getCause());
+            } catch (TimeoutException e) {
+                agotadas.increment();
+                enCurso.remove(clave, existente);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrumpido esperando la carga de " + nombre + ": " + clave, e);
+            }
+        }
+    }
+
+    private V cargar(K clave, CompletableFuture<V> propia, Function<? super K, ? extends V> cargador) {
+        ejecutadas.increment();
+        try {
+            V valor = cargador.apply(clave);
+            propia.complete(valor);
+            return valor;
+        } catch (RuntimeException | Error e) {
+            propia.completeExceptionally(e);
+            throw e;
+        } finally {
+            enCurso.remove(clave, propia);
+        }
+    }
+
+    private static RuntimeException relanzable(Throwable causa) {
+        if (causa instanceof RuntimeException r) {
+            return r;
+        }
+        if (causa instanceof Error e) {
+            throw e;
+        }
+        return new IllegalStateException(causa);
+    }
+
+    /** Las llamadas que lleguen a partir de ahora con esta clave no se unen a la carga en curso. */
+    public void olvidar(K clave) {
+        enCurso.remove(clave);
+    }
+
+    public void olvidarTodo() {
+        enCurso.clear();
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public int getEnCurso() {
+        return enCurso.size();
+    }
+
+    /** Cargas hechas de verdad (una por grupo de llamadas). */
+    public long getEjecutadas() {
+        return ejecutadas.sum();
+    }
+
+    /** Llamadas que se ahorraron la consulta porque recibieron el resultado de otra. */
+    public long getAgrupadas() {
+        return agrupadas.sum();
+    }
+
+    /** Esperas que superaron el timeout y acabaron lanzando su propia carga. */
+    public long getAgotadas() {
+        return agotadas.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "AgrupadorLlamadas[" + nombre + ", enCurso=" + getEnCurso()
+                + ", ejecutadas=" + getEjecutadas()
+                + ", agrupadas=" + getAgrupadas()
+                + ", agotadas=" + getAgotadas() + "]";
+    }
+}
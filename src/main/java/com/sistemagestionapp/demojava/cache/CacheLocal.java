@@ -0,0 +1,140 @@
+package com.sistemagestionapp.demojava.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Caché en memoria acotada por número de entradas (LRU) y por tiempo de vida (TTL),
+ * con contadores de aciertos, fallos y expulsiones.
+ *
+ * <p>La carga se hace fuera del candado. Para no volver a meter un valor viejo que
+ * se leyó justo antes de una escritura, cada invalidación incrementa una generación
+ * y solo se guardan las cargas que empezaron en la generación actual.</p>
+ *
+ * <p>Si {@code maxEntradas} o el TTL son 0, la caché queda desactivada y
+ * {@link #obtener(Object, Function)} llama siempre al cargador.</p>
+ */
+public class CacheLocal<K, V> {
+
+    private final String nombre;
+    private final int maxEntradas;
+    private final long ttlNanos;
+    private final Map<K, Entrada<V>> entradas;
+
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder expulsiones = new LongAdder();
+
+    // protegido por "this"
+    private long generacion;
+
+    public CacheLocal(String nombre, int maxEntradas, long ttlSegundos) {
+        this.nombre = nombre;
+        this.maxEntradas = Math.max(0, maxEntradas);
+        this.ttlNanos = Math.max(0, ttlSegundos) * 1_000_000_000L;
+        this.entradas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entrada<V>> eldest) {
+                if (size() > CacheLocal.this.maxEntradas) {
+                    expulsiones.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public boolean isActiva() {
+        return maxEntradas > 0 && ttlNanos > 0;
+    }
+
+    /**
+     * Devuelve el valor cacheado o lo carga con {@code cargador} (read-through).
+     * Los valores null no se cachean.
+     */
+    public V obtener(K clave, Function<? super K, ? extends V> cargador) {
+        if (!isActiva()) {
+            return cargador.apply(clave);
+        }
+
+        long generacionLectura;
+        synchronized (this) {
+            Entrada<V> entrada = entradas.get(clave);
+            if (entrada != null) {
+                if (entrada.caducaEn - System.nanoTime() > 0) {
+                    aciertos.increment();
+                    return entrada.valor;
+                }
+                entradas.remove(clave);
+                expulsiones.increment();
+            }
+            generacionLectura = generacion;
+        }
+
+        fallos.increment();
+        V valor = cargador.apply(clave);
+
+        if (valor != null) {
+            synchronized (this) {
+                if (generacion == generacionLectura) {
+                    entradas.put(clave, new Entrada<>(valor, System.nanoTime() + ttlNanos));
+                }
+            }
+        }
+        return valor;
+    }
+
+    public synchronized void invalidar(K clave) {
+        generacion++;
+        entradas.remove(clave);
+    }
+
+    public synchronized void invalidarTodo() {
+        generacion++;
+        entradas.clear();
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public synchronized int getTamano() {
+        return entradas.size();
+    }
+
+    public long getAciertos() {
+        return aciertos.sum();
+    }
+
+    public long getFallos() {
+        return fallos.sum();
+    }
+
+    public long getExpulsiones() {
+        return expulsiones.sum();
+    }
+
+    /**
+     * Proporción de aciertos sobre el total de consultas (0 si aún no hay ninguna).
+     */
+    public double getTasaAciertos() {
+        long a = getAciertos();
+        long total = a + getFallos();
+        return total == 0 ? 0.0 : (double) a / total;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheLocal[" + nombre + ", tamano=" + getTamano()
+                + ", aciertos=" + getAciertos()
+                + ", fallos=" + getFallos()
+                + ", expulsiones=" + getExpulsiones()
+                + ", tasaAciertos=" + String.format(Locale.ROOT, "%.3f", getTasaAciertos()) + "]";
+    }
+
+    private record Entrada<V>(V valor, long caducaEn) {
+    }
+}
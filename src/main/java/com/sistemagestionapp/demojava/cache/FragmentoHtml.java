@@ -0,0 +1,32 @@
+package com.sistemagestionapp.demojava.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Trozo de HTML ya renderizado, guardado como texto (para incrustarlo en la página), en
+ * UTF-8 y comprimido con gzip, para servirlo desde caché sin volver a pasar por la
+ * plantilla ni codificar o comprimir en cada petición.
+ */
+public record FragmentoHtml(String html, byte[] bytes, byte[] gzip) {
+
+    public static FragmentoHtml de(String html) {
+        byte[] bytes = html.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream salida = new ByteArrayOutputStream(Math.max(64, bytes.length / 4));
+        // se comprime una vez y se sirve muchas: merece la pena el nivel máximo
+        try (GZIPOutputStream gz = new GZIPOutputStream(salida) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gz.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new FragmentoHtml(html, bytes, salida.toByteArray());
+    }
+}
@@ -0,0 +1,268 @@
+package com.sistemagestionapp.demojava.cambios;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reparte mensajes a muchos clientes Server-Sent Events sin un hilo por cliente.
+ *
+ * <p>Cada conexión es un {@link SseEmitter} (petición asíncrona: mientras espera no ocupa
+ * ningún hilo de Tomcat) con su propio buffer acotado. Publicar solo encola en los
+ * buffers; unos pocos hilos de envío los vacían. Un cliente lento no frena a los demás:
+ * si su buffer se llena se descarta lo pendiente y se le manda un único mensaje
+ * {@value #RECARGAR} para que vuelva a pedir la página, en vez de dejar crecer la memoria.
+ * Un cliente que deja de leer del todo sí retiene un hilo de envío mientras la escritura
+ * esté bloqueada, como mucho el timeout de conexión de Tomcat; por eso hay varios.</p>
+ *
+ * <p>Los últimos mensajes se guardan en un historial circular. Un navegador que se
+ * reconecta envía Last-Event-ID y recibe lo que se perdió; si ya no está en el historial
+ * (o el id es de antes de un reinicio) recibe {@value #RECARGAR}.</p>
+ */
+public class DifusorSse implements AutoCloseable {
+
+    public static final String RECARGAR = "recargar";
+
+    private static final Logger log = LoggerFactory.getLogger(DifusorSse.class);
+
+    /** Un mensaje: {@code evento} null es un comentario (latido) que no va al historial. */
+    private record Mensaje(long secuencia, String evento, String datos) {
+    }
+
+    private static final Mensaje MENSAJE_RECARGAR = new Mensaje(-1, RECARGAR, "{}");
+    private static final Mensaje LATIDO = new Mensaje(-1, null, "latido");
+
+    private final int capacidadBuffer;
+    private final int maxSuscriptores;
+    private final long timeoutMs;
+    // distingue los ids de este arranque de los de uno anterior
+    private final String epoca = Long.toString(System.currentTimeMillis(), 36);
+
+    private final Set<Suscriptor> suscriptores = ConcurrentHashMap.newKeySet();
+    private final Mensaje[] historial;
+    private long siguienteSecuencia = 1;   // con el candado del historial
+
+    private final ExecutorService envio;
+    private final ScheduledExecutorService latidos;
+
+    private final LongAdder enviados = new LongAdder();
+    private final LongAdder desbordes = new LongAdder();
+    private final LongAdder rechazados = new LongAdder();
+
+    public DifusorSse(int capacidadBuffer, int maxSuscriptores, int tamanoHistorial,
+                      int hilosEnvio, long timeoutMs, long latidoMs) {
+        this.capacidadBuffer = Math.max(1, capacidadBuffer);
+        this.maxSuscriptores = Math.max(1, maxSuscriptores);
+        this.timeoutMs = timeoutMs;
+        this.historial = new Mensaje[Math.max(1, tamanoHistorial)];
+        this.envio = Executors.newFixedThreadPool(Math.max(1, hilosEnvio), hilos("sse-envio"));
+        this.latidos = Executors.newSingleThreadScheduledExecutor(hilos("sse-latido"));
+        if (latidoMs > 0) {
+            // un comentario cada poco mantiene viva la conexión en proxies y detecta clientes caídos
+            latidos.scheduleAtFixedRate(() -> suscriptores.forEach(s -> s.encolar(LATIDO)),
+                    latidoMs, latidoMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Abre una suscripción. Con {@code ultimoId} (cabecera Last-Event-ID) primero se
+     * reenvía lo que el cliente se perdió, o {@value #RECARGAR} si ya no se puede.
+     *
+     * @throws IllegalStateException si ya hay {@code maxSuscriptores} conexiones abiertas
+     */
+    public SseEmitter suscribir(String ultimoId) {
+        if (suscriptores.size() >= maxSuscriptores) {
+            rechazados.increment();
+            throw new IllegalStateException("Demasiadas suscripciones abiertas (" + maxSuscriptores + ")");
+        }
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Suscriptor suscriptor = new Suscriptor(emitter);
+        emitter.onCompletion(suscriptor::cerrar);
+        emitter.onTimeout(suscriptor::cerrar);
+        emitter.onError(e -> suscriptor.cerrar());
+
+        // con el candado del historial: ningún mensaje se publica entre el reenvío y el alta
+        synchronized (historial) {
+            if (ultimoId != null && !ultimoId.isBlank()) {
+                reenviarDesde(ultimoId.trim(), suscriptor);
+            }
+            suscriptores.add(suscriptor);
+        }
+        return emitter;
+    }
+
+    /** Publica un evento a todos los suscritos; solo encola, no escribe en ninguna conexión. */
+    public void publicar(String evento, String datos) {
+        synchronized (historial) {
+            Mensaje mensaje = new Mensaje(siguienteSecuencia++, evento, datos);
+            historial[(int) (mensaje.secuencia() % historial.length)] = mensaje;
+            for (Suscriptor suscriptor : suscriptores) {
+                suscriptor.encolar(mensaje);
+            }
+        }
+    }
+
+    /** Todos los clientes deben volver a pedir la página (p. ej. se han podido perder cambios). */
+    public void pedirRecarga() {
+        suscriptores.forEach(s -> s.encolar(MENSAJE_RECARGAR));
+    }
+
+    public int getSuscriptores() {
+        return suscriptores.size();
+    }
+
+    public long getEnviados() {
+        return enviados.sum();
+    }
+
+    public long getDesbordes() {
+        return desbordes.sum();
+    }
+
+    public long getRechazados() {
+        return rechazados.sum();
+    }
+
+    @Override
+    public void close() {
+        latidos.shutdownNow();
+        envio.shutdownNow();
+        suscriptores.forEach(s -> s.emitter.complete());
+        suscriptores.clear();
+    }
+
+    // Con el candado del historial cogido
+    private void reenviarDesde(String ultimoId, Suscriptor suscriptor) {
+        long ultima = secuencia(ultimoId);
+        long primeraGuardada = Math.max(1, siguienteSecuencia - historial.length);
+        if (ultima < primeraGuardada - 1 || ultima >= siguienteSecuencia) {
+            suscriptor.encolar(MENSAJE_RECARGAR);
+            return;
+        }
+        for (long s = ultima + 1; s < siguienteSecuencia; s++) {
+            suscriptor.encolar(historial[(int) (s % historial.length)]);
+        }
+    }
+
+    /** Secuencia del id "época-secuencia", o -1 si es de otro arranque o no se entiende. */
+    private long secuencia(String id) {
+        int guion = id.lastIndexOf('-');
+        if (guion <= 0 || !id.substring(0, guion).equals(epoca)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(id.substring(guion + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static ThreadFactory hilos(String prefijo) {
+        AtomicInteger contador = new AtomicInteger();
+        return r -> {
+            Thread hilo = new Thread(r, prefijo + "-" + contador.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        };
+    }
+
+    /** Una conexión: buffer acotado y, como mucho, una tarea de envío en marcha. */
+    private final class Suscriptor {
+        private final SseEmitter emitter;
+        private final ArrayDeque<Mensaje> buffer = new ArrayDeque<>();
+        private boolean enEnvio;
+        private boolean desbordado;
+        private boolean cerrado;
+
+        Suscriptor(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void encolar(Mensaje mensaje) {
+            synchronized (this) {
+                if (cerrado) {
+                    return;
+                }
+                if (buffer.size() >= capacidadBuffer) {
+                    // lo pendiente ya no sirve: el cliente tendrá que recargar
+                    buffer.clear();
+                    if (!desbordado) {
+                        desbordes.increment();
+                    }
+                    desbordado = true;
+                } else if (!desbordado || mensaje.evento() != null) {
+                    buffer.add(mensaje);
+                }
+                if (enEnvio) {
+                    return;
+                }
+                enEnvio = true;
+            }
+            try {
+                envio.execute(this::vaciar);
+            } catch (RuntimeException e) {
+                // el ejecutor se está cerrando
+                cerrar();
+            }
+        }
+
+        private void vaciar() {
+            while (true) {
+                Mensaje mensaje;
+                synchronized (this) {
+                    if (desbordado) {
+                        desbordado = false;
+                        mensaje = MENSAJE_RECARGAR;
+                    } else {
+                        mensaje = buffer.poll();
+                    }
+                    if (mensaje == null || cerrado) {
+                        enEnvio = false;
+                        return;
+                    }
+                }
+                try {
+                    emitter.send(evento(mensaje));
+                    enviados.increment();
+                } catch (IOException | IllegalStateException e) {
+                    // el cliente se ha ido: Tomcat avisará también por onError/onCompletion
+                    log.debug("Suscripción SSE cerrada al enviar: {}", e.getMessage());
+                    cerrar();
+                }
+            }
+        }
+
+        private SseEmitter.SseEventBuilder evento(Mensaje mensaje) {
+            if (mensaje.evento() == null) {
+                return SseEmitter.event().comment(mensaje.datos());
+            }
+            SseEmitter.SseEventBuilder evento = SseEmitter.event().name(mensaje.evento())
+                    .data(mensaje.datos(), MediaType.APPLICATION_JSON);
+            if (mensaje.secuencia() > 0) {
+                evento.id(epoca + "-" + mensaje.secuencia());
+            }
+            return evento;
+        }
+
+        void cerrar() {
+            synchronized (this) {
+                cerrado = true;
+                buffer.clear();
+            }
+            suscriptores.remove(this);
+        }
+    }
+}
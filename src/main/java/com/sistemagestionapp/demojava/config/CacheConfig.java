@@ -0,0 +1,97 @@
+package com.sistemagestionapp.demojava.config;
+
+import com.sistemagestionapp.demojava.cache.AgrupadorLlamadas;
+import com.sistemagestionapp.demojava.cache.CacheLocal;
+import com.sistemagestionapp.demojava.cache.FiltroBloom;
+import com.sistemagestionapp.demojava.cache.FragmentoHtml;
+import com.sistemagestionapp.demojava.model.CredencialesUsuario;
+import com.sistemagestionapp.demojava.model.PaginaProductos;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+/**
+ * Cachés en memoria de la aplicación. Los tamaños y TTL vienen de app.cache.*
+ * (ver application.properties); con 0 la caché correspondiente queda desactivada.
+ */
+@Configuration
+public class CacheConfig {
+
+    @Bean
+    public CacheLocal<String, Object> cacheProductos(
+            @Value("${app.cache.productos.max-entradas:10000}") int maxEntradas,
+            @Value("${app.cache.productos.ttl-segundos:300}") long ttlSegundos) {
+        return new CacheLocal<>("productos", maxEntradas, ttlSegundos);
+    }
+
+    @Bean
+    public CacheLocal<String, PaginaProductos> cachePaginasProductos(
+            @Value("${app.cache.paginas.max-entradas:500}") int maxEntradas,
+            @Value("${app.cache.paginas.ttl-segundos:60}") long ttlSegundos) {
+        return new CacheLocal<>("paginas-productos", maxEntradas, ttlSegundos);
+    }
+
+    /**
+     * Tabla de productos ya renderizada (y en gzip) por versión del catálogo y página.
+     * La clave lleva la versión y además ProductoService la vacía al escribir, así que
+     * el TTL solo sirve para soltar memoria de páginas que ya nadie pide.
+     */
+    @Bean
+    public CacheLocal<String, FragmentoHtml> cacheTablaProductos(
+            @Value("${app.cache.tabla.max-entradas:200}") int maxEntradas,
+            @Value("${app.cache.tabla.ttl-segundos:300}") long ttlSegundos) {
+        return new CacheLocal<>("tabla-productos", maxEntradas, ttlSegundos);
+    }
+
+    /**
+     * Caché de credenciales para loadUserByUsername. TTL corto a propósito: si se
+     * cambia un usuario desde fuera de la aplicación, como mucho se usa el dato viejo
+     * durante ese tiempo. Se puede apagar por despliegue con app.cache.usuarios.enabled=false.
+     */
+    @Bean
+    public CacheLocal<String, CredencialesUsuario> cacheUsuarios(
+            @Value("${app.cache.usuarios.enabled:true}") boolean activa,
+            @Value("${app.cache.usuarios.max-entradas:10000}") int maxEntradas,
+            @Value("${app.cache.usuarios.ttl-segundos:60}") long ttlSegundos) {
+        return new CacheLocal<>("usuarios", activa ? maxEntradas : 0, ttlSegundos);
+    }
+
+    /**
+     * Agrupadores de lecturas concurrentes iguales (app.agrupacion.*): detrás de cada caché,
+     * los fallos simultáneos de una misma clave hacen una sola consulta. El timeout es lo
+     * máximo que una llamada espera la consulta de otra; con 0 no se agrupa.
+     */
+    @Bean
+    public AgrupadorLlamadas<String, Object> agrupadorProductos(
+            @Value("${app.agrupacion.enabled:true}") boolean activo,
+            @Value("${app.agrupacion.productos.timeout-ms:2000}") long timeoutMs) {
+        return new AgrupadorLlamadas<>("productos", activo ? timeoutMs : 0);
+    }
+
+    @Bean
+    public AgrupadorLlamadas<String, List<?>> agrupadorListadoProductos(
+            @Value("${app.agrupacion.enabled:true}") boolean activo,
+            @Value("${app.agrupacion.listado.timeout-ms:5000}") long timeoutMs) {
+        return new AgrupadorLlamadas<>("listado-productos", activo ? timeoutMs : 0);
+    }
+
+    @Bean
+    public AgrupadorLlamadas<String, CredencialesUsuario> agrupadorUsuarios(
+            @Value("${app.agrupacion.enabled:true}") boolean activo,
+            @Value("${app.agrupacion.usuarios.timeout-ms:2000}") long timeoutMs) {
+        return new AgrupadorLlamadas<>("usuarios", activo ? timeoutMs : 0);
+    }
+
+    /**
+     * Filtro de Bloom con los correos registrados: si dice que un correo no está,
+     * el registro no necesita preguntar a la base de datos.
+     */
+    @Bean
+    public FiltroBloom filtroCorreos(
+            @Value("${app.usuarios.bloom.capacidad:1000000}") long capacidad,
+            @Value("${app.usuarios.bloom.falsos-positivos:0.01}") double falsosPositivos) {
+        return new FiltroBloom(capacidad, falsosPositivos);
+    }
+}
@@ -1,8 +1,25 @@
 package com.sistemagestionapp.demojava.config;
 
+import com.sistemagestionapp.demojava.datasource.DataSourceFragmentado;
+import com.sistemagestionapp.demojava.datasource.DataSourceLecturaEscritura;
+import com.sistemagestionapp.demojava.datasource.ReplicasDataSource;
+import com.sistemagestionapp.demojava.model.Producto;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.persistence.EntityManagerFactory;
+import jakarta.servlet.http.HttpSession;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.JdbcSettings;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.tool.schema.spi.DelayedDropRegistryNotAvailableImpl;
+import org.hibernate.tool.schema.spi.SchemaManagementToolCoordinator;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -11,10 +28,18 @@ import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 import org.springframework.orm.jpa.JpaTransactionManager;
 import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
 import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 
 import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Configuration
@@ -47,19 +72,194 @@ public class JpaConfig {
     @Value("${spring.jpa.hibernate.ddl-auto:create}")
     private String ddlAuto;
 
+    @Value("${app.db.jdbc.batch-size:50}")
+    private int jdbcBatchSize;
+
+    // H2 embebido: "mem" (se pierde al parar) o "file" (persistente en app.db.h2.ruta)
+    @Value("${app.db.h2.modo:mem}")
+    private String h2Modo;
+
+    @Value("${app.db.h2.ruta:./data/demo}")
+    private String h2Ruta;
+
+    @Value("${app.db.h2.pool-max:8}")
+    private int h2PoolMax;
+
+    // Tamaño máximo del pool del primario (las escrituras y las lecturas sin réplicas)
+    @Value("${app.db.pool-max:10}")
+    private int poolMax;
+
+    // Réplicas de lectura: "host[:puerto],host[:puerto]". Vacío = todo va al primario.
+    @Value("${app.db.replicas.hosts:}")
+    private String replicasHosts;
+
+    @Value("${app.db.replicas.pool-max:10}")
+    private int replicasPoolMax;
+
+    // ronda | menos-pendientes
+    @Value("${app.db.replicas.estrategia:ronda}")
+    private String replicasEstrategia;
+
+    // tiempo que una réplica que falla queda fuera del reparto
+    @Value("${app.db.replicas.expulsion-ms:30000}")
+    private long replicasExpulsionMs;
+
+    // cada cuánto se comprueba cada réplica en segundo plano (0 = solo al usarla)
+    @Value("${app.db.replicas.comprobacion-ms:5000}")
+    private long replicasComprobacionMs;
+
+    // espera máxima por una conexión de réplica: pasado ese tiempo se expulsa y se lee de otra
+    @Value("${app.db.replicas.timeout-conexion-ms:1000}")
+    private long replicasTimeoutConexionMs;
+
+    // tras una escritura, las lecturas van al primario este tiempo (lo que tarden las réplicas en tener el cambio)
+    @Value("${app.db.replicas.primario-tras-escritura-ms:2000}")
+    private long replicasPrimarioTrasEscrituraMs;
+
+    @Value("${app.db.jdbc.cache-sentencias:250}")
+    private int cacheSentencias;
+
+    // Fragmentos de productos además del primario: "host[:puerto],host[:puerto]", con la misma
+    // base de datos, usuario y contraseña. Vacío = un solo fragmento. En H2, otra base embebida por entrada.
+    @Value("${app.db.fragmentos.hosts:}")
+    private String fragmentosHosts;
+
+    @Value("${app.db.fragmentos.pool-max:10}")
+    private int fragmentosPoolMax;
+
+    private boolean isPostgres() {
+        return "postgres".equalsIgnoreCase(engine) || "postgresql".equalsIgnoreCase(engine);
+    }
+
+    private boolean isH2() {
+        return "h2".equalsIgnoreCase(engine);
+    }
+
     @Bean
-    public DataSource dataSource() {
+    public DataSource dataSource(ObjectProvider<MeterRegistry> meterRegistry) {
+        DataSource principal = crearPrincipal(meterRegistry);
+
+        List<String> hostsFragmentos = separarHosts(fragmentosHosts);
+        if (hostsFragmentos.isEmpty()) {
+            return principal;
+        }
+        List<DataSource> fragmentos = new ArrayList<>();
+        fragmentos.add(principal);
+        for (int i = 0; i < hostsFragmentos.size(); i++) {
+            String[] partes = hostsFragmentos.get(i).split(":", 2);
+            int puerto = partes.length == 2 ? Integer.parseInt(partes[1]) : port;
+            HikariDataSource fragmento = crearPool("fragmento-" + (i + 1), partes[0], puerto, "-f" + (i + 1),
+                    isH2() ? h2PoolMax : fragmentosPoolMax, false, meterRegistry);
+            crearEsquemaProductos(fragmento);
+            fragmentos.add(fragmento);
+        }
+        return new DataSourceFragmentado(fragmentos);
+    }
+
+    private DataSource crearPrincipal(ObjectProvider<MeterRegistry> meterRegistry) {
+        HikariDataSource primario = crearPool(isH2() ? "h2" : "primario", host, port, "",
+                isH2() ? h2PoolMax : poolMax, false, meterRegistry);
+
+        List<String> hostsReplicas = separarHosts(replicasHosts);
+        if (hostsReplicas.isEmpty()) {
+            return primario;
+        }
+
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (int i = 0; i < hostsReplicas.size(); i++) {
+            // "host" o "host:puerto"; sin puerto se usa el del primario
+            String[] partes = hostsReplicas.get(i).split(":", 2);
+            int puerto = partes.length == 2 ? Integer.parseInt(partes[1]) : port;
+            HikariDataSource replica = crearPool("replica-" + (i + 1), partes[0], puerto, "",
+                    replicasPoolMax, true, meterRegistry);
+            replicas.add(replica);
+        }
+
+        return new DataSourceLecturaEscritura(primario, new ReplicasDataSource(
+                replicas, primario, ReplicasDataSource.Estrategia.desde(replicasEstrategia), replicasExpulsionMs,
+                replicasComprobacionMs),
+                replicasPrimarioTrasEscrituraMs, JpaConfig::escritorActual);
+    }
+
+    /**
+     * Quién escribe, para llevar al primario sus lecturas siguientes: el usuario autenticado
+     * o, antes del login (registro), su sesión HTTP. Las tareas en segundo plano (proyector
+     * CQRS, limpieza de tokens, escritura diferida, estadísticas) no tienen ni uno ni otra:
+     * null, y no desvían lecturas de nadie.
+     */
+    private static Object escritorActual() {
+        Authentication autenticacion = SecurityContextHolder.getContext().getAuthentication();
+        if (autenticacion != null && autenticacion.isAuthenticated()
+                && !(autenticacion instanceof AnonymousAuthenticationToken)) {
+            return "usuario:" + autenticacion.getName();
+        }
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes atributos) {
+            HttpSession sesion = atributos.getRequest().getSession(false);
+            return sesion == null ? null : "sesion:" + sesion.getId();
+        }
+        return null;
+    }
+
+    private static List<String> separarHosts(String hosts) {
+        return Arrays.stream(hosts.split(","))
+                .map(String::trim)
+                .filter(h -> !h.isEmpty())
+                .toList();
+    }
+
+    /**
+     * Crea o actualiza la tabla producto (y sus índices) en un fragmento que no es el 0, con
+     * el mismo mapeo que usa el EntityManagerFactory, que solo gestiona el esquema del 0.
+     */
+    private void crearEsquemaProductos(DataSource fragmento) {
+        if (!"update".equalsIgnoreCase(ddlAuto) && !"create".equalsIgnoreCase(ddlAuto)) {
+            return;
+        }
+        StandardServiceRegistryBuilder constructor = new StandardServiceRegistryBuilder()
+                .applySetting(JdbcSettings.JAKARTA_NON_JTA_DATASOURCE, fragmento)
+                // aunque el 0 use create: un fragmento nunca se borra al arrancar
+                .applySetting(AvailableSettings.HBM2DDL_AUTO, "update");
+        String dialecto = dialecto();
+        if (dialecto != null) {
+            constructor.applySetting(AvailableSettings.DIALECT, dialecto);
+        }
+        StandardServiceRegistry registro = constructor.build();
+        try {
+            Metadata metadata = new MetadataSources(registro).addAnnotatedClass(Producto.class).buildMetadata();
+            SchemaManagementToolCoordinator.process(metadata, registro, registro.requireService(ConfigurationService.class)
+                    .getSettings(), DelayedDropRegistryNotAvailableImpl.INSTANCE);
+        } finally {
+            StandardServiceRegistryBuilder.destroy(registro);
+        }
+    }
+
+    // En H2 Hibernate elige H2Dialect él solo (y avisa si se indica a mano)
+    private String dialecto() {
+        if (isPostgres()) {
+            return "org.hibernate.dialect.PostgreSQLDialect";
+        }
+        return isH2() ? null : "org.hibernate.dialect.MySQLDialect";
+    }
+
+    private HikariDataSource crearPool(String nombre, String servidor, int puerto, String sufijoH2, int tamanoMaximo,
+                                       boolean replica, ObjectProvider<MeterRegistry> meterRegistry) {
         HikariConfig config = new HikariConfig();
 
         String url;
         String driverClassName;
 
-        if ("postgres".equalsIgnoreCase(engine) || "postgresql".equalsIgnoreCase(engine)) {
-            url = String.format("jdbc:postgresql://%s:%d/%s", host, port, dbName);
+        if (isH2()) {
+            url = "file".equalsIgnoreCase(h2Modo)
+                    ? String.format("jdbc:h2:file:%s%s", h2Ruta, sufijoH2)
+                    // DB_CLOSE_DELAY=-1: la base en memoria vive mientras viva la JVM, no la conexión
+                    : String.format("jdbc:h2:mem:%s%s;DB_CLOSE_DELAY=-1", dbName, sufijoH2);
+            driverClassName = "org.h2.Driver";
+        } else if (isPostgres()) {
+            url = String.format("jdbc:postgresql://%s:%d/%s", servidor, puerto, dbName);
             driverClassName = "org.postgresql.Driver";
         } else {
             // por defecto mysql
-            url = String.format("jdbc:mysql://%s:%d/%s", host, port, dbName);
+            url = String.format("jdbc:mysql://%s:%d/%s", servidor, puerto, dbName);
             driverClassName = "com.mysql.cj.jdbc.Driver";
         }
 
@@ -67,6 +267,49 @@ public class JpaConfig {
         config.setDriverClassName(driverClassName);
         config.setUsername(user);
         config.setPassword(password);
+        config.setPoolName(nombre);
+        config.setMaximumPoolSize(tamanoMaximo);
+
+        if (replica) {
+            config.setReadOnly(true);
+            // una réplica caída no debe impedir arrancar: ReplicasDataSource la expulsa al usarla
+            config.setInitializationFailTimeout(-1);
+            // y no debe tener a una lectura esperando los 30 s por defecto de Hikari antes de ir a otra
+            long timeout = Math.max(250, replicasTimeoutConexionMs);
+            config.setConnectionTimeout(timeout);
+            config.setValidationTimeout(Math.max(250, timeout / 2));
+        }
+
+        if (isH2()) {
+            // Sin red: abrir una conexión cuesta microsegundos, así que el pool puede ser
+            // pequeño, arrancar con una sola conexión y fallar rápido si se agota.
+            config.setMinimumIdle(1);
+            config.setConnectionTimeout(2_000);
+        } else if (isPostgres()) {
+            // que el driver convierta los lotes JDBC en INSERT multi-fila
+            config.addDataSourceProperty("reWriteBatchedInserts", "true");
+            // sentencias preparadas en el servidor a partir del 3er uso, cacheadas por conexión
+            config.addDataSourceProperty("prepareThreshold", "3");
+            config.addDataSourceProperty("preparedStatementCacheQueries", String.valueOf(cacheSentencias));
+        } else {
+            config.addDataSourceProperty("rewriteBatchedStatements", "true");
+            // sin esto Connector/J ignora el fetch size y carga el resultado entero en memoria
+            config.addDataSourceProperty("useCursorFetch", "true");
+            // caché de sentencias preparadas por conexión (por defecto Connector/J no cachea nada)
+            config.addDataSourceProperty("cachePrepStmts", "true");
+            config.addDataSourceProperty("useServerPrepStmts", "true");
+            config.addDataSourceProperty("prepStmtCacheSize", String.valueOf(cacheSentencias));
+            config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+            // evita viajes al servidor para consultar variables y estado de autocommit
+            config.addDataSourceProperty("cacheServerConfiguration", "true");
+            config.addDataSourceProperty("elideSetAutoCommits", "true");
+            config.addDataSourceProperty("useLocalSessionState", "true");
+        }
+
+        // El pool arranca en el constructor, así que las métricas (hikaricp.connections.*,
+        // incluida la espera por conexión) hay que engancharlas aquí y no después
+        meterRegistry.ifAvailable(registry ->
+                config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry)));
 
         return new HikariDataSource(config);
     }
@@ -82,10 +325,14 @@ public class JpaConfig {
         Map<String, Object> props = new HashMap<>();
         props.put("hibernate.hbm2ddl.auto", ddlAuto);
 
-        if ("postgres".equalsIgnoreCase(engine) || "postgresql".equalsIgnoreCase(engine)) {
-            props.put("hibernate.dialect", "org.hibernate.dialect.PostgreSQLDialect");
-        } else {
-            props.put("hibernate.dialect", "org.hibernate.dialect.MySQLDialect");
+        // Lotes JDBC para inserciones/actualizaciones masivas (la importación de productos)
+        props.put("hibernate.jdbc.batch_size", jdbcBatchSize);
+        props.put("hibernate.order_inserts", true);
+        props.put("hibernate.order_updates", true);
+
+        String dialecto = dialecto();
+        if (dialecto != null) {
+            props.put("hibernate.dialect", dialecto);
         }
 
         emf.setJpaPropertyMap(props);
@@ -96,4 +343,4 @@ public class JpaConfig {
     public PlatformTransactionManager transactionManager(EntityManagerFactory entityManagerFactory) {
         return new JpaTransactionManager(entityManagerFactory);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,209 @@
+package com.sistemagestionapp.demojava.config;
+
+import com.sistemagestionapp.demojava.cache.AgrupadorLlamadas;
+import com.sistemagestionapp.demojava.cache.CacheLocal;
+import com.sistemagestionapp.demojava.cambios.DifusorSse;
+import com.sistemagestionapp.demojava.datasource.DataSourceFragmentado;
+import com.sistemagestionapp.demojava.datasource.DataSourceLecturaEscritura;
+import com.sistemagestionapp.demojava.datasource.ReplicasDataSource;
+import com.sistemagestionapp.demojava.security.FiltroLimiteLogin;
+import com.sistemagestionapp.demojava.security.PasswordEncoderAcotado;
+import com.sistemagestionapp.demojava.service.BusquedaProductosService;
+import com.sistemagestionapp.demojava.service.CambiosProductosService;
+import com.sistemagestionapp.demojava.service.EscrituraDiferidaService;
+import com.sistemagestionapp.demojava.service.ProyeccionProductosService;
+import com.sistemagestionapp.demojava.service.RevocacionTokensService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publica en Micrometer los contadores que ya llevan las cachés locales, las lecturas
+ * agrupadas, el pool de BCrypt, el reparto entre réplicas, el índice de búsqueda, las
+ * conexiones SSE de cambios, los tokens de sesión revocados, los logins frenados, la
+ * escritura diferida de productos y la proyección CQRS a Mongo.
+ * El resto (servicios con @Timed, repositorios, Hikari, Mongo, peticiones HTTP) lo registra
+ * Spring Boot o se engancha en JpaConfig/MongoConfig. Todo sale por /actuator/prometheus.
+ */
+@Configuration
+public class MetricasConfig {
+
+    @Bean
+    public MeterBinder metricasCaches(List<CacheLocal<?, ?>> caches) {
+        return registry -> {
+            for (CacheLocal<?, ?> cache : caches) {
+                String nombre = cache.getNombre();
+                Gauge.builder("app.cache.tamano", cache, CacheLocal::getTamano)
+                        .tag("cache", nombre)
+                        .register(registry);
+                FunctionCounter.builder("app.cache.operaciones", cache, CacheLocal::getAciertos)
+                        .tags("cache", nombre, "resultado", "acierto")
+                        .register(registry);
+                FunctionCounter.builder("app.cache.operaciones", cache, CacheLocal::getFallos)
+                        .tags("cache", nombre, "resultado", "fallo")
+                        .register(registry);
+                FunctionCounter.builder("app.cache.expulsiones", cache, CacheLocal::getExpulsiones)
+                        .tag("cache", nombre)
+                        .register(registry);
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder metricasAgrupacion(List<AgrupadorLlamadas<?, ?>> agrupadores) {
+        return registry -> {
+            for (AgrupadorLlamadas<?, ?> agrupador : agrupadores) {
+                String nombre = agrupador.getNombre();
+                Gauge.builder("app.agrupacion.en-curso", agrupador, AgrupadorLlamadas::getEnCurso)
+                        .tag("agrupador", nombre)
+                        .register(registry);
+                // consultas hechas frente a llamadas que se ahorraron la suya
+                FunctionCounter.builder("app.agrupacion.llamadas", agrupador, AgrupadorLlamadas::getEjecutadas)
+                        .tags("agrupador", nombre, "resultado", "ejecutada")
+                        .register(registry);
+                FunctionCounter.builder("app.agrupacion.llamadas", agrupador, AgrupadorLlamadas::getAgrupadas)
+                        .tags("agrupador", nombre, "resultado", "agrupada")
+                        .register(registry);
+                FunctionCounter.builder("app.agrupacion.timeouts", agrupador, AgrupadorLlamadas::getAgotadas)
+                        .tag("agrupador", nombre)
+                        .register(registry);
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder metricasPassword(PasswordEncoder passwordEncoder) {
+        return registry -> {
+            if (!(passwordEncoder instanceof PasswordEncoderAcotado encoder)) {
+                return;
+            }
+            // Tiempo medio esperando hilo libre frente a tiempo calculando el hash
+            FunctionTimer.builder("app.password.espera", encoder,
+                            PasswordEncoderAcotado::getOperaciones,
+                            PasswordEncoderAcotado::getNanosEnCola, TimeUnit.NANOSECONDS)
+                    .register(registry);
+            FunctionTimer.builder("app.password.hash", encoder,
+                            PasswordEncoderAcotado::getOperaciones,
+                            PasswordEncoderAcotado::getNanosHash, TimeUnit.NANOSECONDS)
+                    .register(registry);
+            FunctionCounter.builder("app.password.rechazos", encoder, PasswordEncoderAcotado::getRechazos)
+                    .register(registry);
+            Gauge.builder("app.password.en-cola", encoder, PasswordEncoderAcotado::getEnCola)
+                    .register(registry);
+            Gauge.builder("app.password.activos", encoder, PasswordEncoderAcotado::getActivos)
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder metricasReplicas(ObjectProvider<DataSource> dataSource) {
+        return registry -> {
+            DataSource principal = dataSource.getIfAvailable();
+            if (principal instanceof DataSourceFragmentado fragmentado) {
+                // las réplicas son del fragmento 0
+                principal = fragmentado.getFragmento(0);
+            }
+            if (!(principal instanceof DataSourceLecturaEscritura enrutado)) {
+                return;
+            }
+            ReplicasDataSource replicas = enrutado.getReplicas();
+            Gauge.builder("app.db.replicas.sanas", replicas, ReplicasDataSource::getReplicasSanas)
+                    .register(registry);
+            FunctionCounter.builder("app.db.replicas.expulsiones", replicas, ReplicasDataSource::getExpulsiones)
+                    .register(registry);
+            // lecturas que acabaron en el primario porque no había ninguna réplica sana
+            FunctionCounter.builder("app.db.replicas.lecturas-en-primario", replicas,
+                            ReplicasDataSource::getLecturasEnPrimario)
+                    .register(registry);
+            // lecturas que fueron al primario por llegar justo después de una escritura
+            FunctionCounter.builder("app.db.replicas.lecturas-tras-escritura", enrutado,
+                            DataSourceLecturaEscritura::getLecturasTrasEscritura)
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder metricasBusqueda(BusquedaProductosService busquedaService) {
+        return registry -> Gauge.builder("app.busqueda.productos", busquedaService,
+                        BusquedaProductosService::getProductosIndexados)
+                .register(registry);
+    }
+
+    @Bean
+    public MeterBinder metricasCambios(CambiosProductosService cambiosService) {
+        return registry -> {
+            DifusorSse difusor = cambiosService.getDifusor();
+            Gauge.builder("app.cambios.suscriptores", difusor, DifusorSse::getSuscriptores)
+                    .register(registry);
+            FunctionCounter.builder("app.cambios.enviados", difusor, DifusorSse::getEnviados)
+                    .register(registry);
+            // clientes que no leían a tiempo: se les vació el buffer y se les pidió recargar
+            FunctionCounter.builder("app.cambios.desbordes", difusor, DifusorSse::getDesbordes)
+                    .register(registry);
+            FunctionCounter.builder("app.cambios.rechazados", difusor, DifusorSse::getRechazados)
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder metricasTokens(RevocacionTokensService revocaciones) {
+        return registry -> Gauge.builder("app.auth.tokens-revocados", revocaciones,
+                        RevocacionTokensService::getRevocados)
+                .register(registry);
+    }
+
+    @Bean
+    public MeterBinder metricasLimiteLogin(ObjectProvider<FiltroLimiteLogin> filtroLimiteLogin) {
+        return registry -> filtroLimiteLogin.ifAvailable(filtro -> {
+            FunctionCounter.builder("app.login.rechazos", filtro, FiltroLimiteLogin::getRechazadosPorIp)
+                    .tag("motivo", "ip")
+                    .register(registry);
+            FunctionCounter.builder("app.login.rechazos", filtro, FiltroLimiteLogin::getRechazadosPorCorreo)
+                    .tag("motivo", "correo")
+                    .register(registry);
+            // claves olvidadas antes de tiempo porque su ventana de la tabla estaba llena
+            FunctionCounter.builder("app.login.limite.expulsiones", filtro, FiltroLimiteLogin::getExpulsiones)
+                    .register(registry);
+        });
+    }
+
+    @Bean
+    public MeterBinder metricasEscrituraDiferida(EscrituraDiferidaService escritura) {
+        return registry -> {
+            Gauge.builder("app.escritura.diferida.pendientes", escritura, EscrituraDiferidaService::getPendientes)
+                    .register(registry);
+            FunctionCounter.builder("app.escritura.diferida.escritas", escritura, EscrituraDiferidaService::getEscritas)
+                    .register(registry);
+            // cambios de un producto que se juntaron con otro aún pendiente (una escritura menos)
+            FunctionCounter.builder("app.escritura.diferida.combinadas", escritura, EscrituraDiferidaService::getCombinadas)
+                    .register(registry);
+            FunctionCounter.builder("app.escritura.diferida.conflictos", escritura, EscrituraDiferidaService::getConflictos)
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder metricasCqrs(ProyeccionProductosService proyeccion) {
+        return registry -> {
+            if (!proyeccion.isActiva()) {
+                return;
+            }
+            // el retraso de cada cambio (app.cqrs.retraso) lo registra el propio servicio
+            Gauge.builder("app.cqrs.pendiente.segundos", proyeccion, ProyeccionProductosService::getSegundosPendiente)
+                    .register(registry);
+            FunctionCounter.builder("app.cqrs.proyectados", proyeccion, ProyeccionProductosService::getProyectados)
+                    .register(registry);
+            FunctionCounter.builder("app.cqrs.errores", proyeccion, ProyeccionProductosService::getErrores)
+                    .register(registry);
+        };
+    }
+}
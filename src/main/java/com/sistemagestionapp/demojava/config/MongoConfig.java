@@ -1,33 +1,84 @@
 package com.sistemagestionapp.demojava.config;
 
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoCompressor;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.mongodb.MongoMetricsCommandListener;
+import io.micrometer.core.instrument.binder.mongodb.MongoMetricsConnectionPoolListener;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.mongodb.config.AbstractMongoClientConfiguration;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cliente Mongo. Se puede apagar con app.mongo.enabled=false (perfil h2) para no abrir
+ * hilos de monitorización contra un servidor que no existe.
+ */
 @Configuration
+@ConditionalOnProperty(name = "app.mongo.enabled", havingValue = "true", matchIfMissing = true)
 public class MongoConfig extends AbstractMongoClientConfiguration {
 
-    @Value("${spring.data.mongodb.host}")
+    @Value("${spring.data.mongodb.host:mongo}")
     private String mongoHost;
 
-    @Value("${spring.data.mongodb.port}")
+    @Value("${spring.data.mongodb.port:27017}")
     private int mongoPort;
 
-    @Value("${spring.data.mongodb.database}")
+    @Value("${spring.data.mongodb.database:demo}")
     private String mongoDatabase;
 
-    @Value("${spring.data.mongodb.username}")
+    @Value("${spring.data.mongodb.username:demo}")
     private String mongoUsername;
 
-    @Value("${spring.data.mongodb.password}")
+    @Value("${spring.data.mongodb.password:demo}")
     private String mongoPassword;
 
-    @Value("${spring.data.mongodb.authentication-database}")
+    @Value("${spring.data.mongodb.authentication-database:admin}")
     private String authDatabase;
 
+    // Pool de conexiones: con la espera por defecto (2 min) un pool agotado cuelga las
+    // peticiones en vez de fallar; mejor un error rápido que se ve en las métricas
+    @Value("${app.mongo.pool.max:100}")
+    private int poolMax;
+
+    @Value("${app.mongo.pool.min:0}")
+    private int poolMin;
+
+    @Value("${app.mongo.pool.max-espera-ms:2000}")
+    private long poolMaxEsperaMs;
+
+    @Value("${app.mongo.pool.max-conectando:2}")
+    private int poolMaxConectando;
+
+    @Value("${app.mongo.socket.connect-timeout-ms:5000}")
+    private int connectTimeoutMs;
+
+    @Value("${app.mongo.socket.read-timeout-ms:30000}")
+    private int readTimeoutMs;
+
+    @Value("${app.mongo.seleccion-servidor-ms:5000}")
+    private long seleccionServidorMs;
+
+    // Compresión en el cable, por orden de preferencia: zstd, snappy, zlib (vacío = sin compresión)
+    @Value("${app.mongo.compresores:zstd,snappy}")
+    private String compresores;
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    public MongoConfig(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
     @Override
     protected String getDatabaseName() {
         return mongoDatabase;
@@ -47,6 +98,40 @@ public class MongoConfig extends AbstractMongoClientConfiguration {
                 authDatabase
         );
 
-        return MongoClients.create(uri);
+        MongoClientSettings.Builder settings = MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(uri))
+                .applyToConnectionPoolSettings(pool -> pool
+                        .maxSize(poolMax)
+                        .minSize(poolMin)
+                        .maxWaitTime(poolMaxEsperaMs, TimeUnit.MILLISECONDS)
+                        .maxConnecting(poolMaxConectando))
+                .applyToSocketSettings(socket -> socket
+                        .connectTimeout(connectTimeoutMs, TimeUnit.MILLISECONDS)
+                        .readTimeout(readTimeoutMs, TimeUnit.MILLISECONDS))
+                .applyToClusterSettings(cluster -> cluster
+                        .serverSelectionTimeout(seleccionServidorMs, TimeUnit.MILLISECONDS))
+                .compressorList(compresores());
+
+        // Latencia de cada comando (mongodb.driver.commands) y estado del pool (mongodb.driver.pool.*)
+        meterRegistry.ifAvailable(registry -> settings
+                .addCommandListener(new MongoMetricsCommandListener(registry))
+                .applyToConnectionPoolSettings(pool ->
+                        pool.addConnectionPoolListener(new MongoMetricsConnectionPoolListener(registry))));
+
+        return MongoClients.create(settings.build());
+    }
+
+    private List<MongoCompressor> compresores() {
+        List<MongoCompressor> lista = new ArrayList<>();
+        for (String nombre : compresores.split(",")) {
+            switch (nombre.trim().toLowerCase(Locale.ROOT)) {
+                case "" -> { }
+                case "zstd" -> lista.add(MongoCompressor.createZstdCompressor());
+                case "snappy" -> lista.add(MongoCompressor.createSnappyCompressor());
+                case "zlib" -> lista.add(MongoCompressor.createZlibCompressor());
+                default -> throw new IllegalArgumentException("Compresor Mongo desconocido: " + nombre);
+            }
+        }
+        return lista;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,82 @@
+package com.sistemagestionapp.demojava.config;
+
+import com.sistemagestionapp.demojava.model.mongo.ProductoMongo;
+import com.sistemagestionapp.demojava.model.mongo.TokenRevocadoMongo;
+import com.sistemagestionapp.demojava.model.mongo.UsuarioMongo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Crea al arrancar los índices declarados con anotaciones (@Indexed, @CompoundIndex)
+ * en los documentos Mongo. MongoConfig no activa la creación automática de índices,
+ * así que sin esto correo no tendría índice y cada login sería un collection scan.
+ *
+ * <p>Con el motor mongo se crean todos. En modo CQRS (motor SQL) Mongo solo guarda la copia
+ * de productos de la que se sirven listado y detalle, y se crean los suyos: sin (nombre, _id)
+ * y (precio, _id) cada página sería un collection scan con ordenación en memoria.</p>
+ *
+ * <p>Si no se puede crear un índice único (p.ej. hay correos duplicados de antes de tenerlo)
+ * no se arranca: registrarUsuario confía en que el índice rechace los duplicados. Los demás
+ * solo son para ir más rápido; si fallan se avisa y se sigue.</p>
+ */
+@Component
+@ConditionalOnProperty(name = "app.mongo.enabled", havingValue = "true", matchIfMissing = true)
+public class MongoIndices implements InitializingBean {
+
+    private static final Logger log = LoggerFactory.getLogger(MongoIndices.class);
+
+    private static final List<Class<?>> DOCUMENTOS = List.of(UsuarioMongo.class, ProductoMongo.class, TokenRevocadoMongo.class);
+
+    private final MongoOperations mongoOperations;
+    private final MongoMappingContext mappingContext;
+    private final List<Class<?>> documentos;
+
+    public MongoIndices(MongoOperations mongoOperations, MongoMappingContext mappingContext,
+                        @Value("${app.db.engine:h2}") String dbEngine,
+                        @Value("${app.cqrs.enabled:false}") boolean cqrs) {
+        this.mongoOperations = mongoOperations;
+        this.mappingContext = mappingContext;
+        if ("mongo".equalsIgnoreCase(dbEngine)) {
+            this.documentos = DOCUMENTOS;
+        } else if (cqrs) {
+            this.documentos = List.of(ProductoMongo.class);
+        } else {
+            // motor SQL sin CQRS: Mongo solo se usa para migrar; al arrancar con el motor mongo se crean todos
+            this.documentos = List.of();
+        }
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        IndexResolver resolver = new MongoPersistentEntityIndexResolver(mappingContext);
+
+        for (Class<?> documento : documentos) {
+            IndexOperations indexOps = mongoOperations.indexOps(documento);
+            for (IndexDefinition indice : resolver.resolveIndexFor(documento)) {
+                try {
+                    indexOps.ensureIndex(indice);
+                    log.info("✅ Índice Mongo asegurado en {}: {}", documento.getSimpleName(), indice.getIndexKeys());
+                } catch (RuntimeException e) {
+                    if (Boolean.TRUE.equals(indice.getIndexOptions().get("unique"))) {
+                        throw new IllegalStateException("No se pudo crear el índice único " + indice.getIndexKeys()
+                                + " en " + documento.getSimpleName() + " (¿hay duplicados?): " + e.getMessage(), e);
+                    }
+                    log.error("❌ No se pudo crear el índice {} en {}: {}",
+                            indice.getIndexKeys(), documento.getSimpleName(), e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.sistemagestionapp.demojava.config;
 
+import com.sistemagestionapp.demojava.security.PasswordEncoderAcotado;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
@@ -8,8 +10,18 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 @Configuration
 public class PasswordConfig {
 
-    @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    /**
+     * BCrypt con coste configurable, ejecutado en un pool acotado (ver {@link PasswordEncoderAcotado}).
+     * Si app.password.hilos es 0 se usa un hilo por CPU.
+     */
+    @Bean(destroyMethod = "cerrar")
+    public PasswordEncoder passwordEncoder(
+            @Value("${app.password.bcrypt.coste:10}") int coste,
+            @Value("${app.password.hilos:0}") int hilos,
+            @Value("${app.password.cola:64}") int cola,
+            @Value("${app.password.espera-maxima-ms:5000}") long esperaMaximaMs) {
+
+        int hilosEfectivos = hilos > 0 ? hilos : Runtime.getRuntime().availableProcessors();
+        return new PasswordEncoderAcotado(new BCryptPasswordEncoder(coste), hilosEfectivos, cola, esperaMaximaMs);
     }
-}
\ No newline at end of file
+}
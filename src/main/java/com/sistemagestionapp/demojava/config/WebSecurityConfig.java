@@ -1,16 +1,47 @@
 package com.sistemagestionapp.demojava.config;
 
+import com.sistemagestionapp.demojava.security.FiltroLimiteLogin;
+import com.sistemagestionapp.demojava.security.FiltroTokenSesion;
+import com.sistemagestionapp.demojava.security.LimitadorIntentos;
+import com.sistemagestionapp.demojava.security.TokenSesion;
+import com.sistemagestionapp.demojava.service.RevocacionTokensService;
 import com.sistemagestionapp.demojava.service.UsuarioService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.context.RequestAttributeSecurityContextRepository;
+import org.springframework.security.web.savedrequest.NullRequestCache;
 
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Seguridad web. Con app.auth.modo=sesion (por defecto) el login queda en la HttpSession,
+ * como siempre. Con app.auth.modo=token no hay sesión: el login deja una cookie con un
+ * {@link TokenSesion} firmado que cualquier nodo comprueba por sí solo, así que se puede
+ * repartir la carga en ronda sin sesiones pegajosas.
+ */
 @Configuration
 public class WebSecurityConfig {
 
+    private static final Logger log = LoggerFactory.getLogger(WebSecurityConfig.class);
+
+    private static final String URL_LOGIN = "/login";
+    private static final String URL_TRAS_LOGIN = "/productos";
+    private static final String PARAMETRO_CORREO = "correo";
+
     @Bean
     public DaoAuthenticationProvider authenticationProvider(
             UsuarioService usuarioService,
@@ -19,25 +50,83 @@ public class WebSecurityConfig {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
         authProvider.setUserDetailsService(usuarioService);
         authProvider.setPasswordEncoder(passwordEncoder);
+        // si cambia app.password.bcrypt.coste, los hashes antiguos se recalculan al hacer login
+        authProvider.setUserDetailsPasswordService(usuarioService);
         return authProvider;
     }
 
+    /**
+     * Claves de firma "id:secretoBase64,..." (la primera firma, el resto solo se aceptan).
+     * Sin claves se genera una al arrancar: solo vale para un nodo y se pierde al reiniciar.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "app.auth.modo", havingValue = "token")
+    public TokenSesion tokenSesion(@Value("${app.auth.token.claves:}") String claves) {
+        Map<String, byte[]> leidas = TokenSesion.leerClaves(claves);
+        if (leidas.isEmpty()) {
+            log.warn("app.auth.token.claves vacío: se firma con una clave aleatoria que no comparten los demás nodos");
+            leidas = Map.of("local", TokenSesion.claveAleatoria());
+        }
+        return new TokenSesion(leidas);
+    }
+
+    /**
+     * Límite de intentos de login por IP y por correo (ver {@link FiltroLimiteLogin}).
+     * Es un bean para que reciba los eventos de login correcto/fallido.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "app.login.limite.enabled", havingValue = "true", matchIfMissing = true)
+    public FiltroLimiteLogin filtroLimiteLogin(
+            @Value("${app.login.limite.entradas:65536}") int entradas,
+            @Value("${app.login.limite.ip.rafaga:20}") int rafagaIp,
+            @Value("${app.login.limite.ip.por-minuto:20}") double porMinutoIp,
+            @Value("${app.login.limite.ip.umbral-fallos:20}") int umbralFallosIp,
+            @Value("${app.login.limite.correo.rafaga:5}") int rafagaCorreo,
+            @Value("${app.login.limite.correo.por-minuto:5}") double porMinutoCorreo,
+            @Value("${app.login.limite.correo.umbral-fallos:5}") int umbralFallosCorreo,
+            @Value("${app.login.limite.espera-inicial-ms:1000}") long esperaInicialMs,
+            @Value("${app.login.limite.espera-maxima-segundos:900}") long esperaMaximaSegundos) {
+        long esperaMaximaMs = esperaMaximaSegundos * 1000;
+        return new FiltroLimiteLogin(
+                new LimitadorIntentos(entradas, rafagaIp, porMinutoIp, umbralFallosIp, esperaInicialMs, esperaMaximaMs),
+                new LimitadorIntentos(entradas, rafagaCorreo, porMinutoCorreo, umbralFallosCorreo, esperaInicialMs, esperaMaximaMs),
+                URL_LOGIN, PARAMETRO_CORREO);
+    }
+
+    // Ya va dentro de la cadena de seguridad: que Spring Boot no lo registre otra vez como filtro de servlet
+    @Bean
+    @ConditionalOnProperty(name = "app.login.limite.enabled", havingValue = "true", matchIfMissing = true)
+    public FilterRegistrationBean<FiltroLimiteLogin> registroFiltroLimiteLogin(FiltroLimiteLogin filtro) {
+        FilterRegistrationBean<FiltroLimiteLogin> registro = new FilterRegistrationBean<>(filtro);
+        registro.setEnabled(false);
+        return registro;
+    }
+
     @Bean
     public SecurityFilterChain filterChain(HttpSecurity http,
-                                           DaoAuthenticationProvider authProvider) throws Exception {
+                                           DaoAuthenticationProvider authProvider,
+                                           ObjectProvider<FiltroLimiteLogin> filtroLimiteLogin,
+                                           ObjectProvider<TokenSesion> tokenSesion,
+                                           RevocacionTokensService revocaciones,
+                                           @Value("${app.auth.token.cookie:token_sesion}") String nombreCookie,
+                                           @Value("${app.auth.token.duracion-minutos:30}") long duracionMinutos,
+                                           @Value("${app.auth.token.duracion-maxima-horas:12}") long duracionMaximaHoras)
+            throws Exception {
         http
                 .csrf(csrf -> csrf.disable())
                 .authenticationProvider(authProvider)
                 .authorizeHttpRequests(auth -> auth
-                        .requestMatchers("/login", "/registro", "/css/**", "/js/**").permitAll()
+                        .requestMatchers(URL_LOGIN, "/registro", "/css/**", "/js/**").permitAll()
+                        // el actuator escucha en su propio puerto, por defecto solo en 127.0.0.1
+                        .requestMatchers(EndpointRequest.to("health", "prometheus")).permitAll()
                         .anyRequest().authenticated()
                 )
                 .formLogin(login -> login
-                        .loginPage("/login")
-                        .loginProcessingUrl("/login") // ✅ POST /login lo maneja Spring Security
-                        .usernameParameter("correo")
+                        .loginPage(URL_LOGIN)
+                        .loginProcessingUrl(URL_LOGIN) // ✅ POST /login lo maneja Spring Security
+                        .usernameParameter(PARAMETRO_CORREO)
                         .passwordParameter("password")
-                        .defaultSuccessUrl("/productos", true)
+                        .defaultSuccessUrl(URL_TRAS_LOGIN, true)
                         .failureUrl("/login?error")
                         .permitAll()
                 )
@@ -47,6 +136,25 @@ public class WebSecurityConfig {
                         .permitAll()
                 );
 
+        // antes de autenticar: un intento frenado no llega a UsuarioService ni a BCrypt
+        filtroLimiteLogin.ifAvailable(filtro -> http.addFilterBefore(filtro, UsernamePasswordAuthenticationFilter.class));
+
+        TokenSesion tokens = tokenSesion.getIfAvailable();
+        if (tokens != null) {
+            // no es un @Bean: Spring Boot lo registraría también como filtro de servlet
+            FiltroTokenSesion filtro = new FiltroTokenSesion(tokens, revocaciones, nombreCookie,
+                    Duration.ofMinutes(duracionMinutos), Duration.ofHours(duracionMaximaHoras), URL_TRAS_LOGIN);
+            http
+                    .sessionManagement(sesion -> sesion.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                    // el usuario solo vive lo que dura la petición; lo vuelve a poner el filtro en la siguiente
+                    .securityContext(contexto -> contexto.securityContextRepository(new RequestAttributeSecurityContextRepository()))
+                    .requestCache(cache -> cache.requestCache(new NullRequestCache()))
+                    .addFilterBefore(filtro, UsernamePasswordAuthenticationFilter.class)
+                    .formLogin(login -> login.successHandler(filtro))
+                    .logout(logout -> logout.addLogoutHandler(filtro));
+            log.info("✅ Autenticación con token firmado (clave actual '{}'), sin sesión HTTP", tokens.getClaveActual());
+        }
+
         return http.build();
     }
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.sistemagestionapp.demojava.controller;
 
 import com.sistemagestionapp.demojava.model.Usuario;
+import com.sistemagestionapp.demojava.security.HashSaturadoException;
 import com.sistemagestionapp.demojava.service.UsuarioService;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -31,12 +32,16 @@ public class AuthController {
     public String registrar(@ModelAttribute("usuario") Usuario usuario,
                             Model model) {
 
-        if (usuarioService.existePorCorreo(usuario.getCorreo())) {
-            model.addAttribute("error", "Ya existe un usuario con ese correo.");
+        try {
+            if (!usuarioService.registrarUsuario(usuario)) {
+                model.addAttribute("error", "Ya existe un usuario con ese correo.");
+                return "registro";
+            }
+        } catch (HashSaturadoException e) {
+            // el pool de hashing está lleno: se avisa en vez de bloquear el hilo
+            model.addAttribute("error", "El servidor está ocupado, inténtalo de nuevo en unos segundos.");
             return "registro";
         }
-
-        usuarioService.registrarUsuario(usuario);
         return "redirect:/login?registroOk";
     }
 }
\ No newline at end of file
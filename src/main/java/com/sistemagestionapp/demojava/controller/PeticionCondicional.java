@@ -0,0 +1,30 @@
+package com.sistemagestionapp.demojava.controller;
+
+import com.sistemagestionapp.demojava.service.VersionCatalogo;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.WebRequest;
+
+/**
+ * GET condicional de los listados con la versión del catálogo: se comprueba antes de
+ * llamar al servicio, así que un 304 no toca ni la caché ni la base de datos.
+ */
+final class PeticionCondicional {
+
+    // "private": la página va detrás del login; "no-cache": revalidar siempre (y recibir 304)
+    private static final String CACHE_CONTROL = CacheControl.noCache().cachePrivate().getHeaderValue();
+
+    private PeticionCondicional() {
+    }
+
+    /**
+     * Pone ETag, Last-Modified y Cache-Control y devuelve true si el cliente ya tiene esta
+     * versión (If-None-Match / If-Modified-Since): en ese caso la respuesta ya es un 304.
+     */
+    static boolean noModificado(VersionCatalogo versionCatalogo, WebRequest request, HttpServletResponse response) {
+        // Si no, Spring Security pone "no-store" y el navegador nunca revalida
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        return request.checkNotModified(versionCatalogo.etag(), versionCatalogo.getUltimaModificacion());
+    }
+}
@@ -0,0 +1,88 @@
+package com.sistemagestionapp.demojava.controller;
+
+import com.sistemagestionapp.demojava.model.EstadisticasCatalogo;
+import com.sistemagestionapp.demojava.model.PaginaProductos;
+import com.sistemagestionapp.demojava.model.ProductoResumen;
+import com.sistemagestionapp.demojava.service.BusquedaProductosService;
+import com.sistemagestionapp.demojava.service.EstadisticasCatalogoService;
+import com.sistemagestionapp.demojava.service.ProductoService;
+import com.sistemagestionapp.demojava.service.VersionCatalogo;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.List;
+
+/**
+ * API JSON de solo lectura del catálogo. Mismos parámetros que /productos y misma
+ * validación condicional (ETag / Last-Modified con la versión del catálogo).
+ */
+@RestController
+@RequestMapping("/api/productos")
+public class ProductoApiController {
+
+    private final ProductoService productoService;
+    private final VersionCatalogo versionCatalogo;
+    private final BusquedaProductosService busquedaService;
+    private final EstadisticasCatalogoService estadisticasService;
+
+    public ProductoApiController(ProductoService productoService,
+                                 VersionCatalogo versionCatalogo,
+                                 BusquedaProductosService busquedaService,
+                                 EstadisticasCatalogoService estadisticasService) {
+        this.productoService = productoService;
+        this.versionCatalogo = versionCatalogo;
+        this.busquedaService = busquedaService;
+        this.estadisticasService = estadisticasService;
+    }
+
+    @GetMapping
+    public PaginaProductos listar(@RequestParam(required = false) String orden,
+                                  @RequestParam(required = false) String despues,
+                                  @RequestParam(required = false) String antes,
+                                  @RequestParam(defaultValue = "" + ProductoService.TAMANO_PAGINA_POR_DEFECTO) int tamano,
+                                  WebRequest webRequest,
+                                  HttpServletResponse response) {
+        if (PeticionCondicional.noModificado(versionCatalogo, webRequest, response)) {
+            return null;
+        }
+        return productoService.listarPagina(orden, despues, antes, tamano);
+    }
+
+    /**
+     * Los {@code k} productos que mejor casan con {@code q} por nombre o descripción,
+     * opcionalmente entre los precios {@code min} y {@code max}.
+     */
+    @GetMapping("/buscar")
+    public List<ProductoResumen> buscar(@RequestParam String q,
+                                        @RequestParam(required = false) Double min,
+                                        @RequestParam(required = false) Double max,
+                                        @RequestParam(defaultValue = "" + ProductoService.TAMANO_PAGINA_POR_DEFECTO) int k,
+                                        WebRequest webRequest,
+                                        HttpServletResponse response) {
+        if (PeticionCondicional.noModificado(versionCatalogo, webRequest, response)) {
+            return null;
+        }
+        return busquedaService.buscar(q, min, max, k);
+    }
+
+    /**
+     * Número de productos y precio mínimo, máximo, medio y percentiles. Se sirven desde
+     * memoria; mientras se calculan por primera vez al arrancar se responde 503.
+     */
+    @GetMapping("/stats")
+    public EstadisticasCatalogo estadisticas(WebRequest webRequest, HttpServletResponse response) {
+        if (!estadisticasService.isListas()) {
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader("Retry-After", "5");
+            return null;
+        }
+        if (PeticionCondicional.noModificado(versionCatalogo, webRequest, response)) {
+            return null;
+        }
+        return estadisticasService.obtener();
+    }
+}
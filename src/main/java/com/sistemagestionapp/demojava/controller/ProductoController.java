@@ -1,13 +1,38 @@
 package com.sistemagestionapp.demojava.controller;
 
+import com.sistemagestionapp.demojava.cache.FragmentoHtml;
+import com.sistemagestionapp.demojava.model.OrdenProductos;
+import com.sistemagestionapp.demojava.model.PaginaProductos;
 import com.sistemagestionapp.demojava.model.Producto;
+import com.sistemagestionapp.demojava.model.ProductoResumen;
+import com.sistemagestionapp.demojava.model.ResultadoImportacion;
 import com.sistemagestionapp.demojava.model.mongo.ProductoMongo;
+import com.sistemagestionapp.demojava.service.BusquedaProductosService;
+import com.sistemagestionapp.demojava.service.CambiosProductosService;
+import com.sistemagestionapp.demojava.service.ConflictoVersionException;
+import com.sistemagestionapp.demojava.service.EscrituraDiferidaService;
+import com.sistemagestionapp.demojava.service.ExportacionProductosService;
+import com.sistemagestionapp.demojava.service.ImportacionProductosService;
 import com.sistemagestionapp.demojava.service.ProductoService;
+import com.sistemagestionapp.demojava.service.VersionCatalogo;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
+import org.springframework.ui.ExtendedModelMap;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 import org.springframework.context.annotation.Profile;
+
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
 
 
 
@@ -15,20 +40,61 @@ import java.util.List;
 public class ProductoController {
 
     private final ProductoService productoService;
+    private final ImportacionProductosService importacionService;
+    private final ExportacionProductosService exportacionService;
+    private final VersionCatalogo versionCatalogo;
+    private final BusquedaProductosService busquedaService;
+    private final CambiosProductosService cambiosService;
+    private final TablaProductos tablaProductos;
+    private final EscrituraDiferidaService escrituraDiferida;
 
-    public ProductoController(ProductoService productoService) {
+    public ProductoController(ProductoService productoService,
+                              ImportacionProductosService importacionService,
+                              ExportacionProductosService exportacionService,
+                              VersionCatalogo versionCatalogo,
+                              BusquedaProductosService busquedaService,
+                              CambiosProductosService cambiosService,
+                              TablaProductos tablaProductos,
+                              EscrituraDiferidaService escrituraDiferida) {
         this.productoService = productoService;
+        this.importacionService = importacionService;
+        this.exportacionService = exportacionService;
+        this.versionCatalogo = versionCatalogo;
+        this.busquedaService = busquedaService;
+        this.cambiosService = cambiosService;
+        this.tablaProductos = tablaProductos;
+        this.escrituraDiferida = escrituraDiferida;
     }
 
     /**
-     * Muestra listado + formulario (nuevo o editar).
+     * Muestra una página del listado + formulario (nuevo o editar).
+     * La navegación entre páginas usa los cursores "despues"/"antes" (keyset), no números de página.
+     * Si el catálogo no ha cambiado desde que el navegador la pidió, se responde 304 sin consultar nada.
+     * Con "q" la tabla muestra los mejores resultados de la búsqueda (filtrados por precio) en vez de la página.
      */
     @GetMapping("/productos")
-    public String listarProductos(Model model) {
+    public String listarProductos(@RequestParam(required = false) String orden,
+                                  @RequestParam(required = false) String despues,
+                                  @RequestParam(required = false) String antes,
+                                  @RequestParam(defaultValue = "" + ProductoService.TAMANO_PAGINA_POR_DEFECTO) int tamano,
+                                  @RequestParam(required = false) String q,
+                                  @RequestParam(required = false) Double min,
+                                  @RequestParam(required = false) Double max,
+                                  Model model,
+                                  WebRequest webRequest,
+                                  HttpServletRequest request,
+                                  HttpServletResponse response) {
 
-        List<?> productos = productoService.listarTodos();
+        // Con un aviso pendiente (flash "error") la página no es la misma: no vale el 304
+        if (!model.containsAttribute("error")
+                && PeticionCondicional.noModificado(versionCatalogo, webRequest, response)) {
+            return null;
+        }
 
-        model.addAttribute("productos", productos);
+        FragmentoHtml tabla = obtenerTabla(model, orden, despues, antes, tamano, q, min, max, request, response);
+        model.addAttribute("tablaHtml", tabla.html());
+        model.addAttribute("min", min);
+        model.addAttribute("max", max);
 
         // El formulario puede manejar ambos modelos (SQL o Mongo)
         model.addAttribute("producto", new Producto());
@@ -36,15 +102,61 @@ public class ProductoController {
         return "productos";
     }
 
+    /**
+     * Solo la tabla del listado, con los mismos parámetros que /productos. La usa la página
+     * para refrescarse tras un aviso de cambios sin recargar el formulario. Sale de la caché
+     * ya comprimida si el navegador acepta gzip, y con 304 si el catálogo no ha cambiado.
+     */
+    @GetMapping("/productos/tabla")
+    public void tablaProductos(@RequestParam(required = false) String orden,
+                               @RequestParam(required = false) String despues,
+                               @RequestParam(required = false) String antes,
+                               @RequestParam(defaultValue = "" + ProductoService.TAMANO_PAGINA_POR_DEFECTO) int tamano,
+                               @RequestParam(required = false) String q,
+                               @RequestParam(required = false) Double min,
+                               @RequestParam(required = false) Double max,
+                               WebRequest webRequest,
+                               HttpServletRequest request,
+                               HttpServletResponse response) throws IOException {
+
+        if (PeticionCondicional.noModificado(versionCatalogo, webRequest, response)) {
+            return;
+        }
+
+        FragmentoHtml tabla = obtenerTabla(new ExtendedModelMap(), orden, despues, antes, tamano, q, min, max,
+                request, response);
+
+        response.setContentType("text/html;charset=UTF-8");
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        String aceptadas = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        byte[] cuerpo;
+        if (aceptadas != null && aceptadas.toLowerCase(Locale.ROOT).contains("gzip")) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            cuerpo = tabla.gzip();
+        } else {
+            cuerpo = tabla.bytes();
+        }
+        response.setContentLength(cuerpo.length);
+        response.getOutputStream().write(cuerpo);
+    }
+
     /**
      * Cargar un producto para editarlo.
      * Para Mongo el id es String, para SQL es Long → por eso usamos String.
+     * Solo se vuelve a pintar la página en la que estaba el usuario, no el catálogo entero.
      */
     @GetMapping("/productos/editar/{id}")
-    public String editarProducto(@PathVariable String id, Model model) {
+    public String editarProducto(@PathVariable String id,
+                                 @RequestParam(required = false) String orden,
+                                 @RequestParam(required = false) String despues,
+                                 @RequestParam(required = false) String antes,
+                                 @RequestParam(defaultValue = "" + ProductoService.TAMANO_PAGINA_POR_DEFECTO) int tamano,
+                                 Model model,
+                                 HttpServletRequest request,
+                                 HttpServletResponse response) {
 
-        List<?> productos = productoService.listarTodos();
-        model.addAttribute("productos", productos);
+        FragmentoHtml tabla = obtenerTabla(model, orden, despues, antes, tamano, null, null, null, request, response);
+        model.addAttribute("tablaHtml", tabla.html());
 
         // Buscar dependiendo del motor
         Object producto = productoService.buscarPorId(id);
@@ -53,26 +165,161 @@ public class ProductoController {
         return "productos";
     }
 
+    /**
+     * Deja en el modelo la página (o los resultados de "q") y devuelve la tabla renderizada.
+     * La versión se lee antes de cargar los datos: si hay una escritura en medio, la tabla se
+     * guarda con la versión vieja y nadie la vuelve a pedir con esa clave.
+     */
+    private FragmentoHtml obtenerTabla(Model model, String orden, String despues, String antes, int tamano,
+                                       String q, Double min, Double max,
+                                       HttpServletRequest request, HttpServletResponse response) {
+        long version = versionCatalogo.getVersion();
+        boolean buscar = q != null && !q.isBlank() && busquedaService.isActiva();
+        if (buscar) {
+            // los resultados van en una "página" sin cursores, así la tabla se pinta igual
+            List<ProductoResumen> resultados = busquedaService.buscar(q, min, max, tamano);
+            model.addAttribute("pagina", new PaginaProductos(resultados, OrdenProductos.desde(orden),
+                    Math.min(tamano, ProductoService.TAMANO_PAGINA_MAXIMO), null, null));
+            model.addAttribute("productos", resultados);
+            model.addAttribute("busqueda", q);
+        } else {
+            anadirPagina(model, orden, despues, antes, tamano);
+        }
+        PaginaProductos pagina = (PaginaProductos) model.getAttribute("pagina");
+        String clave = TablaProductos.clave(version, pagina.getOrden(),
+                buscar ? null : despues, buscar ? null : antes, pagina.getTamano(),
+                buscar ? q : null, buscar ? min : null, buscar ? max : null);
+        return tablaProductos.obtener(clave, model.asMap(), request, response);
+    }
+
+    private void anadirPagina(Model model, String orden, String despues, String antes, int tamano) {
+        PaginaProductos pagina = productoService.listarPagina(orden, despues, antes, tamano);
+        model.addAttribute("pagina", pagina);
+        model.addAttribute("productos", pagina.getProductos());
+
+        // cursores de la página actual, para que "Editar" y "Cancelar" vuelvan a ella
+        model.addAttribute("despues", despues);
+        model.addAttribute("antes", antes);
+    }
+
     /**
      * Guardar producto (crear o actualizar).
+     * La versión viaja oculta en el formulario: si otro usuario ha guardado entretanto,
+     * se vuelve al formulario con los datos actuales y un aviso en vez de pisar su cambio.
+     * Las modificaciones pasan por EscrituraDiferidaService, que las agrupa en lotes si está activa.
      */
     @PostMapping("/productos")
     public String guardarProducto(
             @RequestParam(required = false) String id,
             @RequestParam String nombre,
             @RequestParam(required = false) String descripcion,
-            @RequestParam double precio
+            @RequestParam double precio,
+            @RequestParam(required = false) Long version,
+            RedirectAttributes redirectAttributes
     ) {
-        productoService.guardar(id, nombre, descripcion, precio);
+        try {
+            escrituraDiferida.guardar(id, nombre, descripcion, precio, version);
+        } catch (ConflictoVersionException e) {
+            if (e.isBorrado()) {
+                redirectAttributes.addFlashAttribute("error", "Otro usuario ha borrado este producto; no se ha guardado.");
+                return "redirect:/productos";
+            }
+            redirectAttributes.addFlashAttribute("error",
+                    "Otro usuario ha modificado este producto. Se muestran sus datos actuales; repite tu cambio si sigue siendo necesario.");
+            return "redirect:/productos/editar/" + id;
+        }
         return "redirect:/productos";
     }
 
     /**
-     * Eliminar producto.
+     * Eliminar producto (solo si sigue en la versión que se veía en la tabla).
      */
     @GetMapping("/productos/eliminar/{id}")
-    public String eliminarProducto(@PathVariable String id) {
-        productoService.borrarPorId(id);
+    public String eliminarProducto(@PathVariable String id,
+                                   @RequestParam(required = false) Long version,
+                                   RedirectAttributes redirectAttributes) {
+        try {
+            productoService.borrarPorId(id, version);
+        } catch (ConflictoVersionException e) {
+            redirectAttributes.addFlashAttribute("error", "Otro usuario ha modificado este producto; no se ha borrado.");
+        }
         return "redirect:/productos";
     }
-}
\ No newline at end of file
+
+    /**
+     * Cambios del catálogo en directo (Server-Sent Events) para que la tabla se actualice
+     * sin recargar. Al reconectar, el navegador manda Last-Event-ID y recibe lo que se perdió.
+     * Si ya hay demasiadas conexiones abiertas se responde 503 y el navegador reintenta.
+     */
+    @GetMapping(path = "/productos/cambios", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public SseEmitter cambiosProductos(@RequestHeader(name = "Last-Event-ID", required = false) String ultimoId,
+                                       HttpServletResponse response) {
+        try {
+            // que ningún proxy acumule el flujo antes de mandarlo
+            response.setHeader("X-Accel-Buffering", "no");
+            return cambiosService.suscribir(ultimoId);
+        } catch (IllegalStateException e) {
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader(HttpHeaders.RETRY_AFTER, "10");
+            return null;
+        }
+    }
+
+    /**
+     * Importación masiva: el cuerpo es CSV (nombre,descripcion,precio) o NDJSON y se
+     * procesa en streaming. El formato sale del parámetro "formato" o, si no llega,
+     * del Content-Type (application/x-ndjson → NDJSON, cualquier otro → CSV).
+     * Devuelve el resumen en JSON (filas, lotes, errores y filas por segundo).
+     */
+    @PostMapping("/productos/importar")
+    @ResponseBody
+    public ResultadoImportacion importarProductos(@RequestParam(required = false) String formato,
+                                                  HttpServletRequest request) throws IOException {
+        ImportacionProductosService.Formato f;
+        if (formato != null && !formato.isBlank()) {
+            f = "ndjson".equalsIgnoreCase(formato) || "json".equalsIgnoreCase(formato)
+                    ? ImportacionProductosService.Formato.NDJSON
+                    : ImportacionProductosService.Formato.CSV;
+        } else {
+            String contentType = request.getContentType();
+            f = contentType != null && contentType.toLowerCase().contains("ndjson")
+                    ? ImportacionProductosService.Formato.NDJSON
+                    : ImportacionProductosService.Formato.CSV;
+        }
+        return importacionService.importar(request.getInputStream(), f);
+    }
+
+    /**
+     * Exporta el catálogo en CSV o NDJSON escribiendo directamente en la respuesta.
+     * Con "desde" se reanuda a partir de ese id y con gzip=true la respuesta va comprimida.
+     */
+    @GetMapping("/productos/export")
+    public void exportarProductos(@RequestParam(defaultValue = "csv") String formato,
+                                  @RequestParam(required = false) String desde,
+                                  @RequestParam(defaultValue = "false") boolean gzip,
+                                  HttpServletResponse response) throws IOException {
+        boolean ndjson = "ndjson".equalsIgnoreCase(formato) || "json".equalsIgnoreCase(formato);
+
+        response.setContentType(ndjson ? "application/x-ndjson" : "text/csv");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"productos." + (ndjson ? "ndjson" : "csv") + "\"");
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+
+        OutputStream salida = gzip
+                ? new GZIPOutputStream(response.getOutputStream(), 64 * 1024)
+                : response.getOutputStream();
+
+        exportacionService.exportar(
+                ndjson ? ExportacionProductosService.Formato.NDJSON : ExportacionProductosService.Formato.CSV,
+                desde, salida);
+
+        if (salida instanceof GZIPOutputStream gz) {
+            gz.finish();
+        }
+        salida.flush();
+    }
+}
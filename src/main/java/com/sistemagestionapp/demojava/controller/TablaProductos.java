@@ -0,0 +1,81 @@
+package com.sistemagestionapp.demojava.controller;
+
+import com.sistemagestionapp.demojava.cache.CacheLocal;
+import com.sistemagestionapp.demojava.cache.FragmentoHtml;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.WebContext;
+import org.thymeleaf.web.servlet.JakartaServletWebApplication;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tabla del listado (fragmentos/tabla-productos) renderizada una vez por versión del
+ * catálogo y página, y guardada en HTML y en gzip en la caché "tabla-productos".
+ *
+ * <p>Con catálogos grandes pintar el bucle de filas cuesta más que la consulta; con la
+ * caché la página completa solo inserta el HTML ya hecho y /productos/tabla devuelve los
+ * bytes comprimidos sin pasar por Thymeleaf. Aciertos y fallos salen en app.cache.*;
+ * el tiempo de renderizado, en app.vista.tabla.</p>
+ */
+@Component
+class TablaProductos {
+
+    private final ITemplateEngine templateEngine;
+    private final CacheLocal<String, FragmentoHtml> cache;
+    private final JakartaServletWebApplication aplicacion;
+    private final Timer renderizado;
+
+    TablaProductos(ITemplateEngine templateEngine,
+                   @Qualifier("cacheTablaProductos") CacheLocal<String, FragmentoHtml> cache,
+                   ServletContext servletContext,
+                   MeterRegistry meterRegistry) {
+        this.templateEngine = templateEngine;
+        this.cache = cache;
+        this.aplicacion = JakartaServletWebApplication.buildApplication(servletContext);
+        this.renderizado = Timer.builder("app.vista.tabla")
+                .description("Renderizado de la tabla de productos (solo fallos de caché)")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * La tabla para {@code clave} desde la caché, o renderizada con {@code variables}
+     * (productos, pagina, busqueda, despues, antes). La clave debe llevar la versión del
+     * catálogo leída antes de cargar los datos, y todo lo que cambia el HTML.
+     */
+    FragmentoHtml obtener(String clave, Map<String, Object> variables,
+                          HttpServletRequest request, HttpServletResponse response) {
+        return cache.obtener(clave, k -> renderizado.record(() -> renderizar(variables, request, response)));
+    }
+
+    private FragmentoHtml renderizar(Map<String, Object> variables,
+                                     HttpServletRequest request, HttpServletResponse response) {
+        // contexto web: los enlaces @{...} necesitan la petición para el context path
+        WebContext contexto = new WebContext(aplicacion.buildExchange(request, response), request.getLocale(), variables);
+        String html = templateEngine.process("fragmentos/tabla-productos", Set.of("tabla"), contexto);
+        return FragmentoHtml.de(html);
+    }
+
+    /**
+     * Clave de caché: versión del catálogo más todo lo que cambia la tabla (página, orden,
+     * tamaño y búsqueda). Cada valor va con su longitud delante para que ningún texto
+     * (cursor, búsqueda) pueda hacerse pasar por otra combinación de parámetros.
+     */
+    static String clave(long version, String orden, String despues, String antes, int tamano,
+                        String busqueda, Double min, Double max) {
+        StringBuilder clave = new StringBuilder().append(version).append('|').append(tamano);
+        for (Object valor : new Object[]{orden, despues, antes, busqueda, min, max}) {
+            String texto = valor == null ? "" : valor.toString();
+            clave.append('|').append(texto.length()).append(':').append(texto);
+        }
+        return clave.toString();
+    }
+}
@@ -0,0 +1,81 @@
+package com.sistemagestionapp.demojava.datasource;
+
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Varias bases de datos SQL (fragmentos) detrás de un solo DataSource: la conexión va al
+ * fragmento que haya fijado el hilo con {@link #en}, o al 0 si no hay ninguno. El 0 es la
+ * base de datos de siempre (con sus réplicas, si las tiene) y guarda todo lo que no son
+ * productos; en los demás solo está la tabla producto.
+ *
+ * <p>Igual que en {@link DataSourceLecturaEscritura}, la conexión real se pide con la
+ * primera sentencia, así que basta con fijar el fragmento antes de la primera consulta de
+ * la transacción. Una transacción no puede cambiar de fragmento después.</p>
+ */
+public class DataSourceFragmentado extends LazyConnectionDataSourceProxy implements AutoCloseable {
+
+    private static final ThreadLocal<Integer> FRAGMENTO = new ThreadLocal<>();
+
+    private final List<DataSource> fragmentos;
+
+    public DataSourceFragmentado(List<DataSource> fragmentos) {
+        this.fragmentos = List.copyOf(fragmentos);
+        Map<Object, Object> destinos = new HashMap<>();
+        for (int i = 0; i < fragmentos.size(); i++) {
+            destinos.put(i, fragmentos.get(i));
+        }
+        AbstractRoutingDataSource enrutador = new AbstractRoutingDataSource() {
+            @Override
+            protected Object determineCurrentLookupKey() {
+                Integer fragmento = FRAGMENTO.get();
+                return fragmento == null ? 0 : fragmento;
+            }
+        };
+        enrutador.setTargetDataSources(destinos);
+        enrutador.setDefaultTargetDataSource(fragmentos.get(0));
+        enrutador.setLenientFallback(false);
+        enrutador.afterPropertiesSet();
+        setTargetDataSource(enrutador);
+        afterPropertiesSet();
+    }
+
+    /** Ejecuta {@code accion} con las conexiones nuevas de este hilo dirigidas a {@code fragmento}. */
+    public static <T> T en(int fragmento, Supplier<T> accion) {
+        Integer anterior = FRAGMENTO.get();
+        FRAGMENTO.set(fragmento);
+        try {
+            return accion.get();
+        } finally {
+            if (anterior == null) {
+                FRAGMENTO.remove();
+            } else {
+                FRAGMENTO.set(anterior);
+            }
+        }
+    }
+
+    public int getNumeroFragmentos() {
+        return fragmentos.size();
+    }
+
+    /** El DataSource de un fragmento, sin enrutar (para lo que no pasa por JPA). */
+    public DataSource getFragmento(int fragmento) {
+        return fragmentos.get(fragmento);
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (DataSource fragmento : fragmentos) {
+            if (fragmento instanceof AutoCloseable cerrable) {
+                cerrable.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.sistemagestionapp.demojava.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Escrituras al primario y transacciones {@code readOnly} a las réplicas.
+ *
+ * <p>La conexión real se pide al ejecutar la primera sentencia, cuando el gestor de
+ * transacciones ya ha marcado la conexión como de solo lectura; por eso la decisión se
+ * puede tomar aquí y no hace falta tocar servicios ni repositorios.</p>
+ *
+ * <p>Durante {@code primarioTrasEscrituraMs} después de devolver una conexión de escritura
+ * (ya confirmada), las lecturas de quien escribió también van al primario. Así lo que un
+ * usuario lee justo después de guardar no sale de una réplica que aún no tiene su cambio.
+ * Quién escribe lo dice {@code escritor} (p.ej. el usuario autenticado); si devuelve null,
+ * como en las tareas en segundo plano, la escritura no desvía ninguna lectura, y sus
+ * lecturas van siempre a las réplicas. Conviene que el tiempo sea algo más que el retraso
+ * normal de las réplicas.</p>
+ */
+public class DataSourceLecturaEscritura extends LazyConnectionDataSourceProxy implements AutoCloseable {
+
+    private final HikariDataSource primario;
+    private final ReplicasDataSource replicas;
+    private final long primarioTrasEscrituraNanos;
+    private final Supplier<Object> escritor;
+
+    // System.nanoTime de la última escritura de cada escritor; se limpia como mucho una vez por ventana
+    private final Map<Object, Long> ultimasEscrituras = new ConcurrentHashMap<>();
+    private volatile long proximaLimpieza;
+    private final LongAdder lecturasTrasEscritura = new LongAdder();
+
+    public DataSourceLecturaEscritura(HikariDataSource primario, ReplicasDataSource replicas,
+                                      long primarioTrasEscrituraMs, Supplier<Object> escritor) {
+        this.primario = primario;
+        this.replicas = replicas;
+        this.primarioTrasEscrituraNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, primarioTrasEscrituraMs));
+        this.escritor = escritor;
+        setTargetDataSource(new DelegatingDataSource(primario) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                return marcandoAlCerrar(super.getConnection());
+            }
+        });
+        setReadOnlyDataSource(new AbstractDataSource() {
+            @Override
+            public Connection getConnection() throws SQLException {
+                if (recienEscrito()) {
+                    lecturasTrasEscritura.increment();
+                    return DataSourceLecturaEscritura.this.primario.getConnection();
+                }
+                return DataSourceLecturaEscritura.this.replicas.getConnection();
+            }
+
+            @Override
+            public Connection getConnection(String username, String password) {
+                throw new UnsupportedOperationException("Las réplicas usan las credenciales de su pool");
+            }
+        });
+        afterPropertiesSet();
+    }
+
+    private boolean recienEscrito() {
+        if (primarioTrasEscrituraNanos == 0) {
+            return false;
+        }
+        Object quien = escritor.get();
+        Long ultima = quien == null ? null : ultimasEscrituras.get(quien);
+        return ultima != null && System.nanoTime() - ultima < primarioTrasEscrituraNanos;
+    }
+
+    private void anotarEscritura() {
+        Object quien = primarioTrasEscrituraNanos == 0 ? null : escritor.get();
+        if (quien == null) {
+            return;
+        }
+        long ahora = System.nanoTime();
+        ultimasEscrituras.put(quien, ahora);
+        if (ahora - proximaLimpieza >= 0) {
+            proximaLimpieza = ahora + primarioTrasEscrituraNanos;
+            ultimasEscrituras.values().removeIf(t -> ahora - t >= primarioTrasEscrituraNanos);
+        }
+    }
+
+    // close() llega después del commit (o del rollback, que solo alarga la ventana sin necesidad)
+    private Connection marcandoAlCerrar(Connection conexion) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, metodo, args) -> switch (metodo.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    default -> {
+                        try {
+                            yield metodo.invoke(conexion, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getTargetException();
+                        } finally {
+                            if ("close".equals(metodo.getName())) {
+                                anotarEscritura();
+                            }
+                        }
+                    }
+                });
+    }
+
+    public ReplicasDataSource getReplicas() {
+        return replicas;
+    }
+
+    /** Lecturas que fueron al primario por llegar justo después de una escritura de quien lee. */
+    public long getLecturasTrasEscritura() {
+        return lecturasTrasEscritura.sum();
+    }
+
+    @Override
+    public void close() {
+        replicas.close();
+        primario.close();
+    }
+}
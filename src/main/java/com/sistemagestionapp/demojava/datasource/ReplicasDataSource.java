@@ -0,0 +1,205 @@
+package com.sistemagestionapp.demojava.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * DataSource de solo lectura que reparte las conexiones entre varios pools de réplicas.
+ *
+ * <p>Si una réplica no da conexión (caída, pool agotado...) se expulsa durante
+ * {@code expulsionMs} y se prueba la siguiente; pasado ese tiempo vuelve a entrar y,
+ * si sigue mal, se vuelve a expulsar. Si no queda ninguna sana se usa el primario, así
+ * que una caída de las réplicas no tumba las lecturas.</p>
+ *
+ * <p>Con {@code comprobacionMs} > 0 un hilo pide cada ese tiempo una conexión a cada réplica
+ * y la valida: expulsa las que fallan antes de que les llegue una lectura, mantiene fuera
+ * a las que siguen caídas y deja entrar ya a las que se recuperan. Así una petición solo
+ * espera a una réplica muerta si cae entre dos comprobaciones.</p>
+ *
+ * <p>Pensado para ir como {@code readOnlyDataSource} de un
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}.</p>
+ */
+public class ReplicasDataSource extends AbstractDataSource implements AutoCloseable {
+
+    public enum Estrategia {
+        /** Turno rotatorio entre las réplicas sanas. */
+        RONDA,
+        /** La réplica con menos conexiones en uso más hilos esperando. */
+        MENOS_PENDIENTES;
+
+        public static Estrategia desde(String valor) {
+            if (valor == null || valor.isBlank()) {
+                return RONDA;
+            }
+            return valueOf(valor.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicasDataSource.class);
+
+    private final List<HikariDataSource> replicas;
+    private final DataSource primario;
+    private final Estrategia estrategia;
+    private final long expulsionNanos;
+
+    private final AtomicInteger turno = new AtomicInteger();
+    // instante (System.nanoTime) hasta el que cada réplica está fuera; 0 = sana
+    private final AtomicLongArray expulsadaHasta;
+
+    private final LongAdder expulsiones = new LongAdder();
+    private final LongAdder lecturasEnPrimario = new LongAdder();
+    private final ScheduledExecutorService comprobador;
+
+    public ReplicasDataSource(List<HikariDataSource> replicas, DataSource primario,
+                              Estrategia estrategia, long expulsionMs, long comprobacionMs) {
+        if (replicas.isEmpty()) {
+            throw new IllegalArgumentException("Hace falta al menos una réplica");
+        }
+        this.replicas = List.copyOf(replicas);
+        this.primario = primario;
+        this.estrategia = estrategia;
+        this.expulsionNanos = expulsionMs * 1_000_000L;
+        this.expulsadaHasta = new AtomicLongArray(replicas.size());
+        if (comprobacionMs > 0) {
+            this.comprobador = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread hilo = new Thread(r, "replicas-salud");
+                hilo.setDaemon(true);
+                return hilo;
+            });
+            comprobador.scheduleWithFixedDelay(this::comprobar, 0, comprobacionMs, TimeUnit.MILLISECONDS);
+        } else {
+            this.comprobador = null;
+        }
+    }
+
+    private void comprobar() {
+        for (int i = 0; i < replicas.size(); i++) {
+            HikariDataSource replica = replicas.get(i);
+            try (Connection conexion = replica.getConnection()) {
+                if (!conexion.isValid(1)) {
+                    throw new SQLException("la conexión no es válida");
+                }
+                long hasta = expulsadaHasta.getAndSet(i, 0);
+                if (hasta != 0 && System.nanoTime() - hasta < 0) {
+                    log.info("✅ Réplica {} recuperada: vuelve al reparto", replica.getPoolName());
+                }
+            } catch (SQLException e) {
+                if (estaSana(i)) {
+                    expulsar(i, e);
+                } else {
+                    // sigue caída: se alarga la expulsión sin volver a contarla
+                    alargarExpulsion(i);
+                }
+            } catch (RuntimeException e) {
+                // que un fallo raro no pare las comprobaciones siguientes
+                log.warn("No se pudo comprobar la réplica {}: {}", replica.getPoolName(), e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        int n = replicas.size();
+        int inicio = primeraCandidata();
+
+        for (int i = 0; i < n; i++) {
+            int indice = (inicio + i) % n;
+            if (!estaSana(indice)) {
+                continue;
+            }
+            try {
+                return replicas.get(indice).getConnection();
+            } catch (SQLException e) {
+                expulsar(indice, e);
+            }
+        }
+
+        lecturasEnPrimario.increment();
+        return primario.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new UnsupportedOperationException("Las réplicas usan las credenciales de su pool");
+    }
+
+    private int primeraCandidata() {
+        if (estrategia == Estrategia.RONDA) {
+            return Math.floorMod(turno.getAndIncrement(), replicas.size());
+        }
+
+        int mejor = -1;
+        int menosPendientes = Integer.MAX_VALUE;
+        for (int i = 0; i < replicas.size(); i++) {
+            if (!estaSana(i)) {
+                continue;
+            }
+            HikariPoolMXBean pool = replicas.get(i).getHikariPoolMXBean();
+            int pendientes = pool == null ? 0 : pool.getActiveConnections() + pool.getThreadsAwaitingConnection();
+            if (pendientes < menosPendientes) {
+                menosPendientes = pendientes;
+                mejor = i;
+            }
+        }
+        return mejor < 0 ? 0 : mejor;
+    }
+
+    private boolean estaSana(int indice) {
+        long hasta = expulsadaHasta.get(indice);
+        return hasta == 0 || System.nanoTime() - hasta >= 0;
+    }
+
+    private void expulsar(int indice, SQLException causa) {
+        alargarExpulsion(indice);
+        expulsiones.increment();
+        log.warn("⚠️ Réplica {} expulsada durante {} ms: {}",
+                replicas.get(indice).getPoolName(), expulsionNanos / 1_000_000L, causa.getMessage());
+    }
+
+    private void alargarExpulsion(int indice) {
+        long hasta = System.nanoTime() + expulsionNanos;
+        // nanoTime puede valer 0 justo en ese instante: 0 significa "sana"
+        expulsadaHasta.set(indice, hasta == 0 ? 1 : hasta);
+    }
+
+    public int getReplicasSanas() {
+        int sanas = 0;
+        for (int i = 0; i < replicas.size(); i++) {
+            if (estaSana(i)) {
+                sanas++;
+            }
+        }
+        return sanas;
+    }
+
+    public long getExpulsiones() {
+        return expulsiones.sum();
+    }
+
+    public long getLecturasEnPrimario() {
+        return lecturasEnPrimario.sum();
+    }
+
+    @Override
+    public void close() {
+        if (comprobador != null) {
+            comprobador.shutdownNow();
+        }
+        replicas.forEach(HikariDataSource::close);
+    }
+}
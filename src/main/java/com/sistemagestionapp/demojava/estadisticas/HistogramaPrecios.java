@@ -0,0 +1,148 @@
+package com.sistemagestionapp.demojava.estadisticas;
+
+import java.util.Arrays;
+
+/**
+ * Histograma de precios con cubetas logarítmicas (como DDSketch) para calcular percentiles
+ * con un error relativo acotado.
+ *
+ * <p>La cubeta {@code i} recoge los precios de (γ^(i-1), γ^i], con γ = (1+α)/(1-α); al
+ * responder con 2γ^i/(γ+1) el error relativo de cualquier percentil es como mucho α. Con
+ * α = 1 % bastan unas 1.000 cubetas para ir de céntimos a millones. Como cada precio cae
+ * siempre en la misma cubeta se puede quitar igual que se añade, y dos histogramas con el
+ * mismo α se fusionan sumando cubetas.</p>
+ *
+ * <p>Los precios menores o iguales que {@link #MINIMO} (0 y negativos) se cuentan aparte
+ * y se responden como 0. No es seguro entre hilos: quien lo use se encarga del candado.</p>
+ */
+public class HistogramaPrecios {
+
+    public static final double MINIMO = 1e-9;
+
+    private final double errorRelativo;
+    private final double gamma;
+    private final double logGamma;
+
+    private long[] cuentas = new long[0];
+    private int primera;    // índice de cubeta de cuentas[0]
+    private long ceros;
+    private long total;
+
+    public HistogramaPrecios(double errorRelativo) {
+        if (!(errorRelativo > 0 && errorRelativo < 1)) {
+            throw new IllegalArgumentException("El error relativo debe estar entre 0 y 1: " + errorRelativo);
+        }
+        this.errorRelativo = errorRelativo;
+        this.gamma = (1 + errorRelativo) / (1 - errorRelativo);
+        this.logGamma = Math.log(gamma);
+    }
+
+    public void anadir(double precio) {
+        anadir(precio, 1);
+    }
+
+    /** Añade {@code n} productos con el mismo precio (carga desde un GROUP BY precio). */
+    public void anadir(double precio, long n) {
+        if (n <= 0) {
+            return;
+        }
+        if (precio <= MINIMO) {
+            ceros += n;
+        } else {
+            int indice = indice(precio);
+            asegurar(indice);
+            cuentas[indice - primera] += n;
+        }
+        total += n;
+    }
+
+    /** Quita un producto con ese precio. Si no estaba contado no hace nada. */
+    public void quitar(double precio) {
+        if (precio <= MINIMO) {
+            if (ceros > 0) {
+                ceros--;
+                total--;
+            }
+            return;
+        }
+        int posicion = indice(precio) - primera;
+        if (posicion >= 0 && posicion < cuentas.length && cuentas[posicion] > 0) {
+            cuentas[posicion]--;
+            total--;
+        }
+    }
+
+    /** Suma las cubetas de {@code otro}, que debe tener el mismo error relativo. */
+    public void fusionar(HistogramaPrecios otro) {
+        if (otro.errorRelativo != errorRelativo) {
+            throw new IllegalArgumentException("No se pueden fusionar histogramas con distinto error relativo");
+        }
+        if (otro.cuentas.length > 0) {
+            asegurar(otro.primera);
+            asegurar(otro.primera + otro.cuentas.length - 1);
+            for (int i = 0; i < otro.cuentas.length; i++) {
+                cuentas[otro.primera + i - primera] += otro.cuentas[i];
+            }
+        }
+        ceros += otro.ceros;
+        total += otro.total;
+    }
+
+    /**
+     * Precio del cuantil {@code q} (0 a 1) con error relativo como mucho {@link #getErrorRelativo()},
+     * o NaN si está vacío. Recorre las cubetas: O(cubetas), no depende del número de productos.
+     */
+    public double cuantil(double q) {
+        if (total == 0) {
+            return Double.NaN;
+        }
+        long rango = (long) Math.floor(Math.min(Math.max(q, 0), 1) * (total - 1));
+        long acumulado = ceros;
+        if (rango < acumulado) {
+            return 0;
+        }
+        for (int i = 0; i < cuentas.length; i++) {
+            acumulado += cuentas[i];
+            if (rango < acumulado) {
+                return 2 * Math.pow(gamma, primera + i) / (gamma + 1);
+            }
+        }
+        // no debería llegar aquí: total y cuentas van a la par
+        return 2 * Math.pow(gamma, primera + cuentas.length - 1) / (gamma + 1);
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public double getErrorRelativo() {
+        return errorRelativo;
+    }
+
+    public int getCubetas() {
+        return cuentas.length;
+    }
+
+    private int indice(double precio) {
+        return (int) Math.ceil(Math.log(precio) / logGamma);
+    }
+
+    /** Amplía el array para que quepa la cubeta {@code indice}, por delante o por detrás. */
+    private void asegurar(int indice) {
+        if (cuentas.length == 0) {
+            cuentas = new long[16];
+            primera = indice - 8;
+            return;
+        }
+        if (indice < primera) {
+            int hueco = Math.max(primera - indice, cuentas.length >> 1);
+            long[] nuevas = new long[cuentas.length + hueco];
+            System.arraycopy(cuentas, 0, nuevas, hueco, cuentas.length);
+            cuentas = nuevas;
+            primera -= hueco;
+        } else if (indice >= primera + cuentas.length) {
+            int hueco = Math.max(indice - primera - cuentas.length + 1, cuentas.length >> 1);
+            cuentas = Arrays.copyOf(cuentas, cuentas.length + hueco);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.sistemagestionapp.demojava.migracion;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Un lado de la migración (SQL o Mongo). Todo se lee en streaming: nunca hay en memoria
+ * más de un lote por hilo.
+ */
+interface Almacen {
+
+    /** Una fila / documento: id y valores en el orden de {@link TablaMigrada#getCampos()}. */
+    record Fila(Object id, Object[] valores) {
+
+        /**
+         * Huella de 64 bits de la fila (FNV-1a sobre id y valores normalizados). La de una
+         * tabla es la suma de las de sus filas, así no depende del orden de lectura.
+         */
+        long huella() {
+            long h = 0xcbf29ce484222325L;
+            h = mezclar(h, String.valueOf(id));
+            for (Object valor : valores) {
+                h = mezclar(h, valor == null ? "\u0000" : valor.toString());
+            }
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            return h;
+        }
+
+        private static long mezclar(long h, String texto) {
+            for (byte b : texto.getBytes(StandardCharsets.UTF_8)) {
+                h ^= b & 0xff;
+                h *= 0x100000001b3L;
+            }
+            // separador, para que ("ab","c") y ("a","bc") no den lo mismo
+            h ^= 0xff;
+            return h * 0x100000001b3L;
+        }
+    }
+
+    /**
+     * Reparto de una tabla en tramos. {@code base}: mayor id numérico visto en Mongo; los
+     * documentos con _id no numérico reciben en SQL ids por encima de él.
+     */
+    record Plan(List<Tramo> tramos, long base) {
+    }
+
+    /** Escritura de un tramo en el destino; en SQL es una transacción. */
+    interface Escritor extends AutoCloseable {
+
+        void escribir(List<Fila> lote);
+
+        void confirmar();
+
+        @Override
+        void close();
+    }
+
+    Plan planificar(TablaMigrada tabla, int tamanoTramo);
+
+    /** Pasa a {@code destino} las filas del tramo, en orden de id. */
+    void leer(Tramo tramo, Consumer<Fila> destino);
+
+    /** Pasa a {@code destino} todas las filas de la tabla (para verificar). */
+    void recorrer(TablaMigrada tabla, Consumer<Fila> destino);
+
+    long contar(TablaMigrada tabla);
+
+    /**
+     * @param limpiar el tramo ya se empezó antes: hay que sustituir lo que haya escrito
+     */
+    Escritor escritor(TablaMigrada tabla, boolean limpiar);
+
+    void vaciar(TablaMigrada tabla);
+
+    /** Tras copiar todo, deja el destino listo para insertar (ids autogenerados). */
+    void terminar(TablaMigrada tabla);
+}
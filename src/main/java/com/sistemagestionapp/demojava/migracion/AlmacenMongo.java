@@ -0,0 +1,165 @@
+package com.sistemagestionapp.demojava.migracion;
+
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Lado Mongo de la migración, con el driver a pelo (documentos BSON, sin mapear a
+ * ProductoMongo) y cursores con batchSize.
+ *
+ * <p>Como destino escribe con replaceOne + upsert por _id, así repetir un tramo a medias
+ * no duplica nada. Los ids SQL pasan a _id de tipo String ("123"), que Spring Data lee
+ * igual que un ObjectId en {@code String id}.</p>
+ */
+class AlmacenMongo implements Almacen {
+
+    private static final Pattern NUMERICO = Pattern.compile("\\d{1,18}");
+
+    private final MongoTemplate mongoTemplate;
+    private final int tamanoLote;
+
+    AlmacenMongo(MongoTemplate mongoTemplate, int tamanoLote) {
+        this.mongoTemplate = mongoTemplate;
+        this.tamanoLote = tamanoLote;
+    }
+
+    /**
+     * Recorre solo los _id en orden (los sirve el índice, sin leer documentos) y corta un
+     * tramo cada {@code tamanoTramo} documentos o cuando cambia el tipo del _id.
+     */
+    @Override
+    public Plan planificar(TablaMigrada tabla, int tamanoTramo) {
+        List<Tramo> tramos = new ArrayList<>();
+        long base = 0;
+        Object primero = null;
+        Object anterior = null;
+        int enTramo = 0;
+        try (MongoCursor<Document> cursor = coleccion(tabla).find()
+                .projection(Projections.include("_id"))
+                .sort(Sorts.ascending("_id"))
+                .batchSize(10_000)
+                .cursor()) {
+            while (cursor.hasNext()) {
+                Object id = cursor.next().get("_id");
+                if (primero != null && (enTramo == tamanoTramo || id.getClass() != anterior.getClass())) {
+                    tramos.add(new Tramo(tabla, tramos.size(), primero, anterior));
+                    primero = null;
+                }
+                if (primero == null) {
+                    primero = id;
+                    enTramo = 0;
+                }
+                enTramo++;
+                anterior = id;
+                Long numerico = idNumerico(id);
+                if (numerico != null) {
+                    base = Math.max(base, numerico);
+                }
+            }
+        }
+        if (primero != null) {
+            tramos.add(new Tramo(tabla, tramos.size(), primero, anterior));
+        }
+        return new Plan(tramos, base);
+    }
+
+    @Override
+    public void leer(Tramo tramo, Consumer<Fila> destino) {
+        Bson rango = Filters.and(Filters.gte("_id", tramo.primero()), Filters.lte("_id", tramo.ultimo()));
+        recorrer(tramo.tabla(), rango, true, destino);
+    }
+
+    @Override
+    public void recorrer(TablaMigrada tabla, Consumer<Fila> destino) {
+        recorrer(tabla, new Document(), false, destino);
+    }
+
+    @Override
+    public long contar(TablaMigrada tabla) {
+        return coleccion(tabla).countDocuments();
+    }
+
+    @Override
+    public Escritor escritor(TablaMigrada tabla, boolean limpiar) {
+        // con upsert por _id repetir es inofensivo: no hay nada que limpiar
+        MongoCollection<Document> coleccion = coleccion(tabla);
+        return new Escritor() {
+            @Override
+            public void escribir(List<Fila> lote) {
+                List<WriteModel<Document>> operaciones = new ArrayList<>(lote.size());
+                for (Fila fila : lote) {
+                    Document documento = new Document("_id", fila.id());
+                    for (int i = 0; i < fila.valores().length; i++) {
+                        documento.append(tabla.getCampos().get(i).nombre(), fila.valores()[i]);
+                    }
+                    operaciones.add(new ReplaceOneModel<>(Filters.eq("_id", fila.id()), documento,
+                            new ReplaceOptions().upsert(true)));
+                }
+                coleccion.bulkWrite(operaciones, new BulkWriteOptions().ordered(false));
+            }
+
+            @Override
+            public void confirmar() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @Override
+    public void vaciar(TablaMigrada tabla) {
+        coleccion(tabla).deleteMany(new Document());
+    }
+
+    @Override
+    public void terminar(TablaMigrada tabla) {
+        // los _id nuevos son ObjectId: no hay secuencia que ajustar
+    }
+
+    /** Id en SQL de un _id de Mongo: si es un número en texto se conserva; si no, null. */
+    static Long idNumerico(Object id) {
+        return id instanceof String texto && NUMERICO.matcher(texto).matches() ? Long.parseLong(texto) : null;
+    }
+
+    private void recorrer(TablaMigrada tabla, Bson filtro, boolean ordenado, Consumer<Fila> destino) {
+        List<String> nombres = tabla.getCampos().stream().map(TablaMigrada.Campo::nombre).toList();
+        FindIterable<Document> consulta = coleccion(tabla).find(filtro)
+                .projection(Projections.include(nombres))
+                .batchSize(tamanoLote);
+        if (ordenado) {
+            consulta.sort(Sorts.ascending("_id"));
+        }
+        try (MongoCursor<Document> cursor = consulta.cursor()) {
+            while (cursor.hasNext()) {
+                Document documento = cursor.next();
+                Object[] valores = new Object[nombres.size()];
+                for (int i = 0; i < valores.length; i++) {
+                    valores[i] = documento.get(nombres.get(i));
+                }
+                destino.accept(new Fila(documento.get("_id"), tabla.normalizar(valores)));
+            }
+        }
+    }
+
+    private MongoCollection<Document> coleccion(TablaMigrada tabla) {
+        return mongoTemplate.getCollection(tabla.getColeccion());
+    }
+}
@@ -0,0 +1,233 @@
+package com.sistemagestionapp.demojava.migracion;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * Lado SQL de la migración, con JDBC directo sobre el DataSource de la aplicación: sin
+ * contexto de persistencia que vaya acumulando entidades. Las lecturas van con fetch size
+ * (en Postgres hace falta autocommit desactivado; en MySQL, useCursorFetch de JpaConfig).
+ */
+class AlmacenSql implements Almacen {
+
+    private final DataSource dataSource;
+    private final int tamanoLote;
+
+    AlmacenSql(DataSource dataSource, int tamanoLote) {
+        this.dataSource = dataSource;
+        this.tamanoLote = tamanoLote;
+    }
+
+    /** Tramos de {@code tamanoTramo} ids consecutivos entre el menor y el mayor. */
+    @Override
+    public Plan planificar(TablaMigrada tabla, int tamanoTramo) {
+        try (Connection con = dataSource.getConnection();
+             Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery("select min(id), max(id) from " + tabla.getTablaSql())) {
+            rs.next();
+            long min = rs.getLong(1);
+            if (rs.wasNull()) {
+                return new Plan(List.of(), 0);
+            }
+            long max = rs.getLong(2);
+            List<Tramo> tramos = new ArrayList<>();
+            for (long desde = min; desde <= max; desde += tamanoTramo) {
+                tramos.add(new Tramo(tabla, tramos.size(), desde, Math.min(max, desde + tamanoTramo - 1)));
+            }
+            return new Plan(tramos, 0);
+        } catch (SQLException e) {
+            throw new IllegalStateException("No se pudo planificar " + tabla.getTablaSql() + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void leer(Tramo tramo, Consumer<Fila> destino) {
+        TablaMigrada tabla = tramo.tabla();
+        String sql = "select id, " + columnas(tabla) + " from " + tabla.getTablaSql()
+                + " where id >= ? and id <= ? order by id";
+        consultar(tabla, sql, ps -> {
+            ps.setLong(1, (Long) tramo.primero());
+            ps.setLong(2, (Long) tramo.ultimo());
+        }, destino);
+    }
+
+    @Override
+    public void recorrer(TablaMigrada tabla, Consumer<Fila> destino) {
+        consultar(tabla, "select id, " + columnas(tabla) + " from " + tabla.getTablaSql(), ps -> { }, destino);
+    }
+
+    @Override
+    public long contar(TablaMigrada tabla) {
+        try (Connection con = dataSource.getConnection();
+             Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery("select count(*) from " + tabla.getTablaSql())) {
+            rs.next();
+            return rs.getLong(1);
+        } catch (SQLException e) {
+            throw new IllegalStateException("No se pudo contar " + tabla.getTablaSql() + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Escritor escritor(TablaMigrada tabla, boolean limpiar) {
+        try {
+            return new EscritorSql(tabla, limpiar);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Sin conexión para escribir en " + tabla.getTablaSql() + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void vaciar(TablaMigrada tabla) {
+        try (Connection con = dataSource.getConnection();
+             Statement st = con.createStatement()) {
+            st.executeUpdate("delete from " + tabla.getTablaSql());
+        } catch (SQLException e) {
+            throw new IllegalStateException("No se pudo vaciar " + tabla.getTablaSql() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Los ids se han insertado a mano: la columna identity se adelanta por encima del mayor
+     * para que los registros que vengan después no choquen con ellos (en MySQL el
+     * auto_increment se ajusta solo). La secuencia producto_seq ya la adelanta
+     * DataInitializer al arrancar.
+     */
+    @Override
+    public void terminar(TablaMigrada tabla) {
+        if (!tabla.isIdentidad()) {
+            return;
+        }
+        try (Connection con = dataSource.getConnection();
+             Statement st = con.createStatement()) {
+            if (con.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT).contains("mysql")) {
+                return;
+            }
+            long siguiente;
+            try (ResultSet rs = st.executeQuery("select coalesce(max(id), 0) + 1 from " + tabla.getTablaSql())) {
+                rs.next();
+                siguiente = rs.getLong(1);
+            }
+            st.executeUpdate("alter table " + tabla.getTablaSql() + " alter column id restart with " + siguiente);
+        } catch (SQLException e) {
+            throw new IllegalStateException("No se pudo ajustar el id de " + tabla.getTablaSql() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private interface Parametros {
+        void poner(PreparedStatement ps) throws SQLException;
+    }
+
+    private void consultar(TablaMigrada tabla, String sql, Parametros parametros, Consumer<Fila> destino) {
+        int numCampos = tabla.getCampos().size();
+        try (Connection con = dataSource.getConnection()) {
+            con.setAutoCommit(false);
+            con.setReadOnly(true);
+            try (PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                ps.setFetchSize(tamanoLote);
+                parametros.poner(ps);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        Object[] valores = new Object[numCampos];
+                        for (int i = 0; i < numCampos; i++) {
+                            valores[i] = rs.getObject(i + 2);
+                        }
+                        destino.accept(new Fila(rs.getLong(1), tabla.normalizar(valores)));
+                    }
+                }
+            } finally {
+                con.rollback();
+                con.setReadOnly(false);
+                con.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Error leyendo " + tabla.getTablaSql() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static String columnas(TablaMigrada tabla) {
+        return String.join(", ", tabla.getCampos().stream().map(TablaMigrada.Campo::nombre).toList());
+    }
+
+    /** Un tramo = una transacción: si el proceso muere a medias, no queda nada escrito de él. */
+    private final class EscritorSql implements Escritor {
+
+        private final TablaMigrada tabla;
+        private final boolean limpiar;
+        private final Connection con;
+        private final PreparedStatement insert;
+        private final PreparedStatement delete;
+        private boolean confirmado;
+
+        EscritorSql(TablaMigrada tabla, boolean limpiar) throws SQLException {
+            this.tabla = tabla;
+            this.limpiar = limpiar;
+            this.con = dataSource.getConnection();
+            try {
+                con.setAutoCommit(false);
+                String marcas = String.join(", ", Collections.nCopies(tabla.getCampos().size() + 1, "?"));
+                this.insert = con.prepareStatement("insert into " + tabla.getTablaSql()
+                        + " (id, " + columnas(tabla) + ") values (" + marcas + ")");
+                this.delete = limpiar ? con.prepareStatement("delete from " + tabla.getTablaSql() + " where id = ?") : null;
+            } catch (SQLException e) {
+                con.close();
+                throw e;
+            }
+        }
+
+        @Override
+        public void escribir(List<Fila> lote) {
+            try {
+                if (limpiar) {
+                    // lo que se escribió en un intento anterior cuyo commit llegó pero su "fin" no
+                    for (Fila fila : lote) {
+                        delete.setLong(1, (Long) fila.id());
+                        delete.addBatch();
+                    }
+                    delete.executeBatch();
+                }
+                for (Fila fila : lote) {
+                    insert.setLong(1, (Long) fila.id());
+                    for (int i = 0; i < fila.valores().length; i++) {
+                        insert.setObject(i + 2, fila.valores()[i]);
+                    }
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            } catch (SQLException e) {
+                throw new IllegalStateException("Error escribiendo en " + tabla.getTablaSql() + ": " + e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public void confirmar() {
+            try {
+                con.commit();
+                confirmado = true;
+            } catch (SQLException e) {
+                throw new IllegalStateException("Error confirmando en " + tabla.getTablaSql() + ": " + e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public void close() {
+            try (con) {
+                if (!confirmado) {
+                    con.rollback();
+                }
+                con.setAutoCommit(true);
+            } catch (SQLException e) {
+                throw new IllegalStateException("Error cerrando la conexión: " + e.getMessage(), e);
+            }
+        }
+    }
+}
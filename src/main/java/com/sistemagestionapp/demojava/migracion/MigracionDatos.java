@@ -0,0 +1,304 @@
+package com.sistemagestionapp.demojava.migracion;
+
+import com.sistemagestionapp.demojava.datasource.DataSourceFragmentado;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copia productos y usuarios de SQL a Mongo o al revés, para cambiar de motor sin perder
+ * el catálogo. Se ejecuta al arrancar si hay {@code app.migracion.direccion}
+ * (sql-a-mongo | mongo-a-sql) y al acabar cierra la aplicación:
+ *
+ * <pre>
+ * java -jar app.jar --spring.profiles.active=mysql --server.port=0 --management.server.port=0 \
+ *      --app.migracion.direccion=sql-a-mongo
+ * </pre>
+ *
+ * Hacen falta los dos motores a la vez: un perfil SQL (h2, mysql o postgres) con Mongo
+ * activo (en h2 además {@code --app.mongo.enabled=true}). Con el perfil mongo no hay
+ * DataSource. Mientras dura, la aplicación no debería estar escribiendo en el origen.
+ *
+ * <ol>
+ *     <li>Plan: cada tabla se parte en tramos de {@code tamano-tramo} ids (en Mongo se
+ *     recorren solo los _id para cortarlos).</li>
+ *     <li>Copia: los tramos se reparten en un ForkJoinPool de {@code hilos}; cada uno se
+ *     lee en streaming y se escribe en lotes de {@code tamano-lote} (lote JDBC dentro de
+ *     una transacción por tramo, o bulkWrite con upsert), así que en memoria nunca hay más
+ *     de un lote por hilo. Un tramo que falla no para a los demás.</li>
+ *     <li>Punto de control: el plan y cada tramo terminado se apuntan en
+ *     {@code punto-control}; si el proceso muere, al relanzarlo con lo mismo sigue donde
+ *     iba.</li>
+ *     <li>Verificación: se recorre el destino entero y su número de filas y huella (suma
+ *     de un hash por fila) tienen que coincidir con los del origen.</li>
+ * </ol>
+ *
+ * En mongo-a-sql los _id que son un número en texto (los que vinieron de SQL) conservan el
+ * id; los ObjectId reciben ids nuevos por encima del mayor, fijos para cada tramo. El
+ * destino tiene que estar vacío o hay que pedir que se vacíe con {@code vaciar-destino}.
+ */
+@Component
+public class MigracionDatos implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(MigracionDatos.class);
+
+    private final ObjectProvider<DataSource> dataSource;
+    private final ObjectProvider<MongoTemplate> mongoTemplate;
+    private final ConfigurableApplicationContext contexto;
+    private final String direccion;
+    private final int hilos;
+    private final int tamanoTramo;
+    private final int tamanoLote;
+    private final Path puntoControl;
+    private final boolean reiniciar;
+    private final boolean vaciarDestino;
+
+    public MigracionDatos(ObjectProvider<DataSource> dataSource,
+                          ObjectProvider<MongoTemplate> mongoTemplate,
+                          ConfigurableApplicationContext contexto,
+                          @Value("${app.migracion.direccion:}") String direccion,
+                          @Value("${app.migracion.hilos:4}") int hilos,
+                          @Value("${app.migracion.tamano-tramo:10000}") int tamanoTramo,
+                          @Value("${app.migracion.tamano-lote:1000}") int tamanoLote,
+                          @Value("${app.migracion.punto-control:./data/migracion.txt}") String puntoControl,
+                          @Value("${app.migracion.reiniciar:false}") boolean reiniciar,
+                          @Value("${app.migracion.vaciar-destino:false}") boolean vaciarDestino) {
+        this.dataSource = dataSource;
+        this.mongoTemplate = mongoTemplate;
+        this.contexto = contexto;
+        this.direccion = direccion == null ? "" : direccion.trim().toLowerCase();
+        this.hilos = Math.max(1, hilos);
+        this.tamanoTramo = Math.max(1, tamanoTramo);
+        this.tamanoLote = Math.max(1, tamanoLote);
+        this.puntoControl = Path.of(puntoControl);
+        this.reiniciar = reiniciar;
+        this.vaciarDestino = vaciarDestino;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (direccion.isEmpty()) {
+            return;
+        }
+        int codigo = migrar();
+        System.exit(SpringApplication.exit(contexto, () -> codigo));
+    }
+
+    /** @return 0 si todo ha ido bien, 1 si quedan tramos por migrar, 2 si la verificación no cuadra */
+    int migrar() {
+        DataSource ds = dataSource.getIfAvailable();
+        MongoTemplate mongo = mongoTemplate.getIfAvailable();
+        if (ds == null || mongo == null) {
+            throw new IllegalStateException("La migración necesita SQL y Mongo a la vez: perfil h2/mysql/postgres"
+                    + " con app.mongo.enabled=true (hay DataSource: " + (ds != null) + ", hay Mongo: " + (mongo != null) + ")");
+        }
+        if (ds instanceof DataSourceFragmentado) {
+            throw new IllegalStateException("La migración no admite productos en varios fragmentos (app.db.fragmentos.hosts)");
+        }
+        Almacen sql = new AlmacenSql(ds, tamanoLote);
+        Almacen mongoDb = new AlmacenMongo(mongo, tamanoLote);
+        boolean haciaSql = switch (direccion) {
+            case "sql-a-mongo" -> false;
+            case "mongo-a-sql" -> true;
+            default -> throw new IllegalArgumentException(
+                    "app.migracion.direccion debe ser 'sql-a-mongo' o 'mongo-a-sql': " + direccion);
+        };
+        Almacen origen = haciaSql ? mongoDb : sql;
+        Almacen destino = haciaSql ? sql : mongoDb;
+
+        long inicio = System.nanoTime();
+        try (PuntoControlMigracion punto = PuntoControlMigracion.abrir(puntoControl, direccion, reiniciar)) {
+            if (punto.tienePlan()) {
+                log.info("ℹ️ Migración {}: se reanuda desde {}", direccion, puntoControl);
+            } else {
+                prepararDestino(destino);
+                Map<TablaMigrada, Almacen.Plan> planes = new EnumMap<>(TablaMigrada.class);
+                for (TablaMigrada tabla : TablaMigrada.values()) {
+                    planes.put(tabla, origen.planificar(tabla, tamanoTramo));
+                }
+                punto.guardarPlan(planes);
+            }
+
+            List<Tramo> pendientes = new ArrayList<>();
+            int total = 0;
+            for (TablaMigrada tabla : TablaMigrada.values()) {
+                for (Tramo tramo : punto.getTramos(tabla)) {
+                    total++;
+                    if (!punto.estaTerminado(tramo)) {
+                        pendientes.add(tramo);
+                    }
+                }
+            }
+            log.info("ℹ️ Migración {}: {} tramos, {} pendientes, {} hilos", direccion, total, pendientes.size(), hilos);
+
+            int fallidos = copiar(pendientes, origen, destino, haciaSql, punto, total - pendientes.size(), total);
+            if (fallidos > 0) {
+                log.error("❌ Migración {}: {} tramos han fallado; vuelve a lanzarla para reintentarlos", direccion, fallidos);
+                return 1;
+            }
+            for (TablaMigrada tabla : TablaMigrada.values()) {
+                destino.terminar(tabla);
+            }
+
+            boolean cuadra = true;
+            for (TablaMigrada tabla : TablaMigrada.values()) {
+                cuadra &= verificar(tabla, origen, destino, punto);
+            }
+            log.info("{} Migración {} terminada en {} s", cuadra ? "✅" : "❌", direccion,
+                    (System.nanoTime() - inicio) / 1_000_000_000);
+            return cuadra ? 0 : 2;
+        }
+    }
+
+    /**
+     * Una migración nueva empieza con el destino vacío: si no, la verificación no cuadraría
+     * y en SQL chocarían los ids. Vaciarlo hay que pedirlo (en SQL siempre está al menos el
+     * admin que crea DataInitializer al arrancar).
+     */
+    private void prepararDestino(Almacen destino) {
+        for (TablaMigrada tabla : TablaMigrada.values()) {
+            long existentes = destino.contar(tabla);
+            if (existentes == 0) {
+                continue;
+            }
+            if (!vaciarDestino) {
+                throw new IllegalStateException("El destino ya tiene " + existentes + " " + tabla.name().toLowerCase()
+                        + "; lanza la migración con app.migracion.vaciar-destino=true para borrarlos antes de copiar");
+            }
+            destino.vaciar(tabla);
+            log.info("ℹ️ Migración {}: borrados {} {} del destino", direccion, existentes, tabla.name().toLowerCase());
+        }
+    }
+
+    private int copiar(List<Tramo> tramos, Almacen origen, Almacen destino, boolean haciaSql,
+                       PuntoControlMigracion punto, int hechos, int total) {
+        AtomicInteger terminados = new AtomicInteger(hechos);
+        AtomicLong filasCopiadas = new AtomicLong();
+        long inicio = System.nanoTime();
+        List<Callable<Void>> tareas = new ArrayList<>(tramos.size());
+        for (Tramo tramo : tramos) {
+            tareas.add(() -> {
+                long filas = copiarTramo(tramo, origen, destino, haciaSql, punto);
+                long copiadas = filasCopiadas.addAndGet(filas);
+                long ms = Math.max(1, (System.nanoTime() - inicio) / 1_000_000);
+                log.info("ℹ️ Migración: tramo {} ({} filas), {}/{} tramos, {} filas/s",
+                        tramo, filas, terminados.incrementAndGet(), total, copiadas * 1000 / ms);
+                return null;
+            });
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(hilos);
+        try {
+            int fallidos = 0;
+            List<Future<Void>> resultados = pool.invokeAll(tareas);
+            for (int i = 0; i < resultados.size(); i++) {
+                try {
+                    resultados.get(i).get();
+                } catch (ExecutionException e) {
+                    fallidos++;
+                    log.error("❌ Migración: tramo {} fallido: {}", tramos.get(i), e.getCause().getMessage(), e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Migración interrumpida", e);
+                }
+            }
+            return fallidos;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Copia un tramo por lotes y lo apunta como terminado con sus filas y su huella. */
+    private long copiarTramo(Tramo tramo, Almacen origen, Almacen destino, boolean haciaSql,
+                             PuntoControlMigracion punto) {
+        boolean repetido = punto.estaIniciado(tramo);
+        punto.iniciar(tramo);
+        long base = punto.getBase(tramo.tabla());
+        List<Almacen.Fila> lote = new ArrayList<>(tamanoLote);
+        long[] filas = {0};
+        long[] huella = {0};
+        try (Almacen.Escritor escritor = destino.escritor(tramo.tabla(), repetido)) {
+            origen.leer(tramo, fila -> {
+                Almacen.Fila copia = new Almacen.Fila(idDestino(fila.id(), tramo, filas[0], base, haciaSql), fila.valores());
+                filas[0]++;
+                huella[0] += copia.huella();
+                lote.add(copia);
+                if (lote.size() == tamanoLote) {
+                    escritor.escribir(lote);
+                    lote.clear();
+                }
+            });
+            if (!lote.isEmpty()) {
+                escritor.escribir(lote);
+            }
+            escritor.confirmar();
+        }
+        punto.terminar(tramo, filas[0], huella[0]);
+        return filas[0];
+    }
+
+    /**
+     * Id de la fila en el destino. A Mongo va como texto. A SQL, un _id numérico se queda
+     * como está y los demás toman el hueco {@code posicion} del tramo por encima de
+     * {@code base}: reservar {@code tamano-tramo} ids por tramo hace que sean siempre los
+     * mismos al repetirlo.
+     */
+    private Object idDestino(Object id, Tramo tramo, long posicion, long base, boolean haciaSql) {
+        if (!haciaSql) {
+            return String.valueOf(id);
+        }
+        Long numerico = AlmacenMongo.idNumerico(id);
+        if (numerico != null) {
+            return numerico;
+        }
+        if (posicion >= tamanoTramo) {
+            throw new IllegalStateException("El tramo " + tramo + " tiene más documentos que al planificarlo;"
+                    + " no se puede escribir en el origen durante la migración");
+        }
+        return base + (long) tramo.numero() * tamanoTramo + posicion + 1;
+    }
+
+    private boolean verificar(TablaMigrada tabla, Almacen origen, Almacen destino, PuntoControlMigracion punto) {
+        long[] esperado = punto.getTotales(tabla);
+        long[] filas = {0};
+        long[] huella = {0};
+        destino.recorrer(tabla, fila -> {
+            filas[0]++;
+            huella[0] += fila.huella();
+        });
+        long enOrigen = origen.contar(tabla);
+        String nombre = tabla.name().toLowerCase();
+        if (filas[0] != esperado[0] || huella[0] != esperado[1]) {
+            log.error("❌ Verificación de {}: el origen tenía {} filas (huella {}) y el destino tiene {} (huella {})",
+                    nombre, esperado[0], Long.toHexString(esperado[1]), filas[0], Long.toHexString(huella[0]));
+            return false;
+        }
+        if (enOrigen != esperado[0]) {
+            log.error("❌ Verificación de {}: se copiaron {} filas pero ahora el origen tiene {}; ha cambiado durante la migración",
+                    nombre, esperado[0], enOrigen);
+            return false;
+        }
+        log.info("✅ Verificación de {}: {} filas, huella {}", nombre, filas[0], Long.toHexString(huella[0]));
+        return true;
+    }
+}
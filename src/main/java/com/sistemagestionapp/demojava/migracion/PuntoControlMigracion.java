@@ -0,0 +1,234 @@
+package com.sistemagestionapp.demojava.migracion;
+
+import org.bson.types.ObjectId;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Progreso de una migración en un fichero de texto al que solo se añaden líneas, cada una
+ * forzada a disco antes de seguir:
+ *
+ * <pre>
+ * migracion sql-a-mongo
+ * tramo productos 0 n:1 n:10000      (el plan: tramos con su primer y último id)
+ * base productos 0
+ * plan                               (el plan está completo)
+ * inicio productos 0
+ * fin productos 0 9987 3fa2...       (filas y huella del tramo en el origen)
+ * </pre>
+ *
+ * Al reanudar se saltan los tramos con "fin" y los que tienen "inicio" sin "fin" se
+ * repiten limpiando lo que pudieran haber dejado. Si el proceso murió a mitad de una
+ * línea, esa última línea sin salto se descarta.
+ */
+class PuntoControlMigracion implements AutoCloseable {
+
+    private final String direccion;
+    private final FileChannel canal;
+
+    private final Map<TablaMigrada, List<Tramo>> plan = new EnumMap<>(TablaMigrada.class);
+    private final Map<TablaMigrada, Long> bases = new EnumMap<>(TablaMigrada.class);
+    private boolean planCompleto;
+    private final Set<String> iniciados = new HashSet<>();
+    private final Map<String, long[]> terminados = new HashMap<>();  // tramo -> {filas, huella}
+
+    private PuntoControlMigracion(String direccion, FileChannel canal) {
+        this.direccion = direccion;
+        this.canal = canal;
+    }
+
+    /**
+     * Abre el punto de control de {@code ruta}, o lo empieza si no existe o {@code reiniciar}.
+     *
+     * @throws IllegalStateException si es de una migración en la otra dirección
+     */
+    static PuntoControlMigracion abrir(Path ruta, String direccion, boolean reiniciar) {
+        try {
+            if (ruta.getParent() != null) {
+                Files.createDirectories(ruta.getParent());
+            }
+            List<String> lineas = new ArrayList<>();
+            if (!reiniciar && Files.exists(ruta)) {
+                String contenido = Files.readString(ruta, StandardCharsets.UTF_8);
+                int fin = contenido.lastIndexOf('\n');
+                if (fin >= 0) {
+                    lineas.addAll(contenido.substring(0, fin).lines().toList());
+                }
+            }
+            if (!lineas.isEmpty() && !lineas.get(0).equals("migracion " + direccion)) {
+                throw new IllegalStateException("El punto de control " + ruta + " es de otra migración ("
+                        + lineas.get(0) + "); bórralo o usa app.migracion.reiniciar=true");
+            }
+
+            FileChannel canal = FileChannel.open(ruta, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            PuntoControlMigracion punto = new PuntoControlMigracion(direccion, canal);
+            punto.cargar(lineas);
+            if (!punto.planCompleto) {
+                // sin plan completo no hay nada aprovechable: se empieza de cero
+                canal.truncate(0);
+                punto.plan.clear();
+                punto.bases.clear();
+                punto.escribir("migracion " + direccion);
+            } else {
+                // se descarta la línea a medias, si la hay
+                canal.truncate(lineas.stream().mapToLong(l -> l.getBytes(StandardCharsets.UTF_8).length + 1L).sum());
+            }
+            canal.position(canal.size());
+            return punto;
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo abrir el punto de control " + ruta, e);
+        }
+    }
+
+    private void cargar(List<String> lineas) {
+        for (String linea : lineas.subList(Math.min(1, lineas.size()), lineas.size())) {
+            String[] partes = linea.split(" ");
+            switch (partes[0]) {
+                case "tramo" -> {
+                    TablaMigrada tabla = TablaMigrada.desde(partes[1]);
+                    plan.computeIfAbsent(tabla, t -> new ArrayList<>()).add(new Tramo(tabla,
+                            Integer.parseInt(partes[2]), decodificar(partes[3]), decodificar(partes[4])));
+                }
+                case "base" -> bases.put(TablaMigrada.desde(partes[1]), Long.parseLong(partes[2]));
+                case "plan" -> planCompleto = true;
+                case "inicio" -> iniciados.add(partes[1] + " " + partes[2]);
+                case "fin" -> terminados.put(partes[1] + " " + partes[2],
+                        new long[]{Long.parseLong(partes[3]), Long.parseUnsignedLong(partes[4], 16)});
+                default -> throw new IllegalStateException("Línea desconocida en el punto de control: " + linea);
+            }
+        }
+    }
+
+    String getDireccion() {
+        return direccion;
+    }
+
+    boolean tienePlan() {
+        return planCompleto;
+    }
+
+    List<Tramo> getTramos(TablaMigrada tabla) {
+        return plan.getOrDefault(tabla, List.of());
+    }
+
+    long getBase(TablaMigrada tabla) {
+        return bases.getOrDefault(tabla, 0L);
+    }
+
+    synchronized void guardarPlan(Map<TablaMigrada, Almacen.Plan> planes) {
+        for (Map.Entry<TablaMigrada, Almacen.Plan> entrada : planes.entrySet()) {
+            TablaMigrada tabla = entrada.getKey();
+            StringBuilder texto = new StringBuilder();
+            for (Tramo tramo : entrada.getValue().tramos()) {
+                texto.append("tramo ").append(nombre(tabla)).append(' ').append(tramo.numero()).append(' ')
+                        .append(codificar(tramo.primero())).append(' ').append(codificar(tramo.ultimo())).append('\n');
+            }
+            texto.append("base ").append(nombre(tabla)).append(' ').append(entrada.getValue().base());
+            escribir(texto.toString());
+            plan.put(tabla, entrada.getValue().tramos());
+            bases.put(tabla, entrada.getValue().base());
+        }
+        escribir("plan");
+        planCompleto = true;
+    }
+
+    synchronized boolean estaTerminado(Tramo tramo) {
+        return terminados.containsKey(clave(tramo));
+    }
+
+    synchronized boolean estaIniciado(Tramo tramo) {
+        return iniciados.contains(clave(tramo));
+    }
+
+    synchronized void iniciar(Tramo tramo) {
+        escribir("inicio " + clave(tramo));
+        iniciados.add(clave(tramo));
+    }
+
+    synchronized void terminar(Tramo tramo, long filas, long huella) {
+        escribir("fin " + clave(tramo) + " " + filas + " " + Long.toHexString(huella));
+        terminados.put(clave(tramo), new long[]{filas, huella});
+    }
+
+    /** Filas y huella del origen de todos los tramos terminados de {@code tabla}. */
+    synchronized long[] getTotales(TablaMigrada tabla) {
+        long filas = 0;
+        long huella = 0;
+        for (Tramo tramo : getTramos(tabla)) {
+            long[] fin = terminados.get(clave(tramo));
+            if (fin != null) {
+                filas += fin[0];
+                huella += fin[1];
+            }
+        }
+        return new long[]{filas, huella};
+    }
+
+    @Override
+    public void close() {
+        try {
+            canal.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void escribir(String linea) {
+        try {
+            ByteBuffer bytes = ByteBuffer.wrap((linea + "\n").getBytes(StandardCharsets.UTF_8));
+            while (bytes.hasRemaining()) {
+                canal.write(bytes);
+            }
+            canal.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo escribir el punto de control", e);
+        }
+    }
+
+    private static String clave(Tramo tramo) {
+        return nombre(tramo.tabla()) + " " + tramo.numero();
+    }
+
+    private static String nombre(TablaMigrada tabla) {
+        return tabla.name().toLowerCase();
+    }
+
+    // n:123 (id SQL), o:hex (ObjectId), s:base64url (_id de texto, puede tener espacios)
+    static String codificar(Object id) {
+        if (id instanceof Long numero) {
+            return "n:" + numero;
+        }
+        if (id instanceof ObjectId objectId) {
+            return "o:" + objectId.toHexString();
+        }
+        if (id instanceof String texto) {
+            return "s:" + Base64.getUrlEncoder().withoutPadding().encodeToString(texto.getBytes(StandardCharsets.UTF_8));
+        }
+        throw new IllegalArgumentException("Tipo de id no soportado en la migración: " + id.getClass().getName());
+    }
+
+    static Object decodificar(String texto) {
+        String valor = texto.substring(2);
+        return switch (texto.substring(0, 2)) {
+            case "n:" -> Long.parseLong(valor);
+            case "o:" -> new ObjectId(valor);
+            case "s:" -> new String(Base64.getUrlDecoder().decode(valor), StandardCharsets.UTF_8);
+            default -> throw new IllegalArgumentException("Id mal codificado en el punto de control: " + texto);
+        };
+    }
+}
@@ -0,0 +1,150 @@
+package com.sistemagestionapp.demojava.migracion;
+
+import com.sistemagestionapp.demojava.model.Producto;
+import com.sistemagestionapp.demojava.model.ProductoResumen;
+import com.sistemagestionapp.demojava.repository.ProductoRepository;
+import com.sistemagestionapp.demojava.repository.ProductosFragmentados;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Tras añadir fragmentos a {@code app.db.fragmentos.hosts}, lleva cada producto al fragmento
+ * que le toca ahora. Se ejecuta al arrancar con {@code app.db.fragmentos.rebalancear=true} y
+ * al acabar cierra la aplicación, igual que {@link MigracionDatos}:
+ *
+ * <pre>
+ * java -jar app.jar --spring.profiles.active=mysql --server.port=0 --management.server.port=0 \
+ *      --app.db.fragmentos.hosts=db2,db3 --app.db.fragmentos.rebalancear=true
+ * </pre>
+ *
+ * Cada fragmento se recorre en orden de id (del primario) y los productos que ya no son
+ * suyos se mueven en lotes de {@code tamano-lote}: se insertan en el destino los que aún no
+ * estén allí y después se borran del origen. Si se corta, se vuelve a lanzar: lo ya movido
+ * no está en el origen y lo copiado a medias no se duplica. Mientras dura, la aplicación no
+ * debería estar escribiendo productos.
+ */
+@Component
+public class RebalanceoFragmentos implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(RebalanceoFragmentos.class);
+
+    private final ProductosFragmentados fragmentos;
+    private final ObjectProvider<ProductoRepository> productoRepository;
+    private final ObjectProvider<PlatformTransactionManager> transactionManager;
+    private final ConfigurableApplicationContext contexto;
+    private final boolean rebalancear;
+    private final int tamanoLote;
+    private final int tamanoFetch;
+
+    public RebalanceoFragmentos(ProductosFragmentados fragmentos,
+                                ObjectProvider<ProductoRepository> productoRepository,
+                                ObjectProvider<PlatformTransactionManager> transactionManager,
+                                ConfigurableApplicationContext contexto,
+                                @Value("${app.db.fragmentos.rebalancear:false}") boolean rebalancear,
+                                @Value("${app.db.fragmentos.tamano-lote:1000}") int tamanoLote,
+                                @Value("${app.exportacion.fetch-size:500}") int tamanoFetch) {
+        this.fragmentos = fragmentos;
+        this.productoRepository = productoRepository;
+        this.transactionManager = transactionManager;
+        this.contexto = contexto;
+        this.rebalancear = rebalancear;
+        this.tamanoLote = Math.max(1, tamanoLote);
+        this.tamanoFetch = Math.max(1, tamanoFetch);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!rebalancear) {
+            return;
+        }
+        rebalancear();
+        System.exit(SpringApplication.exit(contexto, () -> 0));
+    }
+
+    /** @return productos movidos */
+    long rebalancear() {
+        ProductoRepository repositorio = productoRepository.getIfAvailable();
+        PlatformTransactionManager tm = transactionManager.getIfAvailable();
+        if (!fragmentos.isActivo() || repositorio == null || tm == null) {
+            throw new IllegalStateException("El rebalanceo necesita un perfil SQL con varios fragmentos (app.db.fragmentos.hosts)");
+        }
+        // sin readOnly: el fragmento 0 se lee del primario, no de una réplica que vaya por detrás
+        TransactionTemplate transaccion = new TransactionTemplate(tm);
+
+        long inicio = System.nanoTime();
+        long total = 0;
+        for (int f = 0; f < fragmentos.getNumeroFragmentos(); f++) {
+            int origen = f;
+            Map<Integer, List<Producto>> porDestino = new HashMap<>();
+            long[] movidos = {0};
+            transaccion.executeWithoutResult(estado -> fragmentos.en(origen, () -> {
+                repositorio.recorrer(null, tamanoFetch, p -> {
+                    int destino = fragmentos.fragmentoDe(p.getId());
+                    if (destino == origen) {
+                        return;
+                    }
+                    List<Producto> lote = porDestino.computeIfAbsent(destino, d -> new ArrayList<>(tamanoLote));
+                    lote.add(p);
+                    if (lote.size() == tamanoLote) {
+                        movidos[0] += mover(repositorio, transaccion, origen, destino, lote);
+                        lote.clear();
+                    }
+                });
+                return null;
+            }));
+            for (Map.Entry<Integer, List<Producto>> resto : porDestino.entrySet()) {
+                movidos[0] += mover(repositorio, transaccion, origen, resto.getKey(), resto.getValue());
+            }
+            if (movidos[0] > 0) {
+                log.info("ℹ️ Fragmento {}: {} productos movidos a otros fragmentos", origen, movidos[0]);
+            }
+            total += movidos[0];
+        }
+        log.info("✅ Rebalanceo de {} fragmentos terminado: {} productos movidos en {} s",
+                fragmentos.getNumeroFragmentos(), total, TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - inicio));
+        return total;
+    }
+
+    /**
+     * Copia el lote al destino (sin pisar lo que ya esté, que es más reciente) y lo borra del
+     * origen, cada cosa en su transacción y fuera de la del recorrido.
+     */
+    private int mover(ProductoRepository repositorio, TransactionTemplate transaccion,
+                      int origen, int destino, List<Producto> lote) {
+        if (lote.isEmpty()) {
+            return 0;
+        }
+        List<Long> ids = lote.stream().map(Producto::getId).toList();
+        fragmentos.aparte(destino, () -> transaccion.execute(estado -> {
+            Set<String> existentes = repositorio.resumenes(ids).stream()
+                    .map(ProductoResumen::getId)
+                    .collect(Collectors.toSet());
+            List<Producto> nuevos = lote.stream()
+                    .filter(p -> !existentes.contains(String.valueOf(p.getId())))
+                    .toList();
+            return repositorio.insertarConIds(nuevos);
+        }));
+        fragmentos.aparte(origen, () -> {
+            repositorio.deleteAllByIdInBatch(ids);
+            return null;
+        });
+        return lote.size();
+    }
+}
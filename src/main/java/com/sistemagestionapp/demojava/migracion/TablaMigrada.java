@@ -0,0 +1,85 @@
+package com.sistemagestionapp.demojava.migracion;
+
+import java.util.List;
+
+/**
+ * Lo que se migra entre motores: nombre de la tabla SQL y de la colección Mongo y los
+ * campos, con su tipo, aparte del id. Los nombres son los que generan Hibernate y Spring
+ * Data para {@code Producto}/{@code ProductoMongo} y {@code Usuario}/{@code UsuarioMongo}.
+ */
+enum TablaMigrada {
+
+    PRODUCTOS("producto", "productos", false, List.of(
+            new Campo("nombre", String.class, null),
+            new Campo("descripcion", String.class, null),
+            new Campo("precio", Double.class, null),
+            // los documentos antiguos no tienen versión y cuentan como 0; en SQL es not null
+            new Campo("version", Long.class, 0L))),
+
+    USUARIOS("usuarios", "usuarios", true, List.of(
+            new Campo("nombre", String.class, null),
+            new Campo("correo", String.class, null),
+            new Campo("password", String.class, null)));
+
+    /** Un campo y cómo dejar su valor igual venga de JDBC o de un documento BSON. */
+    record Campo(String nombre, Class<?> tipo, Object porDefecto) {
+
+        Object normalizar(Object valor) {
+            if (valor == null) {
+                return porDefecto;
+            }
+            if (tipo == Long.class && valor instanceof Number n) {
+                return n.longValue();
+            }
+            if (tipo == Double.class && valor instanceof Number n) {
+                return n.doubleValue();
+            }
+            return tipo == String.class ? valor.toString() : valor;
+        }
+    }
+
+    private final String tablaSql;
+    private final String coleccion;
+    private final boolean identidad;  // id identity en SQL; si no, secuencia producto_seq
+    private final List<Campo> campos;
+
+    TablaMigrada(String tablaSql, String coleccion, boolean identidad, List<Campo> campos) {
+        this.tablaSql = tablaSql;
+        this.coleccion = coleccion;
+        this.identidad = identidad;
+        this.campos = campos;
+    }
+
+    String getTablaSql() {
+        return tablaSql;
+    }
+
+    String getColeccion() {
+        return coleccion;
+    }
+
+    boolean isIdentidad() {
+        return identidad;
+    }
+
+    List<Campo> getCampos() {
+        return campos;
+    }
+
+    Object[] normalizar(Object[] valores) {
+        Object[] normalizados = new Object[campos.size()];
+        for (int i = 0; i < normalizados.length; i++) {
+            normalizados[i] = campos.get(i).normalizar(valores[i]);
+        }
+        return normalizados;
+    }
+
+    static TablaMigrada desde(String nombre) {
+        for (TablaMigrada tabla : values()) {
+            if (tabla.name().equalsIgnoreCase(nombre)) {
+                return tabla;
+            }
+        }
+        throw new IllegalArgumentException("Tabla de migración desconocida: " + nombre);
+    }
+}
@@ -0,0 +1,15 @@
+package com.sistemagestionapp.demojava.migracion;
+
+/**
+ * Trozo de una tabla que migra un hilo de una vez: los ids entre {@code primero} y
+ * {@code ultimo}, ambos incluidos, en el orden del origen. En SQL son números; en Mongo
+ * son los _id tal cual (ObjectId o String, nunca mezclados en un mismo tramo, porque en
+ * Mongo un rango solo compara valores del mismo tipo).
+ */
+record Tramo(TablaMigrada tabla, int numero, Object primero, Object ultimo) {
+
+    @Override
+    public String toString() {
+        return tabla.name().toLowerCase() + "#" + numero;
+    }
+}
@@ -0,0 +1,10 @@
+package com.sistemagestionapp.demojava.model;
+
+/**
+ * Lo mínimo de un usuario que hace falta para autenticarlo: correo y hash de la contraseña.
+ * Es lo que se guarda en la caché de login; a partir de aquí se construye un UserDetails
+ * nuevo en cada petición, porque Spring Security borra la contraseña del principal
+ * después de autenticar y no puede compartirse un mismo objeto entre logins.
+ */
+public record CredencialesUsuario(String correo, String passwordHash) {
+}
@@ -0,0 +1,23 @@
+package com.sistemagestionapp.demojava.model;
+
+import java.util.Map;
+
+/**
+ * Estadísticas de precios del catálogo que se devuelven como JSON en /api/productos/stats.
+ *
+ * @param productos          productos del catálogo
+ * @param productosConPrecio productos con precio (los demás no cuentan para el resto de campos)
+ * @param precioMinimo       precio mínimo exacto (null si no hay precios)
+ * @param precioMaximo       precio máximo exacto (null si no hay precios)
+ * @param precioMedio        media exacta (null si no hay precios)
+ * @param percentiles        p50, p90, p95 y p99 aproximados
+ * @param errorRelativo      error relativo máximo de los percentiles (0.01 = 1 %)
+ */
+public record EstadisticasCatalogo(long productos,
+                                   long productosConPrecio,
+                                   Double precioMinimo,
+                                   Double precioMaximo,
+                                   Double precioMedio,
+                                   Map<String, Double> percentiles,
+                                   double errorRelativo) {
+}
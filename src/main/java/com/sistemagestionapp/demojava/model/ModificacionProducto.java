@@ -0,0 +1,8 @@
+package com.sistemagestionapp.demojava.model;
+
+/**
+ * Nuevos nombre, descripción y precio de un producto existente, para escribir muchos de
+ * una vez. {@code version} es la que debe tener al escribirlo (null = no se comprueba).
+ */
+public record ModificacionProducto(String id, String nombre, String descripcion, Double precio, Long version) {
+}
@@ -0,0 +1,38 @@
+package com.sistemagestionapp.demojava.model;
+
+/**
+ * Criterios de ordenación admitidos en el listado paginado de productos.
+ * El id siempre se usa como desempate para que el cursor sea único.
+ */
+public enum OrdenProductos {
+
+    ID("id"),
+    NOMBRE("nombre"),
+    PRECIO("precio");
+
+    private final String campo;
+
+    OrdenProductos(String campo) {
+        this.campo = campo;
+    }
+
+    public String getCampo() {
+        return campo;
+    }
+
+    /**
+     * Convierte el parámetro de la URL en un orden válido. Si no llega o no se
+     * reconoce, se ordena por id.
+     */
+    public static OrdenProductos desde(String valor) {
+        if (valor == null || valor.isBlank()) {
+            return ID;
+        }
+        for (OrdenProductos orden : values()) {
+            if (orden.campo.equalsIgnoreCase(valor.trim())) {
+                return orden;
+            }
+        }
+        return ID;
+    }
+}
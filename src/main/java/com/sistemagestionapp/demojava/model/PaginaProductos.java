@@ -0,0 +1,49 @@
+package com.sistemagestionapp.demojava.model;
+
+import java.util.List;
+
+/**
+ * Una página del listado de productos obtenida con paginación por cursor (keyset).
+ * {@code siguiente} y {@code anterior} son cursores opacos que la vista devuelve
+ * en los enlaces de navegación; valen null cuando no hay más páginas en ese sentido.
+ */
+public class PaginaProductos {
+
+    private final List<ProductoResumen> productos;
+    private final OrdenProductos orden;
+    private final int tamano;
+    private final String siguiente;
+    private final String anterior;
+
+    public PaginaProductos(List<ProductoResumen> productos,
+                           OrdenProductos orden,
+                           int tamano,
+                           String siguiente,
+                           String anterior) {
+        this.productos = productos;
+        this.orden = orden;
+        this.tamano = tamano;
+        this.siguiente = siguiente;
+        this.anterior = anterior;
+    }
+
+    public List<ProductoResumen> getProductos() {
+        return productos;
+    }
+
+    public String getOrden() {
+        return orden.getCampo();
+    }
+
+    public int getTamano() {
+        return tamano;
+    }
+
+    public String getSiguiente() {
+        return siguiente;
+    }
+
+    public String getAnterior() {
+        return anterior;
+    }
+}
@@ -3,16 +3,33 @@ package com.sistemagestionapp.demojava.model;
 import jakarta.persistence.*;
 
 @Entity
+@Table(indexes = {
+        // Índices para la paginación por keyset ordenando por nombre o precio
+        @Index(name = "idx_producto_nombre_id", columnList = "nombre, id"),
+        @Index(name = "idx_producto_precio_id", columnList = "precio, id")
+})
 public class Producto {
 
+    public static final int TAMANO_BLOQUE_IDS = 50;
+
+    // Secuencia con optimizador pooled (allocationSize): Hibernate reserva los ids de 50 en 50
+    // y puede agrupar los INSERT en lotes JDBC, cosa que IDENTITY impide.
+    // En MySQL, que no tiene secuencias, Hibernate la emula con la tabla producto_seq.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "producto_seq")
+    @SequenceGenerator(name = "producto_seq", sequenceName = "producto_seq", allocationSize = Producto.TAMANO_BLOQUE_IDS)
     private Long id;
 
     private String nombre;
     private String descripcion;
     private Double precio;
 
+    // Bloqueo optimista: cada UPDATE/DELETE lleva "and version = ?" y la incrementa.
+    // El default 0 es para las filas que ya existían antes de añadir la columna.
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
+
     // Getters y Setters
     public Long getId() {
         return id;
@@ -45,4 +62,12 @@ public class Producto {
     public void setPrecio(Double precio) {
         this.precio = precio;
     }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
@@ -0,0 +1,10 @@
+package com.sistemagestionapp.demojava.model;
+
+/**
+ * Precio y versión que tenía un producto justo antes de modificarlo o borrarlo, devueltos
+ * por la misma sentencia que lo cambia (UPDATE/DELETE ... RETURNING en PostgreSQL, OLD TABLE
+ * en H2). MySQL no devuelve filas de un UPDATE o DELETE: allí se leen con SELECT ... FOR
+ * UPDATE en la misma transacción, justo antes.
+ */
+public record ProductoAnterior(Double precio, Long version) {
+}
@@ -0,0 +1,43 @@
+package com.sistemagestionapp.demojava.model;
+
+/**
+ * Proyección ligera de un producto con solo las columnas que pinta la tabla
+ * de productos.html. La uso tanto para SQL (id Long) como para Mongo (id String),
+ * por eso el id se guarda siempre como texto.
+ */
+public class ProductoResumen {
+
+    private final String id;
+    private final String nombre;
+    private final Double precio;
+    // para que el borrado desde la tabla sea condicional a la versión que se vio
+    private final Long version;
+
+    // Constructor usado por la expresión "select new" de JPQL
+    public ProductoResumen(Long id, String nombre, Double precio, Long version) {
+        this(String.valueOf(id), nombre, precio, version);
+    }
+
+    public ProductoResumen(String id, String nombre, Double precio, Long version) {
+        this.id = id;
+        this.nombre = nombre;
+        this.precio = precio;
+        this.version = version;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public Double getPrecio() {
+        return precio;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+}
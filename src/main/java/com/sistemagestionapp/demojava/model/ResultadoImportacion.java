@@ -0,0 +1,27 @@
+package com.sistemagestionapp.demojava.model;
+
+import java.util.List;
+
+/**
+ * Resumen de una importación masiva de productos que se devuelve como JSON.
+ *
+ * @param filasLeidas     líneas de datos procesadas (sin cabecera ni líneas vacías)
+ * @param filasInsertadas productos que han quedado guardados
+ * @param lotes           lotes enviados a la base de datos
+ * @param errores         errores de formato (por línea) y de escritura (por lote)
+ * @param duracionMs      tiempo total de la importación
+ * @param filasPorSegundo filas insertadas por segundo
+ */
+public record ResultadoImportacion(long filasLeidas,
+                                   long filasInsertadas,
+                                   int lotes,
+                                   List<Error> errores,
+                                   long duracionMs,
+                                   double filasPorSegundo) {
+
+    /**
+     * Un error de la importación. {@code lote} es 0 si el error es de formato de una línea.
+     */
+    public record Error(int lote, long linea, int filasAfectadas, String mensaje) {
+    }
+}
@@ -0,0 +1,47 @@
+package com.sistemagestionapp.demojava.model;
+
+import jakarta.persistence.*;
+
+/**
+ * Fila de la tabla outbox del modo CQRS: "el producto {@code productoId} ha cambiado".
+ * Se inserta en la misma transacción que el cambio, así que existe si y solo si el cambio
+ * se confirmó; el proyector la borra cuando ha copiado el producto a Mongo. No lleva los
+ * datos: el proyector lee el estado actual, que es lo que tiene que quedar en la copia.
+ */
+@Entity
+@Table(name = "salida_productos")
+public class SalidaProducto {
+
+    // Secuencia con bloques como en Producto: insertar una fila no cuesta otro viaje por el id
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "salida_productos_seq")
+    @SequenceGenerator(name = "salida_productos_seq", sequenceName = "salida_productos_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false)
+    private String productoId;
+
+    // milisegundos epoch, para medir el retraso de la proyección
+    @Column(nullable = false)
+    private long creado;
+
+    public SalidaProducto() {
+    }
+
+    public SalidaProducto(String productoId, long creado) {
+        this.productoId = productoId;
+        this.creado = creado;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getProductoId() {
+        return productoId;
+    }
+
+    public long getCreado() {
+        return creado;
+    }
+}
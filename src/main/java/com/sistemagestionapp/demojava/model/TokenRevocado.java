@@ -0,0 +1,38 @@
+package com.sistemagestionapp.demojava.model;
+
+import jakarta.persistence.*;
+
+/**
+ * Sesión con token cerrada antes de caducar (logout). Solo hace falta guardarla hasta
+ * que caduque su token: después ya no la aceptaría nadie.
+ */
+@Entity
+@Table(name = "tokens_revocados", indexes = {
+        @Index(name = "idx_token_revocado_expira", columnList = "expira")
+})
+public class TokenRevocado {
+
+    // id de sesión que va dentro del token (aleatorio, no generado por la base de datos)
+    @Id
+    private Long id;
+
+    // segundos epoch
+    @Column(nullable = false)
+    private long expira;
+
+    public TokenRevocado() {
+    }
+
+    public TokenRevocado(Long id, long expira) {
+        this.id = id;
+        this.expira = expira;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public long getExpira() {
+        return expira;
+    }
+}
@@ -1,9 +1,14 @@
 package com.sistemagestionapp.demojava.model.mongo;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+// Mismos índices que en SQL para el listado paginado: clave de orden + _id como desempate
 @Document(collection = "productos")
+@CompoundIndex(name = "idx_producto_nombre_id", def = "{'nombre': 1, '_id': 1}")
+@CompoundIndex(name = "idx_producto_precio_id", def = "{'precio': 1, '_id': 1}")
 public class ProductoMongo {
 
     @Id
@@ -13,6 +18,10 @@ public class ProductoMongo {
     private String descripcion;
     private Double precio;
 
+    // Bloqueo optimista; los documentos antiguos no tienen el campo y cuentan como versión 0
+    @Version
+    private Long version;
+
     public ProductoMongo() {
     }
 
@@ -47,4 +56,12 @@ public class ProductoMongo {
     public void setPrecio(Double precio) {
         this.precio = precio;
     }
-}
\ No newline at end of file
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+}
@@ -0,0 +1,34 @@
+package com.sistemagestionapp.demojava.model.mongo;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+@Document(collection = "tokens_revocados")
+public class TokenRevocadoMongo {
+
+    @Id
+    private Long id;
+
+    // Índice TTL: Mongo borra el documento cuando caduca el token
+    @Indexed(expireAfterSeconds = 0)
+    private Date expira;
+
+    public TokenRevocadoMongo() {
+    }
+
+    public TokenRevocadoMongo(Long id, Date expira) {
+        this.id = id;
+        this.expira = expira;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Date getExpira() {
+        return expira;
+    }
+}
@@ -1,6 +1,7 @@
 package com.sistemagestionapp.demojava.model.mongo;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Document(collection = "usuarios")
@@ -10,7 +11,11 @@ public class UsuarioMongo {
     private String id;
 
     private String nombre;
+
+    // Índice único: evita el collection scan en el login y duplicados en el registro
+    @Indexed(unique = true)
     private String correo;
+
     private String password;
 
     public UsuarioMongo() {
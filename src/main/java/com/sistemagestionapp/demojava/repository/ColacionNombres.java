@@ -0,0 +1,109 @@
+package com.sistemagestionapp.demojava.repository;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * Orden de nombres y precios en las páginas con varios fragmentos. Cada fragmento devuelve
+ * su página ordenada y aquí se mezclan; si Java no ordena exactamente igual que la base de
+ * datos, el cursor que sale de la mezcla salta o repite filas. Las collations por defecto
+ * (MySQL {@code utf8mb4_0900_ai_ci}, PostgreSQL con locale, ICU) no se pueden reproducir en
+ * Java carácter a carácter, así que con fragmentos el nombre se ordena y compara en la
+ * consulta con una collation por punto de código ({@link #collation()}), y aquí igual:
+ *
+ * <ul>
+ *   <li>PostgreSQL: {@code ucs_basic}.</li>
+ *   <li>MySQL: {@code utf8mb4_0900_bin} (8.0.17+; a diferencia de {@code utf8mb4_bin} no
+ *       ignora los espacios del final).</li>
+ *   <li>H2: sin COLLATE, ya compara con String.compareTo.</li>
+ * </ul>
+ *
+ * Con fragmentos el listado por nombre distingue así mayúsculas ("Zeta" antes que "alfa").
+ * Los NULL van primero en orden ascendente, salvo en PostgreSQL, que los pone al final.
+ */
+final class ColacionNombres {
+
+    static final String INDICE = "idx_producto_nombre_bin_id";
+
+    private final String collation;       // null en H2
+    private final boolean nulosAlFinal;
+
+    ColacionNombres(String engine) {
+        String motor = engine == null ? "h2" : engine.toLowerCase(Locale.ROOT);
+        if ("postgres".equals(motor) || "postgresql".equals(motor)) {
+            this.collation = "ucs_basic";
+            this.nulosAlFinal = true;
+        } else if ("h2".equals(motor)) {
+            this.collation = null;
+            this.nulosAlFinal = false;
+        } else {
+            this.collation = "utf8mb4_0900_bin";
+            this.nulosAlFinal = false;
+        }
+    }
+
+    /** Collation que hay que aplicar al nombre en la consulta, o null si no hace falta. */
+    String collation() {
+        return collation;
+    }
+
+    /**
+     * Índice (nombre con {@link #collation()}, id) en un fragmento, para que la página por
+     * nombre siga recorriendo un índice: el de la columna usa la collation por defecto.
+     */
+    void crearIndice(DataSource fragmento) throws SQLException {
+        if (collation == null) {
+            return;
+        }
+        try (Connection conexion = fragmento.getConnection(); Statement sentencia = conexion.createStatement()) {
+            if (nulosAlFinal) {
+                sentencia.execute("create index if not exists " + INDICE
+                        + " on producto (nombre collate " + collation + ", id)");
+                return;
+            }
+            // MySQL no tiene "if not exists" para índices
+            try (ResultSet rs = sentencia.executeQuery("select count(*) from information_schema.statistics"
+                    + " where table_schema = database() and table_name = 'producto' and index_name = '" + INDICE + "'")) {
+                if (rs.next() && rs.getLong(1) > 0) {
+                    return;
+                }
+            }
+            sentencia.execute("create index " + INDICE + " on producto ((nombre collate " + collation + "), id)");
+        }
+    }
+
+    /** Nombres por punto de código (String.compareTo en H2), con los NULL donde los pone la base de datos. */
+    Comparator<String> nombres() {
+        return conNulos(collation == null ? Comparator.naturalOrder() : ColacionNombres::porPuntoDeCodigo);
+    }
+
+    /** Precios en orden numérico, con los NULL donde los pone la base de datos. */
+    Comparator<Double> precios() {
+        return conNulos(Comparator.<Double>naturalOrder());
+    }
+
+    private <T> Comparator<T> conNulos(Comparator<T> comparador) {
+        return nulosAlFinal ? Comparator.nullsLast(comparador) : Comparator.nullsFirst(comparador);
+    }
+
+    // String.compareTo compara unidades UTF-16, que no es el orden de UTF-8 fuera del plano básico
+    private static int porPuntoDeCodigo(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int ca = a.codePointAt(i);
+            int cb = b.codePointAt(j);
+            if (ca != cb) {
+                return Integer.compare(ca, cb);
+            }
+            i += Character.charCount(ca);
+            j += Character.charCount(cb);
+        }
+        return Boolean.compare(i < a.length(), j < b.length());
+    }
+}
@@ -2,6 +2,7 @@ package com.sistemagestionapp.demojava.repository;
 
 import com.sistemagestionapp.demojava.model.Producto;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 /**
  * Esta interfaz la utilizo como repositorio para acceder a los datos de productos
@@ -9,8 +10,12 @@ import org.springframework.data.jpa.repository.JpaRepository;
  * Al extender de {@link JpaRepository}, heredo automáticamente todos los métodos
  * necesarios para realizar operaciones CRUD sobre la entidad {@link Producto},
  * sin necesidad de implementarlos manualmente.
+ * Las consultas paginadas por keyset están en {@link ProductoRepositoryCustom}.
  *
  * @author David Tomé Arnáiz
  */
-public interface ProductoRepository extends JpaRepository<Producto, Long> {
-}
\ No newline at end of file
+public interface ProductoRepository extends JpaRepository<Producto, Long>, ProductoRepositoryCustom {
+
+    @Query("select max(p.id) from Producto p")
+    Long maxId();
+}
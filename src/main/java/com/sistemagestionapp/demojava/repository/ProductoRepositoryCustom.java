@@ -0,0 +1,110 @@
+package com.sistemagestionapp.demojava.repository;
+
+import com.sistemagestionapp.demojava.model.ModificacionProducto;
+import com.sistemagestionapp.demojava.model.OrdenProductos;
+import com.sistemagestionapp.demojava.model.Producto;
+import com.sistemagestionapp.demojava.model.ProductoAnterior;
+import com.sistemagestionapp.demojava.model.ProductoResumen;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Consultas de productos que no se pueden expresar como métodos derivados
+ * de Spring Data. La implementación está en {@link ProductoRepositoryImpl}.
+ */
+public interface ProductoRepositoryCustom {
+
+    /**
+     * Devuelve como mucho {@code limite} productos a partir del cursor (valor, id)
+     * usando paginación por keyset. Si {@code id} es null se empieza por el principio
+     * (o por el final si {@code haciaAtras} es true).
+     */
+    default List<ProductoResumen> buscarPagina(OrdenProductos orden, Object valor, Long id,
+                                               boolean haciaAtras, int limite) {
+        return buscarPagina(orden, valor, id, haciaAtras, limite, null);
+    }
+
+    /**
+     * Como {@link #buscarPagina(OrdenProductos, Object, Long, boolean, int)}, pero ordenando
+     * y comparando el nombre con {@code collationNombre} (null = la de la columna).
+     */
+    List<ProductoResumen> buscarPagina(OrdenProductos orden, Object valor, Long id,
+                                       boolean haciaAtras, int limite, String collationNombre);
+
+    /**
+     * Inserta un lote de productos nuevos en una sola transacción, con los INSERT
+     * agrupados en lotes JDBC (hibernate.jdbc.batch_size).
+     *
+     * @return número de productos insertados
+     */
+    int insertarLote(List<Producto> lote);
+
+    /**
+     * Como {@link #insertarLote}, pero con el id ya puesto en cada producto (con fragmentos
+     * los ids no salen de la secuencia del fragmento) y en JDBC directo. Se conserva la
+     * versión que traiga cada producto (0 si no tiene), para poder moverlos de fragmento.
+     *
+     * @return número de productos insertados
+     */
+    int insertarConIds(List<Producto> lote);
+
+    /**
+     * Recorre los productos con id mayor que {@code desdeId} (todos si es null) en orden de id,
+     * leyendo del cursor JDBC de {@code tamanoFetch} en {@code tamanoFetch} filas.
+     * Cada entidad se separa del contexto tras pasarla al consumidor, así que la memoria
+     * no crece con el tamaño del catálogo.
+     */
+    void recorrer(Long desdeId, int tamanoFetch, Consumer<Producto> consumidor);
+
+    /**
+     * Actualiza nombre, descripción y precio con un único UPDATE condicional e incrementa la
+     * versión. Con {@code version} null no se comprueba la versión (el último que escribe gana).
+     * La misma sentencia devuelve el precio y la versión anteriores donde el motor lo permite.
+     *
+     * @return lo que tenía el producto, o null si no existe o su versión ya no es esa
+     */
+    ProductoAnterior actualizarSiVersion(Long id, String nombre, String descripcion, Double precio, Long version);
+
+    /**
+     * Borra el producto con un único DELETE condicional a la versión ({@code null} = sin comprobarla),
+     * que devuelve lo que tenía como {@link #actualizarSiVersion}.
+     *
+     * @return lo que tenía el producto, o null si no se ha borrado nada
+     */
+    ProductoAnterior borrarSiVersion(Long id, Long version);
+
+    /**
+     * Versión actual del producto, o null si no existe. Solo se usa para explicar un conflicto.
+     */
+    Long versionActual(Long id);
+
+    /**
+     * Id, nombre, precio y versión actuales de varios productos en una sola consulta (los que
+     * no existen no vienen). Se lee del primario: va dentro de la transacción que los modifica.
+     */
+    List<ProductoResumen> resumenes(Collection<Long> ids);
+
+    /**
+     * Aplica todas las modificaciones en un único lote JDBC de UPDATE condicionales a la
+     * versión, cada uno igual que {@link #actualizarSiVersion}. Debe ir dentro de una transacción.
+     *
+     * @return ids de los productos actualizados; los que faltan no existían o ya no tenían esa versión
+     */
+    Set<String> actualizarLote(List<ModificacionProducto> modificaciones);
+
+    /**
+     * Pasa al consumidor cada precio distinto del catálogo con el número de productos que lo
+     * tienen (un GROUP BY precio; los productos sin precio llegan con precio null).
+     */
+    void recorrerPrecios(BiConsumer<Double, Long> consumidor);
+
+    /**
+     * Precio mínimo o máximo del catálogo, o null si no hay productos con precio.
+     * Usa el índice (precio, id).
+     */
+    Double precioExtremo(boolean maximo);
+}
@@ -0,0 +1,330 @@
+package com.sistemagestionapp.demojava.repository;
+
+import com.sistemagestionapp.demojava.model.ModificacionProducto;
+import com.sistemagestionapp.demojava.model.OrdenProductos;
+import com.sistemagestionapp.demojava.model.Producto;
+import com.sistemagestionapp.demojava.model.ProductoAnterior;
+import com.sistemagestionapp.demojava.model.ProductoResumen;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.Session;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Implementación JPA de {@link ProductoRepositoryCustom}.
+ * Solo se seleccionan id, nombre, precio y versión mediante una expresión "select new",
+ * así no se cargan entidades completas en el contexto de persistencia.
+ */
+public class ProductoRepositoryImpl implements ProductoRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final String dbEngine;
+
+    public ProductoRepositoryImpl(@Value("${app.db.engine:h2}") String dbEngine) {
+        this.dbEngine = dbEngine == null ? "h2" : dbEngine.toLowerCase();
+    }
+
+    private boolean isPostgres() {
+        return "postgres".equals(dbEngine) || "postgresql".equals(dbEngine);
+    }
+
+    private boolean isH2() {
+        return "h2".equals(dbEngine);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ProductoResumen> buscarPagina(OrdenProductos orden, Object valor, Long id,
+                                              boolean haciaAtras, int limite, String collationNombre) {
+        String campo = "p." + orden.getCampo();
+        if (orden == OrdenProductos.NOMBRE && collationNombre != null) {
+            campo = "collate(" + campo + " as " + collationNombre + ")";
+        }
+        String comparador = haciaAtras ? "<" : ">";
+        String sentido = haciaAtras ? " desc" : " asc";
+
+        StringBuilder jpql = new StringBuilder("select new ")
+                .append(ProductoResumen.class.getName())
+                .append("(p.id, p.nombre, p.precio, p.version) from Producto p");
+
+        boolean conCursor = id != null;
+        boolean porId = orden == OrdenProductos.ID;
+
+        if (conCursor) {
+            if (porId) {
+                jpql.append(" where p.id ").append(comparador).append(" :id");
+            } else {
+                jpql.append(" where ").append(campo).append(' ').append(comparador).append(" :valor")
+                        .append(" or (").append(campo).append(" = :valor and p.id ")
+                        .append(comparador).append(" :id)");
+            }
+        }
+
+        jpql.append(" order by ");
+        if (!porId) {
+            jpql.append(campo).append(sentido).append(", ");
+        }
+        jpql.append("p.id").append(sentido);
+
+        TypedQuery<ProductoResumen> query = entityManager.createQuery(jpql.toString(), ProductoResumen.class);
+        if (conCursor) {
+            query.setParameter("id", id);
+            if (!porId) {
+                query.setParameter("valor", valor);
+            }
+        }
+        return query.setMaxResults(limite).getResultList();
+    }
+
+    @Override
+    @Transactional
+    public int insertarLote(List<Producto> lote) {
+        for (Producto producto : lote) {
+            entityManager.persist(producto);
+        }
+        // se envían los INSERT y se vacía el contexto para no acumular entidades entre lotes
+        entityManager.flush();
+        entityManager.clear();
+        return lote.size();
+    }
+
+    @Override
+    @Transactional
+    public int insertarConIds(List<Producto> lote) {
+        if (lote.isEmpty()) {
+            return 0;
+        }
+        entityManager.unwrap(Session.class).doWork(conexion -> {
+            try (PreparedStatement sentencia = conexion.prepareStatement(
+                    "insert into producto (id, nombre, descripcion, precio, version) values (?, ?, ?, ?, ?)")) {
+                for (Producto p : lote) {
+                    if (p.getVersion() == null) {
+                        p.setVersion(0L);
+                    }
+                    sentencia.setLong(1, p.getId());
+                    sentencia.setString(2, p.getNombre());
+                    sentencia.setString(3, p.getDescripcion());
+                    sentencia.setObject(4, p.getPrecio(), Types.DOUBLE);
+                    sentencia.setLong(5, p.getVersion());
+                    sentencia.addBatch();
+                }
+                sentencia.executeBatch();
+            }
+        });
+        return lote.size();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void recorrer(Long desdeId, int tamanoFetch, Consumer<Producto> consumidor) {
+        TypedQuery<Producto> query = entityManager.createQuery(
+                        "select p from Producto p where p.id > :desde order by p.id", Producto.class)
+                .setParameter("desde", desdeId == null ? Long.MIN_VALUE : desdeId)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, tamanoFetch)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .setHint(HibernateHints.HINT_CACHEABLE, false);
+
+        try (Stream<Producto> productos = query.getResultStream()) {
+            productos.forEach(p -> {
+                consumidor.accept(p);
+                entityManager.detach(p);
+            });
+        }
+    }
+
+    @Override
+    @Transactional
+    public ProductoAnterior actualizarSiVersion(Long id, String nombre, String descripcion, Double precio, Long version) {
+        if (!isPostgres() && !isH2()) {
+            return entityManager.unwrap(Session.class).doReturningWork(conexion -> {
+                ProductoAnterior anterior = bloquearAnterior(conexion, id, version);
+                if (anterior != null) {
+                    try (PreparedStatement sentencia = conexion.prepareStatement(
+                            "update producto set nombre = ?, descripcion = ?, precio = ?, version = version + 1 where id = ?")) {
+                        sentencia.setString(1, nombre);
+                        sentencia.setString(2, descripcion);
+                        sentencia.setObject(3, precio, Types.DOUBLE);
+                        sentencia.setLong(4, id);
+                        sentencia.executeUpdate();
+                    }
+                }
+                return anterior;
+            });
+        }
+        String condicion = "id = ?" + (version != null ? " and version = ?" : "");
+        String sql;
+        if (isPostgres()) {
+            // el FOR UPDATE de la subconsulta hace que, si otro la cambia a la vez, se lea su precio ya confirmado
+            sql = "update producto p set nombre = ?, descripcion = ?, precio = ?, version = p.version + 1"
+                    + " from (select id, precio, version from producto where " + condicion + " for update) a"
+                    + " where p.id = a.id returning a.precio, a.version";
+        } else {
+            sql = "select precio, version from old table ("
+                    + "update producto set nombre = ?, descripcion = ?, precio = ?, version = version + 1 where " + condicion + ")";
+        }
+        String sentenciaSql = sql;
+        return entityManager.unwrap(Session.class).doReturningWork(conexion -> {
+            try (PreparedStatement sentencia = conexion.prepareStatement(sentenciaSql)) {
+                sentencia.setString(1, nombre);
+                sentencia.setString(2, descripcion);
+                sentencia.setObject(3, precio, Types.DOUBLE);
+                sentencia.setLong(4, id);
+                if (version != null) {
+                    sentencia.setLong(5, version);
+                }
+                return ejecutarDevolviendoAnterior(sentencia);
+            }
+        });
+    }
+
+    @Override
+    @Transactional
+    public ProductoAnterior borrarSiVersion(Long id, Long version) {
+        if (!isPostgres() && !isH2()) {
+            return entityManager.unwrap(Session.class).doReturningWork(conexion -> {
+                ProductoAnterior anterior = bloquearAnterior(conexion, id, version);
+                if (anterior != null) {
+                    try (PreparedStatement sentencia = conexion.prepareStatement("delete from producto where id = ?")) {
+                        sentencia.setLong(1, id);
+                        sentencia.executeUpdate();
+                    }
+                }
+                return anterior;
+            });
+        }
+        String sql = "delete from producto where id = ?" + (version != null ? " and version = ?" : "");
+        if (isPostgres()) {
+            sql += " returning precio, version";
+        } else {
+            sql = "select precio, version from old table (" + sql + ")";
+        }
+        String sentenciaSql = sql;
+        return entityManager.unwrap(Session.class).doReturningWork(conexion -> {
+            try (PreparedStatement sentencia = conexion.prepareStatement(sentenciaSql)) {
+                sentencia.setLong(1, id);
+                if (version != null) {
+                    sentencia.setLong(2, version);
+                }
+                return ejecutarDevolviendoAnterior(sentencia);
+            }
+        });
+    }
+
+    private static ProductoAnterior ejecutarDevolviendoAnterior(PreparedStatement sentencia) throws SQLException {
+        try (ResultSet rs = sentencia.executeQuery()) {
+            return rs.next() ? new ProductoAnterior(rs.getObject(1, Double.class), rs.getLong(2)) : null;
+        }
+    }
+
+    /**
+     * MySQL no devuelve filas de un UPDATE o DELETE: se bloquea la fila (si tiene la versión
+     * pedida) y se lee lo que tenía, y la escritura que sigue en la misma transacción ya no
+     * puede fallar ni encontrarse otro precio. Null si no existe o tiene otra versión.
+     */
+    private static ProductoAnterior bloquearAnterior(Connection conexion, Long id, Long version) throws SQLException {
+        try (PreparedStatement sentencia = conexion.prepareStatement("select precio, version from producto where id = ?"
+                + (version != null ? " and version = ?" : "") + " for update")) {
+            sentencia.setLong(1, id);
+            if (version != null) {
+                sentencia.setLong(2, version);
+            }
+            return ejecutarDevolviendoAnterior(sentencia);
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Long versionActual(Long id) {
+        return entityManager.createQuery("select p.version from Producto p where p.id = :id", Long.class)
+                .setParameter("id", id)
+                .getResultStream()
+                .findFirst()
+                .orElse(null);
+    }
+
+    @Override
+    @Transactional
+    public List<ProductoResumen> resumenes(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return entityManager.createQuery("select new " + ProductoResumen.class.getName()
+                        + "(p.id, p.nombre, p.precio, p.version) from Producto p where p.id in :ids", ProductoResumen.class)
+                .setParameter("ids", ids)
+                .getResultList();
+    }
+
+    @Override
+    @Transactional
+    public Set<String> actualizarLote(List<ModificacionProducto> modificaciones) {
+        if (modificaciones.isEmpty()) {
+            return Set.of();
+        }
+        // JDBC directo: Hibernate no agrupa en lotes las sentencias update de JPQL
+        int[] filas = entityManager.unwrap(Session.class).doReturningWork(conexion -> {
+            try (PreparedStatement sentencia = conexion.prepareStatement(
+                    "update producto set nombre = ?, descripcion = ?, precio = ?, version = version + 1"
+                            + " where id = ? and version = ?")) {
+                for (ModificacionProducto m : modificaciones) {
+                    sentencia.setString(1, m.nombre());
+                    sentencia.setString(2, m.descripcion());
+                    sentencia.setObject(3, m.precio(), Types.DOUBLE);
+                    sentencia.setLong(4, Long.parseLong(m.id()));
+                    sentencia.setLong(5, m.version());
+                    sentencia.addBatch();
+                }
+                return sentencia.executeBatch();
+            }
+        });
+        Set<String> actualizados = new HashSet<>();
+        for (int i = 0; i < filas.length; i++) {
+            // SUCCESS_NO_INFO: el driver no da el recuento (MySQL reescribiendo el lote); no falló
+            if (filas[i] > 0 || filas[i] == Statement.SUCCESS_NO_INFO) {
+                actualizados.add(modificaciones.get(i).id());
+            }
+        }
+        return actualizados;
+    }
+
+    // Sin readOnly (que iría a una réplica): el resultado se combina con los cambios que se
+    // confirman en el primario mientras tanto
+    @Override
+    @Transactional
+    public void recorrerPrecios(BiConsumer<Double, Long> consumidor) {
+        TypedQuery<Object[]> query = entityManager.createQuery(
+                        "select p.precio, count(p) from Producto p group by p.precio", Object[].class)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, 1000);
+
+        try (Stream<Object[]> filas = query.getResultStream()) {
+            filas.forEach(fila -> consumidor.accept((Double) fila[0], (Long) fila[1]));
+        }
+    }
+
+    // Del primario: se pide justo después de un commit y una réplica podría ir por detrás
+    @Override
+    @Transactional
+    public Double precioExtremo(boolean maximo) {
+        return entityManager.createQuery("select " + (maximo ? "max" : "min") + "(p.precio) from Producto p", Double.class)
+                .getSingleResult();
+    }
+}
@@ -0,0 +1,489 @@
+package com.sistemagestionapp.demojava.repository;
+
+import com.sistemagestionapp.demojava.datasource.DataSourceFragmentado;
+import com.sistemagestionapp.demojava.model.ModificacionProducto;
+import com.sistemagestionapp.demojava.model.OrdenProductos;
+import com.sistemagestionapp.demojava.model.Producto;
+import com.sistemagestionapp.demojava.model.ProductoAnterior;
+import com.sistemagestionapp.demojava.model.ProductoResumen;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Las operaciones de {@link ProductoRepository} que usa ProductoService, repartidas entre los
+ * fragmentos de {@link DataSourceFragmentado} ({@code app.db.fragmentos.hosts}). Con un solo
+ * fragmento cada método llama directamente al repositorio.
+ *
+ * <p>Cada producto vive en el fragmento {@link #fragmentoDe(long)} de su id (jump consistent
+ * hash: al pasar de N a N+1 fragmentos solo se mueve 1/(N+1) de los productos, todos al
+ * nuevo). Lo que va por id se ejecuta en ese fragmento, dentro de la transacción de quien
+ * llama. Listados, páginas, recuentos, precios y exportación se piden a todos los
+ * fragmentos a la vez, cada uno en su hilo y su transacción, y se mezclan aquí; las
+ * escrituras de varios productos se agrupan por fragmento, con una transacción por
+ * fragmento (no hay atomicidad entre fragmentos). Los ids nuevos los da
+ * {@link ReservaIdsProducto}, no la secuencia de cada fragmento.</p>
+ */
+@Component
+public class ProductosFragmentados {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductosFragmentados.class);
+
+    private static final Comparator<Producto> POR_ID = Comparator.comparing(Producto::getId);
+
+    private final ProductoRepository productoRepository;  // null si mongo
+    private final int fragmentos;
+    private final ReservaIdsProducto reservaIds;          // null con un solo fragmento
+    private final ExecutorService hilos;                  // null con un solo fragmento
+    private final DataSourceFragmentado fragmentado;      // null con un solo fragmento
+    private final ColacionNombres colacion;
+    private final boolean crearIndices;
+
+    public ProductosFragmentados(ObjectProvider<ProductoRepository> productoRepository,
+                                 ObjectProvider<DataSource> dataSource,
+                                 @Value("${app.db.engine:h2}") String dbEngine,
+                                 @Value("${spring.jpa.hibernate.ddl-auto:create}") String ddlAuto) {
+        this.productoRepository = productoRepository.getIfAvailable();
+        this.colacion = new ColacionNombres(dbEngine);
+        this.crearIndices = "update".equalsIgnoreCase(ddlAuto) || "create".equalsIgnoreCase(ddlAuto);
+        if (dataSource.getIfAvailable() instanceof DataSourceFragmentado fragmentado) {
+            this.fragmentos = fragmentado.getNumeroFragmentos();
+            this.fragmentado = fragmentado;
+            this.reservaIds = new ReservaIdsProducto(fragmentado.getFragmento(0), dbEngine);
+            AtomicInteger contador = new AtomicInteger();
+            this.hilos = Executors.newCachedThreadPool(r -> {
+                Thread hilo = new Thread(r, "fragmentos-productos-" + contador.incrementAndGet());
+                hilo.setDaemon(true);
+                return hilo;
+            });
+        } else {
+            this.fragmentos = 1;
+            this.reservaIds = null;
+            this.hilos = null;
+            this.fragmentado = null;
+        }
+    }
+
+    /**
+     * Con fragmentos las páginas por nombre ordenan con otra collation ({@link ColacionNombres}):
+     * se le crea su índice en cada fragmento, cuando el esquema ya existe en todos. Sin él las
+     * páginas funcionan igual, pero ordenando cada fragmento entero.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void crearIndicesNombre() {
+        if (!isActivo() || !crearIndices || colacion.collation() == null) {
+            return;
+        }
+        for (int f = 0; f < fragmentos; f++) {
+            try {
+                colacion.crearIndice(fragmentado.getFragmento(f));
+            } catch (SQLException | RuntimeException e) {
+                log.error("❌ No se pudo crear el índice {} en el fragmento {}: {}",
+                        ColacionNombres.INDICE, f, e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void cerrar() {
+        if (hilos != null) {
+            hilos.shutdownNow();
+        }
+    }
+
+    public boolean isActivo() {
+        return fragmentos > 1;
+    }
+
+    public int getNumeroFragmentos() {
+        return fragmentos;
+    }
+
+    public int fragmentoDe(long id) {
+        return fragmentoDe(id, fragmentos);
+    }
+
+    /** Jump consistent hash (Lamping y Veach) del id, mezclado antes porque los ids son consecutivos. */
+    static int fragmentoDe(long id, int fragmentos) {
+        long clave = id;
+        clave ^= clave >>> 33;
+        clave *= 0xff51afd7ed558ccdL;
+        clave ^= clave >>> 33;
+        long b = -1;
+        long j = 0;
+        while (j < fragmentos) {
+            b = j;
+            clave = clave * 2862933555777941757L + 1;
+            j = (long) ((b + 1) * ((double) (1L << 31) / (double) ((clave >>> 33) + 1)));
+        }
+        return (int) b;
+    }
+
+    // ---- por id: en el fragmento del producto ----
+
+    public Optional<Producto> findById(Long id) {
+        return enFragmentoDe(id, () -> productoRepository.findById(id));
+    }
+
+    public Long versionActual(Long id) {
+        return enFragmentoDe(id, () -> productoRepository.versionActual(id));
+    }
+
+    public ProductoAnterior actualizarSiVersion(Long id, String nombre, String descripcion, Double precio, Long version) {
+        return enFragmentoDe(id, () -> productoRepository.actualizarSiVersion(id, nombre, descripcion, precio, version));
+    }
+
+    public ProductoAnterior borrarSiVersion(Long id, Long version) {
+        return enFragmentoDe(id, () -> productoRepository.borrarSiVersion(id, version));
+    }
+
+    /** Alta de un producto; al volver tiene id y versión. */
+    public void insertar(Producto producto) {
+        if (!isActivo()) {
+            productoRepository.save(producto);
+            return;
+        }
+        producto.setId(reservaIds.siguiente());
+        enFragmentoDe(producto.getId(), () -> productoRepository.insertarConIds(List.of(producto)));
+    }
+
+    // ---- varios productos: agrupados por fragmento ----
+
+    public int insertarLote(List<Producto> lote) {
+        if (!isActivo()) {
+            return productoRepository.insertarLote(lote);
+        }
+        for (Producto producto : lote) {
+            producto.setId(reservaIds.siguiente());
+        }
+        return porFragmento(lote, Producto::getId, (f, parte) -> productoRepository.insertarConIds(parte))
+                .stream().mapToInt(Integer::intValue).sum();
+    }
+
+    public List<ProductoResumen> resumenes(Collection<Long> ids) {
+        if (!isActivo()) {
+            return productoRepository.resumenes(ids);
+        }
+        List<ProductoResumen> todos = new ArrayList<>();
+        porFragmento(ids, id -> id, (f, parte) -> productoRepository.resumenes(parte)).forEach(todos::addAll);
+        return todos;
+    }
+
+    public Set<String> actualizarLote(List<ModificacionProducto> modificaciones) {
+        if (!isActivo()) {
+            return productoRepository.actualizarLote(modificaciones);
+        }
+        Set<String> actualizados = new HashSet<>();
+        porFragmento(modificaciones, m -> Long.parseLong(m.id()), (f, parte) -> productoRepository.actualizarLote(parte))
+                .forEach(actualizados::addAll);
+        return actualizados;
+    }
+
+    // ---- todo el catálogo: a todos los fragmentos a la vez ----
+
+    public List<Producto> findAll() {
+        if (!isActivo()) {
+            return productoRepository.findAll();
+        }
+        List<Producto> todos = new ArrayList<>();
+        enTodos(f -> productoRepository.findAll()).forEach(todos::addAll);
+        todos.sort(POR_ID);
+        return todos;
+    }
+
+    public long count() {
+        if (!isActivo()) {
+            return productoRepository.count();
+        }
+        return enTodos(f -> productoRepository.count()).stream().mapToLong(Long::longValue).sum();
+    }
+
+    public Long maxId() {
+        if (!isActivo()) {
+            return productoRepository.maxId();
+        }
+        return enTodos(f -> productoRepository.maxId()).stream()
+                .filter(Objects::nonNull)
+                .max(Long::compare)
+                .orElse(null);
+    }
+
+    public Double precioExtremo(boolean maximo) {
+        if (!isActivo()) {
+            return productoRepository.precioExtremo(maximo);
+        }
+        Comparator<Double> orden = maximo ? Comparator.naturalOrder() : Comparator.reverseOrder();
+        return enTodos(f -> productoRepository.precioExtremo(maximo)).stream()
+                .filter(Objects::nonNull)
+                .max(orden)
+                .orElse(null);
+    }
+
+    /** Precios distintos con su número de productos, sumando los de todos los fragmentos. */
+    public void recorrerPrecios(BiConsumer<Double, Long> consumidor) {
+        if (!isActivo()) {
+            productoRepository.recorrerPrecios(consumidor);
+            return;
+        }
+        List<Map<Double, Long>> parciales = enTodos(f -> {
+            Map<Double, Long> precios = new HashMap<>();
+            productoRepository.recorrerPrecios((precio, n) -> precios.merge(precio, n, Long::sum));
+            return precios;
+        });
+        Map<Double, Long> total = new HashMap<>();
+        parciales.forEach(parcial -> parcial.forEach((precio, n) -> total.merge(precio, n, Long::sum)));
+        total.forEach(consumidor);
+    }
+
+    /**
+     * Página por keyset: cada fragmento devuelve sus {@code limite} primeras filas desde el
+     * cursor y de la mezcla, en el mismo orden, se quedan las {@code limite} primeras. La
+     * mezcla tiene que ordenar exactamente como la base de datos, o el cursor de la página
+     * siguiente salta o repite filas: por eso el nombre se ordena por punto de código en los
+     * dos sitios ({@link ColacionNombres}).
+     */
+    public List<ProductoResumen> buscarPagina(OrdenProductos orden, Object valor, Long id,
+                                              boolean haciaAtras, int limite) {
+        if (!isActivo()) {
+            return productoRepository.buscarPagina(orden, valor, id, haciaAtras, limite);
+        }
+        Comparator<ProductoResumen> comparador = comparador(orden);
+        if (haciaAtras) {
+            comparador = comparador.reversed();
+        }
+        List<ProductoResumen> todas = new ArrayList<>();
+        enTodos(f -> productoRepository.buscarPagina(orden, valor, id, haciaAtras, limite, colacion.collation()))
+                .forEach(todas::addAll);
+        todas.sort(comparador);
+        return todas.size() > limite ? new ArrayList<>(todas.subList(0, limite)) : todas;
+    }
+
+    // Igual que el ORDER BY de buscarPagina en los fragmentos
+    private Comparator<ProductoResumen> comparador(OrdenProductos orden) {
+        Comparator<ProductoResumen> porId = Comparator.comparingLong(r -> Long.parseLong(r.getId()));
+        return switch (orden) {
+            case NOMBRE -> Comparator.comparing(ProductoResumen::getNombre, colacion.nombres()).thenComparing(porId);
+            case PRECIO -> Comparator.comparing(ProductoResumen::getPrecio, colacion.precios()).thenComparing(porId);
+            default -> porId;
+        };
+    }
+
+    /**
+     * Recorre el catálogo en orden de id mezclando un cursor por fragmento (k-way merge):
+     * cada fragmento se lee en su hilo hacia una cola de {@code tamanoFetch} productos, así
+     * que la memoria sigue sin depender del tamaño del catálogo. Si el consumidor lanza una
+     * excepción se cortan todos los cursores.
+     */
+    public void recorrer(Long desdeId, int tamanoFetch, Consumer<Producto> consumidor) {
+        if (!isActivo()) {
+            productoRepository.recorrer(desdeId, tamanoFetch, consumidor);
+            return;
+        }
+        Producto fin = new Producto();
+        AtomicBoolean cancelado = new AtomicBoolean();
+        List<BlockingQueue<Producto>> colas = new ArrayList<>(fragmentos);
+        List<Future<?>> lectores = new ArrayList<>(fragmentos);
+        for (int f = 0; f < fragmentos; f++) {
+            int fragmento = f;
+            BlockingQueue<Producto> cola = new ArrayBlockingQueue<>(Math.max(1, tamanoFetch));
+            colas.add(cola);
+            lectores.add(hilos.submit(() -> {
+                try {
+                    DataSourceFragmentado.en(fragmento, () -> {
+                        productoRepository.recorrer(desdeId, tamanoFetch, p -> poner(cola, p, cancelado));
+                        return null;
+                    });
+                } finally {
+                    if (!cancelado.get()) {
+                        poner(cola, fin, cancelado);
+                    }
+                }
+            }));
+        }
+
+        try {
+            PriorityQueue<Cabeza> cabezas = new PriorityQueue<>(Comparator.comparing(c -> c.producto().getId()));
+            for (int f = 0; f < fragmentos; f++) {
+                siguiente(colas.get(f), f, fin, lectores.get(f), cabezas);
+            }
+            while (!cabezas.isEmpty()) {
+                Cabeza cabeza = cabezas.poll();
+                consumidor.accept(cabeza.producto());
+                siguiente(colas.get(cabeza.fragmento()), cabeza.fragmento(), fin, lectores.get(cabeza.fragmento()), cabezas);
+            }
+        } finally {
+            cancelado.set(true);
+            lectores.forEach(lector -> lector.cancel(false));
+        }
+    }
+
+    private record Cabeza(Producto producto, int fragmento) {
+    }
+
+    private static void siguiente(BlockingQueue<Producto> cola, int fragmento, Producto fin, Future<?> lector,
+                                  PriorityQueue<Cabeza> cabezas) {
+        Producto producto;
+        try {
+            producto = cola.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Recorrido del catálogo interrumpido", e);
+        }
+        if (producto != fin) {
+            cabezas.add(new Cabeza(producto, fragmento));
+            return;
+        }
+        // el lector ha terminado: si fue por un error, se propaga
+        esperar(lector);
+    }
+
+    private static void poner(BlockingQueue<Producto> cola, Producto producto, AtomicBoolean cancelado) {
+        try {
+            while (!cola.offer(producto, 100, TimeUnit.MILLISECONDS)) {
+                if (cancelado.get()) {
+                    throw new CancellationException();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException();
+        }
+    }
+
+    // ---- reparto entre fragmentos ----
+
+    /**
+     * Ejecuta {@code accion} en el fragmento {@code fragmento}. Dentro de una transacción, el
+     * primer fragmento que se pide es el de su conexión; si después se pide otro, la acción
+     * va en otro hilo con su propia transacción, porque la conexión no puede cambiar de base
+     * de datos. Por eso la transacción no debe haber consultado nada antes sin pasar por aquí.
+     *
+     * <p>La transacción de quien llama solo abarca ese primer fragmento. Lo que se escribe en
+     * otro se confirma al terminar la acción, aunque después la transacción de quien llama
+     * haga rollback, y un rollback de esa otra no deshace lo del primero. Quien escriba varios
+     * productos en una transacción debe aceptar que cada fragmento confirme por su cuenta
+     * (como guardarModificaciones, donde cada fila se comprueba y falla por separado) o
+     * escribirlos de uno en uno, cada uno en su transacción.</p>
+     */
+    public <T> T en(int fragmento, Supplier<T> accion) {
+        if (!isActivo()) {
+            return accion.get();
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            Integer ligado = (Integer) TransactionSynchronizationManager.getResource(this);
+            if (ligado == null) {
+                TransactionSynchronizationManager.bindResource(this, fragmento);
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        TransactionSynchronizationManager.unbindResourceIfPossible(ProductosFragmentados.this);
+                    }
+                });
+            } else if (ligado != fragmento) {
+                return esperar(hilos.submit(() -> DataSourceFragmentado.en(fragmento, accion)));
+            }
+        }
+        return DataSourceFragmentado.en(fragmento, accion);
+    }
+
+    /** Ejecuta {@code accion} en {@code fragmento} en otro hilo, fuera de la transacción de quien llama. */
+    public <T> T aparte(int fragmento, Supplier<T> accion) {
+        if (!isActivo()) {
+            throw new IllegalStateException("No hay fragmentos de productos (app.db.fragmentos.hosts)");
+        }
+        return esperar(hilos.submit(() -> DataSourceFragmentado.en(fragmento, accion)));
+    }
+
+    private <T> T enFragmentoDe(Long id, Supplier<T> accion) {
+        return en(fragmentoDe(id), accion);
+    }
+
+    /** La misma consulta en todos los fragmentos a la vez; resultados en orden de fragmento. */
+    private <T> List<T> enTodos(IntFunction<T> consulta) {
+        List<Future<T>> futuros = new ArrayList<>(fragmentos);
+        for (int f = 0; f < fragmentos; f++) {
+            int fragmento = f;
+            futuros.add(hilos.submit(() -> DataSourceFragmentado.en(fragmento, () -> consulta.apply(fragmento))));
+        }
+        return recoger(futuros);
+    }
+
+    /** Agrupa {@code elementos} por el fragmento de su id y aplica {@code accion} a cada grupo en paralelo. */
+    private <E, T> List<T> porFragmento(Collection<E> elementos, ToLongFunction<E> id,
+                                       BiFunction<Integer, List<E>, T> accion) {
+        Map<Integer, List<E>> grupos = new HashMap<>();
+        for (E elemento : elementos) {
+            grupos.computeIfAbsent(fragmentoDe(id.applyAsLong(elemento)), f -> new ArrayList<>()).add(elemento);
+        }
+        List<Future<T>> futuros = new ArrayList<>(grupos.size());
+        grupos.forEach((fragmento, parte) ->
+                futuros.add(hilos.submit(() -> DataSourceFragmentado.en(fragmento, () -> accion.apply(fragmento, parte)))));
+        return recoger(futuros);
+    }
+
+    private static <T> List<T> recoger(List<Future<T>> futuros) {
+        List<T> resultados = new ArrayList<>(futuros.size());
+        try {
+            for (Future<T> futuro : futuros) {
+                resultados.add(esperar(futuro));
+            }
+            return resultados;
+        } finally {
+            futuros.forEach(futuro -> futuro.cancel(false));
+        }
+    }
+
+    private static <T> T esperar(Future<T> futuro) {
+        try {
+            return futuro.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException("Error en un fragmento de productos", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Consulta a los fragmentos interrumpida", e);
+        }
+    }
+}
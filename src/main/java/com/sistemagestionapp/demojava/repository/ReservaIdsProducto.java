@@ -0,0 +1,79 @@
+package com.sistemagestionapp.demojava.repository;
+
+import com.sistemagestionapp.demojava.model.Producto;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Ids de productos únicos entre todos los fragmentos: salen de la secuencia producto_seq del
+ * fragmento 0 en bloques de {@link Producto#TAMANO_BLOQUE_IDS}, con el mismo convenio que el
+ * optimizador pooled de Hibernate (el valor v reserva los ids (v - bloque, v]). Así da igual
+ * que los ids los reparta esta clase o Hibernate sin fragmentos, y DataInitializer la alinea
+ * igual en los dos casos. Un viaje a la base de datos cada bloque, en una conexión aparte
+ * de la transacción que inserta.
+ */
+class ReservaIdsProducto {
+
+    private final DataSource fragmentoCero;
+    private final String engine;
+
+    private long siguiente;
+    private long ultimo = -1;  // último id del bloque reservado
+
+    ReservaIdsProducto(DataSource fragmentoCero, String engine) {
+        this.fragmentoCero = fragmentoCero;
+        this.engine = engine == null ? "h2" : engine.toLowerCase();
+    }
+
+    synchronized long siguiente() {
+        if (siguiente > ultimo) {
+            long valor = siguienteValor();
+            siguiente = Math.max(1, valor - Producto.TAMANO_BLOQUE_IDS + 1);
+            ultimo = valor;
+        }
+        return siguiente++;
+    }
+
+    private long siguienteValor() {
+        try (Connection conexion = fragmentoCero.getConnection()) {
+            if ("postgres".equals(engine) || "postgresql".equals(engine)) {
+                return leerValor(conexion, "select nextval('producto_seq')");
+            }
+            if ("h2".equals(engine)) {
+                return leerValor(conexion, "select next value for producto_seq");
+            }
+            // MySQL: tabla producto_seq(next_val), como la usa Hibernate
+            conexion.setAutoCommit(false);
+            try {
+                long valor = leerValor(conexion, "select next_val from producto_seq for update");
+                try (PreparedStatement sentencia = conexion.prepareStatement("update producto_seq set next_val = ?")) {
+                    sentencia.setLong(1, valor + Producto.TAMANO_BLOQUE_IDS);
+                    sentencia.executeUpdate();
+                }
+                conexion.commit();
+                return valor;
+            } catch (SQLException | RuntimeException e) {
+                conexion.rollback();
+                throw e;
+            } finally {
+                conexion.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("No se pudo reservar un bloque de ids en producto_seq", e);
+        }
+    }
+
+    private static long leerValor(Connection conexion, String sql) throws SQLException {
+        try (Statement sentencia = conexion.createStatement(); ResultSet rs = sentencia.executeQuery(sql)) {
+            if (!rs.next()) {
+                throw new IllegalStateException("La secuencia producto_seq no devolvió valor");
+            }
+            return rs.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.sistemagestionapp.demojava.repository;
+
+import com.sistemagestionapp.demojava.model.SalidaProducto;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+
+import java.util.List;
+
+public interface SalidaProductoRepository extends JpaRepository<SalidaProducto, Long> {
+
+    /**
+     * Las filas pendientes más antiguas (por la clave primaria, sin ordenar la tabla),
+     * bloqueadas con FOR UPDATE hasta el fin de la transacción: otro proyector que las pida
+     * espera a que estas estén proyectadas y borradas.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<SalidaProducto> findByOrderByIdAsc(Pageable pagina);
+}
@@ -0,0 +1,19 @@
+package com.sistemagestionapp.demojava.repository;
+
+import com.sistemagestionapp.demojava.model.TokenRevocado;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface TokenRevocadoRepository extends JpaRepository<TokenRevocado, Long> {
+
+    List<TokenRevocado> findByExpiraGreaterThan(long ahora);
+
+    @Modifying
+    @Transactional
+    @Query("delete from TokenRevocado t where t.expira <= :ahora")
+    int borrarCaducados(long ahora);
+}
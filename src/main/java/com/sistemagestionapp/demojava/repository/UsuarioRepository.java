@@ -2,12 +2,21 @@ package com.sistemagestionapp.demojava.repository;
 
 import com.sistemagestionapp.demojava.model.Usuario;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface UsuarioRepository extends JpaRepository<Usuario, Long> {
 
     boolean existsByCorreo(String correo);
 
     Optional<Usuario> findByCorreo(String correo);
+
+    /**
+     * Recorre todos los correos sin cargar las entidades (para construir el filtro de Bloom).
+     * Hay que consumirlo dentro de una transacción y cerrarlo.
+     */
+    @Query("select u.correo from Usuario u")
+    Stream<String> streamCorreos();
 }
\ No newline at end of file
@@ -0,0 +1,99 @@
+package com.sistemagestionapp.demojava.repository.mongo;
+
+import com.sistemagestionapp.demojava.model.ModificacionProducto;
+import com.sistemagestionapp.demojava.model.OrdenProductos;
+import com.sistemagestionapp.demojava.model.Producto;
+import com.sistemagestionapp.demojava.model.ProductoResumen;
+import com.sistemagestionapp.demojava.model.mongo.ProductoMongo;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Equivalente Mongo de {@code ProductoRepositoryCustom}: listado por keyset
+ * devolviendo solo los campos que se muestran en la tabla.
+ */
+public interface ProductoMongoRepositoryCustom {
+
+    List<ProductoResumen> buscarPagina(OrdenProductos orden, Object valor, String id,
+                                       boolean haciaAtras, int limite);
+
+    /**
+     * Inserta un lote con un único bulkWrite desordenado: un documento que falla no
+     * detiene al resto. Si hay errores se lanza BulkOperationException con el resultado parcial.
+     *
+     * @return número de documentos insertados
+     */
+    int insertarLote(List<ProductoMongo> lote);
+
+    /**
+     * Recorre los productos con id mayor que {@code desdeId} (todos si es null) en orden de _id
+     * con un cursor del servidor que trae {@code tamanoLote} documentos por viaje.
+     */
+    void recorrer(String desdeId, int tamanoLote, Consumer<ProductoMongo> consumidor);
+
+    /**
+     * Actualiza el producto con un único findAndModify condicional a la versión
+     * ({@code null} = sin comprobarla) e incrementa la versión.
+     *
+     * @return el documento como estaba antes de actualizarlo (la versión nueva es la suya + 1),
+     * o null si no existe o su versión ya no es esa
+     */
+    ProductoMongo actualizarSiVersion(String id, String nombre, String descripcion, Double precio, Long version);
+
+    /**
+     * Borra el producto con un único findAndRemove condicional a la versión ({@code null} = sin comprobarla).
+     *
+     * @return el documento borrado, o null si no se borró nada
+     */
+    ProductoMongo borrarSiVersion(String id, Long version);
+
+    /**
+     * Nombre, precio y versión actuales de varios productos en una sola consulta al primario
+     * (los que no existen no vienen).
+     */
+    List<ProductoResumen> resumenes(Collection<String> ids);
+
+    /**
+     * Aplica todas las modificaciones en un único bulkWrite desordenado de updateOne
+     * condicionales a la versión, cada uno igual que {@link #actualizarSiVersion}.
+     *
+     * @return ids de los productos actualizados; los que faltan no existían o ya no tenían esa versión
+     */
+    Set<String> actualizarLote(List<ModificacionProducto> modificaciones);
+
+    /**
+     * Versión actual del producto (0 si el documento no tiene el campo), o null si no existe.
+     */
+    Long versionActual(String id);
+
+    /**
+     * Cada precio distinto del catálogo con el número de productos que lo tienen
+     * ($group por precio; los documentos sin precio llegan con precio null).
+     */
+    void recorrerPrecios(BiConsumer<Double, Long> consumidor);
+
+    /**
+     * Precio mínimo o máximo, o null si no hay productos con precio. Usa el índice (precio, _id).
+     */
+    Double precioExtremo(boolean maximo);
+
+    /**
+     * Deja la copia de lectura igual que los productos de SQL (modo CQRS) en un único
+     * bulkWrite desordenado: reemplaza o crea los documentos de {@code vigentes} (con _id
+     * el id SQL en texto) y borra los de {@code borrados}. Todos llevan {@code marca} en un
+     * campo que no se mapea, para poder retirar después lo que una reconstrucción no tocó.
+     */
+    void proyectar(List<Producto> vigentes, Collection<String> borrados, Date marca);
+
+    /**
+     * Borra los documentos proyectados antes de {@code marca} o nunca proyectados.
+     *
+     * @return número de documentos borrados
+     */
+    long borrarProyectadosAntesDe(Date marca);
+}
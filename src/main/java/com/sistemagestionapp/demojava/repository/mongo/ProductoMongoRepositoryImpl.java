@@ -0,0 +1,247 @@
+package com.sistemagestionapp.demojava.repository.mongo;
+
+import com.mongodb.ReadPreference;
+import com.sistemagestionapp.demojava.model.ModificacionProducto;
+import com.sistemagestionapp.demojava.model.OrdenProductos;
+import com.sistemagestionapp.demojava.model.Producto;
+import com.sistemagestionapp.demojava.model.ProductoResumen;
+import com.sistemagestionapp.demojava.model.mongo.ProductoMongo;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Implementación con {@link MongoOperations} de {@link ProductoMongoRepositoryCustom}.
+ * La proyección se hace en el servidor incluyendo solo nombre, precio y versión (más _id).
+ * Las lecturas del catálogo (páginas y exportación) usan app.mongo.lectura.read-preference,
+ * así que pueden ir a secundarios; las escrituras y los findById siguen en el primario.
+ */
+public class ProductoMongoRepositoryImpl implements ProductoMongoRepositoryCustom {
+
+    // Último lote de escritura diferida que tocó el documento (no se mapea en ProductoMongo)
+    private static final String CAMPO_LOTE = "loteEscritura";
+    // Cuándo escribió el documento el proyector CQRS (tampoco se mapea)
+    private static final String CAMPO_PROYECCION = "proyectado";
+
+    private final MongoOperations mongoOperations;
+    private final ReadPreference lectura;
+
+    public ProductoMongoRepositoryImpl(MongoOperations mongoOperations,
+                                       @Value("${app.mongo.lectura.read-preference:primary}") String lectura) {
+        this.mongoOperations = mongoOperations;
+        this.lectura = ReadPreference.valueOf(lectura);
+    }
+
+    @Override
+    public List<ProductoResumen> buscarPagina(OrdenProductos orden, Object valor, String id,
+                                              boolean haciaAtras, int limite) {
+        boolean porId = orden == OrdenProductos.ID;
+        Sort.Direction sentido = haciaAtras ? Sort.Direction.DESC : Sort.Direction.ASC;
+
+        Query query = new Query();
+
+        if (id != null) {
+            if (porId) {
+                query.addCriteria(mayorOMenor(Criteria.where("id"), id, haciaAtras));
+            } else {
+                String campo = orden.getCampo();
+                query.addCriteria(new Criteria().orOperator(
+                        mayorOMenor(Criteria.where(campo), valor, haciaAtras),
+                        new Criteria().andOperator(
+                                Criteria.where(campo).is(valor),
+                                mayorOMenor(Criteria.where("id"), id, haciaAtras)
+                        )
+                ));
+            }
+        }
+
+        query.with(porId
+                ? Sort.by(sentido, "id")
+                : Sort.by(sentido, orden.getCampo()).and(Sort.by(sentido, "id")));
+        query.limit(limite);
+        query.fields().include("nombre", "precio", "version");
+        query.withReadPreference(lectura);
+
+        return mongoOperations.find(query, ProductoMongo.class).stream()
+                .map(p -> new ProductoResumen(p.getId(), p.getNombre(), p.getPrecio(), p.getVersion()))
+                .toList();
+    }
+
+    @Override
+    public int insertarLote(List<ProductoMongo> lote) {
+        return mongoOperations.bulkOps(BulkOperations.BulkMode.UNORDERED, ProductoMongo.class)
+                .insert(lote)
+                .execute()
+                .getInsertedCount();
+    }
+
+    @Override
+    public void recorrer(String desdeId, int tamanoLote, Consumer<ProductoMongo> consumidor) {
+        Query query = new Query();
+        if (desdeId != null) {
+            query.addCriteria(Criteria.where("id").gt(desdeId));
+        }
+        query.with(Sort.by(Sort.Direction.ASC, "id")).cursorBatchSize(tamanoLote);
+        query.withReadPreference(lectura);
+
+        try (Stream<ProductoMongo> productos = mongoOperations.stream(query, ProductoMongo.class)) {
+            productos.forEach(consumidor);
+        }
+    }
+
+    @Override
+    public ProductoMongo actualizarSiVersion(String id, String nombre, String descripcion, Double precio, Long version) {
+        Update update = new Update()
+                .set("nombre", nombre)
+                .set("descripcion", descripcion)
+                .set("precio", precio)
+                .inc("version", 1);
+
+        // se devuelve el documento anterior para conocer el precio que tenía
+        return mongoOperations.findAndModify(porIdYVersion(id, version), update,
+                FindAndModifyOptions.options().returnNew(false), ProductoMongo.class);
+    }
+
+    @Override
+    public ProductoMongo borrarSiVersion(String id, Long version) {
+        return mongoOperations.findAndRemove(porIdYVersion(id, version), ProductoMongo.class);
+    }
+
+    @Override
+    public List<ProductoResumen> resumenes(Collection<String> ids) {
+        Query query = Query.query(Criteria.where("id").in(ids));
+        query.fields().include("nombre", "precio", "version");
+        return mongoOperations.find(query, ProductoMongo.class).stream()
+                .map(p -> new ProductoResumen(p.getId(), p.getNombre(), p.getPrecio(),
+                        p.getVersion() == null ? 0L : p.getVersion()))
+                .toList();
+    }
+
+    @Override
+    public Set<String> actualizarLote(List<ModificacionProducto> modificaciones) {
+        if (modificaciones.isEmpty()) {
+            return Set.of();
+        }
+        // El resultado del bulkWrite solo da el total de documentos tocados, no cuáles. Cada
+        // update deja además la marca del lote; si no se tocaron todos, se pregunta por ella.
+        String lote = new ObjectId().toHexString();
+        BulkOperations bulk = mongoOperations.bulkOps(BulkOperations.BulkMode.UNORDERED, ProductoMongo.class);
+        for (ModificacionProducto m : modificaciones) {
+            bulk.updateOne(porIdYVersion(m.id(), m.version()), new Update()
+                    .set("nombre", m.nombre())
+                    .set("descripcion", m.descripcion())
+                    .set("precio", m.precio())
+                    .set(CAMPO_LOTE, lote)
+                    .inc("version", 1));
+        }
+        if (bulk.execute().getMatchedCount() == modificaciones.size()) {
+            return modificaciones.stream().map(ModificacionProducto::id).collect(Collectors.toSet());
+        }
+        Query query = Query.query(Criteria.where("id").in(modificaciones.stream().map(ModificacionProducto::id).toList())
+                .and(CAMPO_LOTE).is(lote));
+        query.fields().include("id");
+        return mongoOperations.find(query, ProductoMongo.class).stream()
+                .map(ProductoMongo::getId)
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public void proyectar(List<Producto> vigentes, Collection<String> borrados, Date marca) {
+        if (vigentes.isEmpty() && borrados.isEmpty()) {
+            return;
+        }
+        BulkOperations bulk = mongoOperations.bulkOps(BulkOperations.BulkMode.UNORDERED, ProductoMongo.class);
+        for (Producto p : vigentes) {
+            String id = String.valueOf(p.getId());
+            Document documento = new Document("_id", id)
+                    .append("nombre", p.getNombre())
+                    .append("descripcion", p.getDescripcion())
+                    .append("precio", p.getPrecio())
+                    .append("version", p.getVersion())
+                    .append(CAMPO_PROYECCION, marca);
+            bulk.replaceOne(Query.query(Criteria.where("id").is(id)), documento, FindAndReplaceOptions.options().upsert());
+        }
+        for (String id : borrados) {
+            bulk.remove(Query.query(Criteria.where("id").is(id)));
+        }
+        bulk.execute();
+    }
+
+    @Override
+    public long borrarProyectadosAntesDe(Date marca) {
+        Query query = Query.query(new Criteria().orOperator(
+                Criteria.where(CAMPO_PROYECCION).lt(marca),
+                Criteria.where(CAMPO_PROYECCION).exists(false)));
+        return mongoOperations.remove(query, ProductoMongo.class).getDeletedCount();
+    }
+
+    @Override
+    public Long versionActual(String id) {
+        Query query = Query.query(Criteria.where("id").is(id));
+        query.fields().include("version");
+        ProductoMongo actual = mongoOperations.findOne(query, ProductoMongo.class);
+        if (actual == null) {
+            return null;
+        }
+        return actual.getVersion() == null ? 0L : actual.getVersion();
+    }
+
+    @Override
+    public void recorrerPrecios(BiConsumer<Double, Long> consumidor) {
+        Aggregation agregacion = Aggregation.newAggregation(
+                        Aggregation.group("precio").count().as("productos"))
+                .withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+
+        try (Stream<Document> grupos = mongoOperations.aggregateStream(agregacion, ProductoMongo.class, Document.class)) {
+            grupos.forEach(grupo -> {
+                Object precio = grupo.get("_id");
+                consumidor.accept(precio instanceof Number n ? n.doubleValue() : null,
+                        ((Number) grupo.get("productos")).longValue());
+            });
+        }
+    }
+
+    @Override
+    public Double precioExtremo(boolean maximo) {
+        Query query = Query.query(Criteria.where("precio").ne(null))
+                .with(Sort.by(maximo ? Sort.Direction.DESC : Sort.Direction.ASC, "precio"))
+                .limit(1);
+        query.fields().include("precio");
+        ProductoMongo extremo = mongoOperations.findOne(query, ProductoMongo.class);
+        return extremo == null ? null : extremo.getPrecio();
+    }
+
+    private static Query porIdYVersion(String id, Long version) {
+        Criteria criteria = Criteria.where("id").is(id);
+        if (version != null) {
+            criteria = version == 0
+                    // is(null) también casa con documentos sin el campo (anteriores a @Version)
+                    ? criteria.orOperator(Criteria.where("version").is(0L), Criteria.where("version").is(null))
+                    : criteria.and("version").is(version);
+        }
+        return Query.query(criteria);
+    }
+
+    private static Criteria mayorOMenor(Criteria criteria, Object valor, boolean haciaAtras) {
+        return haciaAtras ? criteria.lt(valor) : criteria.gt(valor);
+    }
+}
@@ -0,0 +1,13 @@
+package com.sistemagestionapp.demojava.repository.mongo;
+
+import com.sistemagestionapp.demojava.model.mongo.TokenRevocadoMongo;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.Date;
+import java.util.List;
+
+public interface TokenRevocadoMongoRepository extends MongoRepository<TokenRevocadoMongo, Long> {
+
+    // el índice TTL no borra al instante: se filtra también por fecha
+    List<TokenRevocadoMongo> findByExpiraAfter(Date ahora);
+}
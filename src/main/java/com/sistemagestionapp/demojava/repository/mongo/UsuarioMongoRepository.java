@@ -2,12 +2,20 @@ package com.sistemagestionapp.demojava.repository.mongo;
 
 import com.sistemagestionapp.demojava.model.mongo.UsuarioMongo;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface UsuarioMongoRepository extends MongoRepository<UsuarioMongo, String> {
 
     boolean existsByCorreo(String correo);
 
     Optional<UsuarioMongo> findByCorreo(String correo);
+
+    /**
+     * Recorre la colección con un cursor trayendo solo el campo correo. Hay que cerrarlo.
+     */
+    @Query(value = "{}", fields = "{ 'correo' : 1 }")
+    Stream<UsuarioMongo> streamCorreos();
 }
\ No newline at end of file
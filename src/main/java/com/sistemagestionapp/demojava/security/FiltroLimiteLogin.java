@@ -0,0 +1,130 @@
+package com.sistemagestionapp.demojava.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.event.AuthenticationFailureBadCredentialsEvent;
+import org.springframework.security.authentication.event.AuthenticationSuccessEvent;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Frena los intentos de login antes de que lleguen a UsuarioService y a BCrypt.
+ *
+ * <p>Solo mira POST /login. Cada intento gasta una ficha del cubo de la IP y otra del de
+ * {@code correo} (ver {@link LimitadorIntentos}); si alguno está vacío o bloqueado se
+ * redirige a /login?bloqueado con Retry-After sin tocar la base de datos ni calcular
+ * ningún hash. Los fallos y aciertos se conocen por los eventos de Spring Security y
+ * alargan o quitan la espera de esa IP y ese correo.</p>
+ *
+ * <p>La IP es {@code request.getRemoteAddr()}: detrás de un proxy hay que activar
+ * server.forward-headers-strategy para que sea la del cliente y no la del proxy.</p>
+ */
+public class FiltroLimiteLogin extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(FiltroLimiteLogin.class);
+
+    private final LimitadorIntentos porIp;
+    private final LimitadorIntentos porCorreo;
+    private final String urlLogin;
+    private final String parametroCorreo;
+
+    private final LongAdder rechazadosPorIp = new LongAdder();
+    private final LongAdder rechazadosPorCorreo = new LongAdder();
+
+    public FiltroLimiteLogin(LimitadorIntentos porIp, LimitadorIntentos porCorreo,
+                             String urlLogin, String parametroCorreo) {
+        this.porIp = porIp;
+        this.porCorreo = porCorreo;
+        this.urlLogin = urlLogin;
+        this.parametroCorreo = parametroCorreo;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod()) || !urlLogin.equals(request.getServletPath());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        long ahora = System.currentTimeMillis();
+        long espera = porIp.intentar(request.getRemoteAddr(), ahora);
+        if (espera > 0) {
+            rechazadosPorIp.increment();
+        } else {
+            String correo = clave(request.getParameter(parametroCorreo));
+            espera = correo == null ? 0 : porCorreo.intentar(correo, ahora);
+            if (espera > 0) {
+                rechazadosPorCorreo.increment();
+            }
+        }
+        if (espera > 0) {
+            log.debug("Login frenado desde {} ({} ms de espera)", request.getRemoteAddr(), espera);
+            response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString((espera + 999) / 1000));
+            response.sendRedirect(request.getContextPath() + urlLogin + "?bloqueado");
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    @EventListener
+    public void alFallarLogin(AuthenticationFailureBadCredentialsEvent evento) {
+        long ahora = System.currentTimeMillis();
+        String ip = ip(evento.getAuthentication());
+        if (ip != null) {
+            porIp.fallo(ip, ahora);
+        }
+        String correo = clave(evento.getAuthentication().getName());
+        if (correo != null) {
+            porCorreo.fallo(correo, ahora);
+        }
+    }
+
+    @EventListener
+    public void alEntrar(AuthenticationSuccessEvent evento) {
+        long ahora = System.currentTimeMillis();
+        String ip = ip(evento.getAuthentication());
+        if (ip != null) {
+            porIp.acierto(ip, ahora);
+        }
+        String correo = clave(evento.getAuthentication().getName());
+        if (correo != null) {
+            porCorreo.acierto(correo, ahora);
+        }
+    }
+
+    public long getRechazadosPorIp() {
+        return rechazadosPorIp.sum();
+    }
+
+    public long getRechazadosPorCorreo() {
+        return rechazadosPorCorreo.sum();
+    }
+
+    public long getExpulsiones() {
+        return porIp.getExpulsiones() + porCorreo.getExpulsiones();
+    }
+
+    private static String ip(Authentication autenticacion) {
+        return autenticacion.getDetails() instanceof WebAuthenticationDetails detalles ? detalles.getRemoteAddress() : null;
+    }
+
+    // Igual que el filtro de Bloom de UsuarioService: las variantes de un correo cuentan juntas
+    private static String clave(String correo) {
+        if (correo == null || correo.isBlank()) {
+            return null;
+        }
+        return correo.trim().toLowerCase(Locale.ROOT);
+    }
+}
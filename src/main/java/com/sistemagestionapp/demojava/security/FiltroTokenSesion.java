@@ -0,0 +1,163 @@
+package com.sistemagestionapp.demojava.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.authentication.AuthenticationSuccessHandler;
+import org.springframework.security.web.authentication.logout.LogoutHandler;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Autenticación sin sesión HTTP (app.auth.modo=token): todo lo que tiene que ver con la
+ * cookie del {@link TokenSesion}.
+ *
+ * <ul>
+ *     <li>Como filtro, lee la cookie en cada petición y, si la firma vale, no ha caducado y
+ *     no está revocada, deja el usuario en el SecurityContext. Sin UsuarioService ni base
+ *     de datos, así que cualquier nodo atiende cualquier petición.</li>
+ *     <li>Tras un login correcto emite la cookie (AuthenticationSuccessHandler).</li>
+ *     <li>En el logout revoca la sesión y borra la cookie (LogoutHandler).</li>
+ * </ul>
+ *
+ * <p>El token dura {@code duracion}; pasada la mitad, o si se firmó con una clave que ya no
+ * es la actual, se renueva con el mismo id de sesión, como el timeout por inactividad de una
+ * sesión normal. Nunca se renueva más allá de {@code duracionMaxima} desde el login.</p>
+ */
+public class FiltroTokenSesion extends OncePerRequestFilter implements AuthenticationSuccessHandler, LogoutHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(FiltroTokenSesion.class);
+
+    /** Dónde se apuntan los logouts (RevocacionTokensService). */
+    public interface Revocaciones {
+        boolean estaRevocado(long id);
+
+        void revocar(long id, long expira);
+    }
+
+    private final TokenSesion tokens;
+    private final Revocaciones revocaciones;
+    private final String nombreCookie;
+    private final long duracionSegundos;
+    private final long duracionMaximaSegundos;
+    private final String urlTrasLogin;
+
+    public FiltroTokenSesion(TokenSesion tokens, Revocaciones revocaciones, String nombreCookie,
+                             Duration duracion, Duration duracionMaxima, String urlTrasLogin) {
+        this.tokens = tokens;
+        this.revocaciones = revocaciones;
+        this.nombreCookie = nombreCookie;
+        this.duracionSegundos = duracion.toSeconds();
+        this.duracionMaximaSegundos = Math.max(duracion.toSeconds(), duracionMaxima.toSeconds());
+        this.urlTrasLogin = urlTrasLogin;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        String token = leerCookie(request);
+        if (token != null) {
+            long ahora = ahora();
+            TokenSesion.Datos datos = tokens.verificar(token, ahora);
+            if (datos == null || revocaciones.estaRevocado(datos.id())) {
+                // caducado, manipulado o revocado: se quita para no volver a comprobarlo
+                borrarCookie(request, response);
+            } else {
+                SecurityContext contexto = SecurityContextHolder.createEmptyContext();
+                contexto.setAuthentication(UsernamePasswordAuthenticationToken.authenticated(
+                        datos.correo(), null, AuthorityUtils.createAuthorityList(datos.roles())));
+                SecurityContextHolder.setContext(contexto);
+                if (hayQueRenovar(datos, ahora)) {
+                    escribirCookie(request, response, datos.id(), datos.inicio(), datos.correo(), datos.roles(), ahora);
+                }
+            }
+        }
+        chain.doFilter(request, response);
+    }
+
+    @Override
+    public void onAuthenticationSuccess(HttpServletRequest request, HttpServletResponse response,
+                                        Authentication authentication) throws IOException {
+        long ahora = ahora();
+        List<String> roles = authentication.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList();
+        escribirCookie(request, response, tokens.nuevoId(), ahora, authentication.getName(), roles, ahora);
+        response.sendRedirect(request.getContextPath() + urlTrasLogin);
+    }
+
+    @Override
+    public void logout(HttpServletRequest request, HttpServletResponse response, Authentication authentication) {
+        TokenSesion.Datos datos = tokens.verificar(leerCookie(request), ahora());
+        if (datos != null) {
+            // hasta donde podría renovarse: cualquier token de esta sesión caduca antes
+            try {
+                revocaciones.revocar(datos.id(), Math.max(datos.expira(), datos.inicio() + duracionMaximaSegundos));
+            } catch (RuntimeException e) {
+                // la cookie se borra igual; el token solo sigue valiendo en otros nodos hasta caducar
+                log.error("❌ No se pudo guardar la revocación del token de {}: {}", datos.correo(), e.getMessage(), e);
+            }
+        }
+        borrarCookie(request, response);
+    }
+
+    private boolean hayQueRenovar(TokenSesion.Datos datos, long ahora) {
+        long limite = datos.inicio() + duracionMaximaSegundos;
+        if (datos.expira() >= limite) {
+            return false;
+        }
+        return !datos.clave().equals(tokens.getClaveActual()) || datos.expira() - ahora < duracionSegundos / 2;
+    }
+
+    private void escribirCookie(HttpServletRequest request, HttpServletResponse response,
+                                long id, long inicio, String correo, List<String> roles, long ahora) {
+        long expira = Math.min(ahora + duracionSegundos, inicio + duracionMaximaSegundos);
+        String token = tokens.emitir(id, inicio, expira, correo, roles);
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie(request, token, expira - ahora).toString());
+    }
+
+    private void borrarCookie(HttpServletRequest request, HttpServletResponse response) {
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie(request, "", 0).toString());
+    }
+
+    private ResponseCookie cookie(HttpServletRequest request, String valor, long maxAgeSegundos) {
+        String ruta = request.getContextPath().isEmpty() ? "/" : request.getContextPath();
+        return ResponseCookie.from(nombreCookie, valor)
+                .httpOnly(true)
+                .secure(request.isSecure())
+                .sameSite("Lax")
+                .path(ruta)
+                .maxAge(maxAgeSegundos)
+                .build();
+    }
+
+    private String leerCookie(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return null;
+        }
+        for (Cookie cookie : cookies) {
+            if (nombreCookie.equals(cookie.getName())) {
+                return cookie.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static long ahora() {
+        return System.currentTimeMillis() / 1000;
+    }
+}
@@ -0,0 +1,19 @@
+package com.sistemagestionapp.demojava.security;
+
+import org.springframework.security.authentication.AuthenticationServiceException;
+
+/**
+ * El ejecutor de hashing de contraseñas está lleno o ha tardado demasiado.
+ * Hereda de AuthenticationServiceException para que, durante el login, Spring Security
+ * lo trate como un fallo de autenticación (redirige a /login?error) y no como un 500.
+ */
+public class HashSaturadoException extends AuthenticationServiceException {
+
+    public HashSaturadoException(String msg) {
+        super(msg);
+    }
+
+    public HashSaturadoException(String msg, Throwable cause) {
+        super(msg, cause);
+    }
+}
@@ -0,0 +1,197 @@
+package com.sistemagestionapp.demojava.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cubos de fichas (token bucket) por clave, con espera progresiva tras fallos seguidos,
+ * en memoria acotada y sin candados.
+ *
+ * <p>La tabla tiene un número fijo de huecos. Cada clave se guarda como un hash de 64 bits
+ * (con semilla aleatoria, no la clave en sí) y solo puede ir en {@value #VIAS} huecos
+ * consecutivos. Cada hueco es un estado inmutable que se cambia con compareAndSet: dos
+ * hilos con la misma clave se reintentan, con claves distintas no se tocan. Un hueco cuya
+ * clave lleva {@code olvido} sin usarse se considera libre; si no hay ninguno libre se
+ * reutiliza el menos reciente de la ventana. Así un ataque con muchas claves distintas no
+ * hace crecer la memoria, como mucho hace olvidar antes a otras claves.</p>
+ *
+ * <p>Cada intento gasta una ficha; las fichas se recuperan a {@code porMinuto} hasta
+ * {@code rafaga}. Además, a partir de {@code umbralFallos} fallos seguidos la clave queda
+ * bloqueada {@code esperaInicial}, el doble en el siguiente fallo, y así hasta
+ * {@code esperaMaxima}. Un acierto pone los fallos a cero.</p>
+ */
+public class LimitadorIntentos {
+
+    private static final int VIAS = 4;
+    private static final int MAX_REINTENTOS = 16;
+
+    /** Estado de una clave; {@code fichas} en milésimas para no usar coma flotante. */
+    private record Estado(long clave, long fichas, long actualizado, int fallos, long bloqueadoHasta) {
+    }
+
+    private final AtomicReferenceArray<Estado> huecos;
+    private final int mascara;
+    private final long semilla = new SecureRandom().nextLong();
+
+    private final long rafagaMilis;
+    private final double milisPorMs;
+    private final int umbralFallos;
+    private final long esperaInicialMs;
+    private final long esperaMaximaMs;
+    private final long olvidoMs;
+
+    private final LongAdder expulsiones = new LongAdder();
+
+    /**
+     * @param entradas     huecos de la tabla (se redondea a potencia de dos)
+     * @param rafaga       intentos seguidos permitidos con el cubo lleno
+     * @param porMinuto    fichas que se recuperan por minuto
+     * @param umbralFallos fallos seguidos a partir de los cuales se bloquea la clave
+     * @throws IllegalArgumentException si algún valor no es positivo
+     */
+    public LimitadorIntentos(int entradas, int rafaga, double porMinuto, int umbralFallos,
+                             long esperaInicialMs, long esperaMaximaMs) {
+        if (entradas <= 0 || rafaga <= 0 || porMinuto <= 0 || umbralFallos <= 0 || esperaInicialMs <= 0) {
+            throw new IllegalArgumentException("Los límites de intentos deben ser positivos");
+        }
+        int tamano = Integer.highestOneBit(Math.max(VIAS, entradas - 1) << 1);
+        this.huecos = new AtomicReferenceArray<>(tamano);
+        this.mascara = tamano - 1;
+        this.rafagaMilis = rafaga * 1000L;
+        this.milisPorMs = porMinuto * 1000 / 60_000;
+        this.umbralFallos = umbralFallos;
+        this.esperaInicialMs = esperaInicialMs;
+        this.esperaMaximaMs = Math.max(esperaInicialMs, esperaMaximaMs);
+        // lo que tarda en llenarse el cubo o en pasar el bloqueo más largo
+        this.olvidoMs = Math.max((long) Math.ceil(rafagaMilis / milisPorMs), this.esperaMaximaMs);
+    }
+
+    /**
+     * Gasta una ficha de {@code clave}.
+     *
+     * @return 0 si se permite el intento, o los milisegundos que faltan para poder intentarlo
+     */
+    public long intentar(String clave, long ahora) {
+        long hash = hash(clave);
+        for (int reintento = 0; reintento < MAX_REINTENTOS; reintento++) {
+            int hueco = buscar(hash, ahora);
+            Estado actual = huecos.get(hueco);
+            Estado base = propio(actual, hash, ahora) ? actual : new Estado(hash, rafagaMilis, ahora, 0, 0);
+            if (ahora < base.bloqueadoHasta()) {
+                return base.bloqueadoHasta() - ahora;
+            }
+            long fichas = rellenar(base, ahora);
+            if (fichas < 1000) {
+                return (long) Math.ceil((1000 - fichas) / milisPorMs);
+            }
+            Estado nuevo = new Estado(hash, fichas - 1000, ahora, base.fallos(), base.bloqueadoHasta());
+            if (cambiar(hueco, actual, nuevo, hash)) {
+                return 0;
+            }
+        }
+        // mucha contención en la misma ventana: se deja pasar antes que bloquear a un inocente
+        return 0;
+    }
+
+    /** Apunta un fallo y, si toca, bloquea la clave con espera progresiva. */
+    public void fallo(String clave, long ahora) {
+        long hash = hash(clave);
+        for (int reintento = 0; reintento < MAX_REINTENTOS; reintento++) {
+            int hueco = buscar(hash, ahora);
+            Estado actual = huecos.get(hueco);
+            Estado base = propio(actual, hash, ahora) ? actual : new Estado(hash, rafagaMilis, ahora, 0, 0);
+            int fallos = base.fallos() + 1;
+            long bloqueadoHasta = base.bloqueadoHasta();
+            if (fallos >= umbralFallos) {
+                int exceso = Math.min(fallos - umbralFallos, 30);
+                bloqueadoHasta = ahora + Math.min(esperaMaximaMs, esperaInicialMs << exceso);
+            }
+            Estado nuevo = new Estado(hash, rellenar(base, ahora), ahora, fallos, bloqueadoHasta);
+            if (cambiar(hueco, actual, nuevo, hash)) {
+                return;
+            }
+        }
+    }
+
+    /** Login correcto: se olvidan los fallos (las fichas gastadas no se devuelven). */
+    public void acierto(String clave, long ahora) {
+        long hash = hash(clave);
+        for (int reintento = 0; reintento < MAX_REINTENTOS; reintento++) {
+            int hueco = buscar(hash, ahora);
+            Estado actual = huecos.get(hueco);
+            if (!propio(actual, hash, ahora) || (actual.fallos() == 0 && actual.bloqueadoHasta() == 0)) {
+                return;
+            }
+            Estado nuevo = new Estado(hash, rellenar(actual, ahora), ahora, 0, 0);
+            if (huecos.compareAndSet(hueco, actual, nuevo)) {
+                return;
+            }
+        }
+    }
+
+    public long getExpulsiones() {
+        return expulsiones.sum();
+    }
+
+    public int getCapacidad() {
+        return huecos.length();
+    }
+
+    // Hueco de la clave en su ventana o, si no está, el que se usaría para ella
+    private int buscar(long hash, long ahora) {
+        int inicio = (int) (hash ^ (hash >>> 32)) & mascara;
+        int candidato = -1;
+        long masAntiguo = Long.MAX_VALUE;
+        for (int i = 0; i < VIAS; i++) {
+            int hueco = (inicio + i) & mascara;
+            Estado estado = huecos.get(hueco);
+            if (estado != null && estado.clave() == hash) {
+                return hueco;
+            }
+            long uso = estado == null || libre(estado, ahora) ? Long.MIN_VALUE : estado.actualizado();
+            if (uso < masAntiguo) {
+                candidato = hueco;
+                masAntiguo = uso;
+            }
+        }
+        return candidato;
+    }
+
+    private boolean cambiar(int hueco, Estado actual, Estado nuevo, long hash) {
+        if (!huecos.compareAndSet(hueco, actual, nuevo)) {
+            return false;
+        }
+        if (actual != null && actual.clave() != hash && !libre(actual, nuevo.actualizado())) {
+            expulsiones.increment();
+        }
+        return true;
+    }
+
+    private boolean propio(Estado estado, long hash, long ahora) {
+        return estado != null && estado.clave() == hash && !libre(estado, ahora);
+    }
+
+    private boolean libre(Estado estado, long ahora) {
+        return ahora - estado.actualizado() >= olvidoMs && ahora >= estado.bloqueadoHasta();
+    }
+
+    private long rellenar(Estado estado, long ahora) {
+        long transcurrido = Math.max(0, ahora - estado.actualizado());
+        return Math.min(rafagaMilis, estado.fichas() + (long) (transcurrido * milisPorMs));
+    }
+
+    // FNV-1a de 64 bits con semilla aleatoria: no se pueden preparar de antemano claves que choquen
+    private long hash(String clave) {
+        long h = 0xcbf29ce484222325L ^ semilla;
+        for (byte b : clave.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+}
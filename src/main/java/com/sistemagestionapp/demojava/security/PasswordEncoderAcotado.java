@@ -0,0 +1,138 @@
+package com.sistemagestionapp.demojava.security;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * PasswordEncoder que ejecuta el hash (encode/matches) en un pool propio y acotado.
+ *
+ * <p>BCrypt es puro CPU: si se calcula en los hilos de Tomcat, una ráfaga de logins
+ * ocupa todo el pool de peticiones. Aquí como mucho {@code hilos} hashes corren a la vez,
+ * caben {@code cola} en espera y el resto se rechaza al momento con
+ * {@link HashSaturadoException} (fail-fast) en lugar de acumular peticiones.</p>
+ *
+ * <p>Guarda contadores del tiempo en cola y del tiempo de hash para poder medirlos.</p>
+ */
+public class PasswordEncoderAcotado implements PasswordEncoder {
+
+    private final PasswordEncoder delegado;
+    private final ThreadPoolExecutor ejecutor;
+    private final long esperaMaximaMs;
+
+    private final LongAdder operaciones = new LongAdder();
+    private final LongAdder rechazos = new LongAdder();
+    private final LongAdder nanosEnCola = new LongAdder();
+    private final LongAdder nanosHash = new LongAdder();
+
+    public PasswordEncoderAcotado(PasswordEncoder delegado, int hilos, int cola, long esperaMaximaMs) {
+        this.delegado = delegado;
+        this.esperaMaximaMs = esperaMaximaMs;
+
+        AtomicInteger contador = new AtomicInteger();
+        this.ejecutor = new ThreadPoolExecutor(
+                hilos, hilos,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, cola)),
+                r -> {
+                    Thread t = new Thread(r, "password-hash-" + contador.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return ejecutar(() -> delegado.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return ejecutar(() -> delegado.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * Se delega en BCrypt: devuelve true si el hash guardado tiene menos coste que el
+     * configurado, y así DaoAuthenticationProvider lo vuelve a calcular tras un login correcto.
+     */
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegado.upgradeEncoding(encodedPassword);
+    }
+
+    private <T> T ejecutar(Callable<T> tarea) {
+        long encolado = System.nanoTime();
+        Future<T> futuro;
+        try {
+            futuro = ejecutor.submit(() -> {
+                long inicio = System.nanoTime();
+                nanosEnCola.add(inicio - encolado);
+                try {
+                    return tarea.call();
+                } finally {
+                    nanosHash.add(System.nanoTime() - inicio);
+                    operaciones.increment();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rechazos.increment();
+            throw new HashSaturadoException("Demasiadas operaciones de contraseña en curso, inténtalo de nuevo", e);
+        }
+
+        try {
+            return futuro.get(esperaMaximaMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            futuro.cancel(true);
+            rechazos.increment();
+            throw new HashSaturadoException("La verificación de la contraseña ha tardado demasiado", e);
+        } catch (InterruptedException e) {
+            futuro.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new HashSaturadoException("Verificación de la contraseña interrumpida", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public void cerrar() {
+        ejecutor.shutdown();
+    }
+
+    public long getOperaciones() {
+        return operaciones.sum();
+    }
+
+    public long getRechazos() {
+        return rechazos.sum();
+    }
+
+    public long getNanosEnCola() {
+        return nanosEnCola.sum();
+    }
+
+    public long getNanosHash() {
+        return nanosHash.sum();
+    }
+
+    public int getEnCola() {
+        return ejecutor.getQueue().size();
+    }
+
+    public int getActivos() {
+        return ejecutor.getActiveCount();
+    }
+}
@@ -0,0 +1,188 @@
+package com.sistemagestionapp.demojava.security;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Token de sesión firmado con HMAC-SHA256: lleva dentro todo lo necesario (correo, roles,
+ * caducidad), así que se comprueba sin ir a la base de datos ni a ningún estado compartido.
+ *
+ * <p>Formato: {@code base64url(datos) "." base64url(firma)}. Los datos van en binario
+ * (id de clave, id de sesión, inicio, caducidad, correo y roles) para que la cookie sea
+ * corta. La clave con la que se firmó va por id: la primera de la lista firma y las demás
+ * solo se aceptan al verificar, así se puede rotar añadiendo una nueva delante y quitando
+ * la vieja cuando hayan caducado sus tokens.</p>
+ */
+public class TokenSesion {
+
+    private static final String ALGORITMO = "HmacSHA256";
+    private static final int VERSION_FORMATO = 1;
+    private static final int BYTES_MINIMOS_CLAVE = 32;
+
+    private static final Base64.Encoder BASE64 = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DE_BASE64 = Base64.getUrlDecoder();
+
+    /**
+     * Lo que dice un token válido.
+     *
+     * @param id     id de la sesión: se mantiene al renovar el token y es lo que se revoca
+     * @param inicio segundos epoch del login
+     * @param expira segundos epoch en que deja de valer este token
+     */
+    public record Datos(String clave, long id, long inicio, long expira, String correo, List<String> roles) {
+    }
+
+    private final String claveActual;
+    private final Map<String, Mac> prototipos = new LinkedHashMap<>();
+    private final SecureRandom aleatorio = new SecureRandom();
+
+    /**
+     * @param claves id de clave → secreto (al menos 32 bytes); la primera es la que firma
+     * @throws IllegalArgumentException si no hay claves o alguna es demasiado corta
+     */
+    public TokenSesion(Map<String, byte[]> claves) {
+        if (claves.isEmpty()) {
+            throw new IllegalArgumentException("Hace falta al menos una clave para firmar los tokens");
+        }
+        for (Map.Entry<String, byte[]> clave : claves.entrySet()) {
+            if (clave.getValue().length < BYTES_MINIMOS_CLAVE) {
+                throw new IllegalArgumentException("La clave de token '" + clave.getKey()
+                        + "' tiene menos de " + BYTES_MINIMOS_CLAVE + " bytes");
+            }
+            try {
+                Mac mac = Mac.getInstance(ALGORITMO);
+                mac.init(new SecretKeySpec(clave.getValue(), ALGORITMO));
+                prototipos.put(clave.getKey(), mac);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("No se pudo preparar " + ALGORITMO, e);
+            }
+        }
+        this.claveActual = claves.keySet().iterator().next();
+    }
+
+    /**
+     * Lee "id:secretoBase64,id2:secreto2..." (el formato de app.auth.token.claves).
+     *
+     * @throws IllegalArgumentException si alguna entrada no tiene ese formato
+     */
+    public static Map<String, byte[]> leerClaves(String texto) {
+        Map<String, byte[]> claves = new LinkedHashMap<>();
+        for (String entrada : texto.split(",")) {
+            String limpia = entrada.trim();
+            if (limpia.isEmpty()) {
+                continue;
+            }
+            int separador = limpia.indexOf(':');
+            if (separador <= 0) {
+                throw new IllegalArgumentException("Clave de token sin id: se espera id:secretoBase64");
+            }
+            try {
+                claves.put(limpia.substring(0, separador), Base64.getDecoder().decode(limpia.substring(separador + 1)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("El secreto de la clave de token '"
+                        + limpia.substring(0, separador) + "' no es Base64", e);
+            }
+        }
+        return claves;
+    }
+
+    /** Una clave aleatoria para cuando no se configura ninguna (solo vale en este proceso). */
+    public static byte[] claveAleatoria() {
+        byte[] clave = new byte[BYTES_MINIMOS_CLAVE];
+        new SecureRandom().nextBytes(clave);
+        return clave;
+    }
+
+    public String getClaveActual() {
+        return claveActual;
+    }
+
+    /** Nuevo id de sesión para un login. */
+    public long nuevoId() {
+        return aleatorio.nextLong();
+    }
+
+    /** Firma con la clave actual. */
+    public String emitir(long id, long inicio, long expira, String correo, List<String> roles) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + correo.length());
+        try (DataOutputStream salida = new DataOutputStream(bytes)) {
+            salida.writeByte(VERSION_FORMATO);
+            salida.writeUTF(claveActual);
+            salida.writeLong(id);
+            salida.writeLong(inicio);
+            salida.writeLong(expira);
+            salida.writeUTF(correo);
+            salida.writeUTF(String.join(",", roles));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        String datos = BASE64.encodeToString(bytes.toByteArray());
+        return datos + "." + BASE64.encodeToString(firmar(prototipos.get(claveActual), datos));
+    }
+
+    /**
+     * Comprueba firma y caducidad.
+     *
+     * @return los datos del token, o null si está mal formado, la firma no cuadra, la clave
+     * ya no existe o ha caducado (no se distingue: todos acaban en volver a hacer login)
+     */
+    public Datos verificar(String token, long ahora) {
+        int punto = token == null ? -1 : token.indexOf('.');
+        if (punto <= 0) {
+            return null;
+        }
+        String datos = token.substring(0, punto);
+        try {
+            DataInputStream entrada = new DataInputStream(new ByteArrayInputStream(DE_BASE64.decode(datos)));
+            if (entrada.readUnsignedByte() != VERSION_FORMATO) {
+                return null;
+            }
+            String clave = entrada.readUTF();
+            Mac prototipo = prototipos.get(clave);
+            if (prototipo == null) {
+                return null;
+            }
+            // comparación en tiempo constante: no dice cuántos bytes de la firma acertó
+            byte[] firma = DE_BASE64.decode(token.substring(punto + 1));
+            if (!MessageDigest.isEqual(firma, firmar(prototipo, datos))) {
+                return null;
+            }
+            long id = entrada.readLong();
+            long inicio = entrada.readLong();
+            long expira = entrada.readLong();
+            if (expira <= ahora) {
+                return null;
+            }
+            String correo = entrada.readUTF();
+            String roles = entrada.readUTF();
+            return new Datos(clave, id, inicio, expira, correo,
+                    roles.isEmpty() ? List.of() : List.of(roles.split(",")));
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // Mac no es thread-safe: cada firma usa una copia del prototipo ya inicializado
+    private static byte[] firmar(Mac prototipo, String datos) {
+        Mac mac;
+        try {
+            mac = (Mac) prototipo.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(ALGORITMO + " no se puede clonar", e);
+        }
+        return mac.doFinal(datos.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,169 @@
+package com.sistemagestionapp.demojava.service;
+
+import com.sistemagestionapp.demojava.busqueda.IndiceTrigramas;
+import com.sistemagestionapp.demojava.model.ProductoResumen;
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Búsqueda de productos por nombre y descripción con un {@link IndiceTrigramas} en memoria.
+ * El índice se llena al arrancar recorriendo el catálogo (en un hilo aparte, para no
+ * retrasar el arranque) y después se mantiene con los eventos {@link ProductoCambiado}.
+ *
+ * <p>Esos eventos son solo los de este nodo: cada {@code app.busqueda.resincronizacion-minutos}
+ * se construye otro índice recorriendo el catálogo y sustituye al actual, para recoger lo
+ * que han dado de alta, cambiado o borrado los demás. Mientras se construye, los cambios de
+ * este nodo van a los dos índices, y las búsquedas siguen usando el viejo. Durante la
+ * reconstrucción hay dos índices en memoria.</p>
+ */
+@Service
+@Timed(value = "app.servicio", histogram = true)
+public class BusquedaProductosService {
+
+    private static final Logger log = LoggerFactory.getLogger(BusquedaProductosService.class);
+
+    private final ProductoService productoService;
+    private final VersionCatalogo versionCatalogo;
+    private final boolean activa;
+    private final long resincronizacionMinutos;
+
+    private volatile IndiceTrigramas indice = new IndiceTrigramas();
+    private volatile IndiceTrigramas enCarga;   // el que se está llenando, si hay alguno
+    private volatile boolean listo;
+    private ScheduledExecutorService programador;
+
+    public BusquedaProductosService(ProductoService productoService,
+                                    VersionCatalogo versionCatalogo,
+                                    @Value("${app.busqueda.enabled:true}") boolean activa,
+                                    @Value("${app.busqueda.resincronizacion-minutos:10}") long resincronizacionMinutos) {
+        this.productoService = productoService;
+        this.versionCatalogo = versionCatalogo;
+        this.activa = activa;
+        this.resincronizacionMinutos = resincronizacionMinutos;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarIndice() {
+        if (!activa) {
+            return;
+        }
+        programador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "indice-busqueda");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        if (resincronizacionMinutos > 0) {
+            programador.scheduleWithFixedDelay(this::cargarSinFallar, 0, resincronizacionMinutos, TimeUnit.MINUTES);
+        } else {
+            programador.execute(this::cargarSinFallar);
+        }
+    }
+
+    @PreDestroy
+    public void parar() {
+        if (programador != null) {
+            programador.shutdownNow();
+        }
+    }
+
+    /**
+     * Llena un índice recorriendo el catálogo y lo pone en uso. La primera vez se llena el
+     * que ya está en uso (las búsquedas ven resultados según se cargan); después, uno nuevo.
+     */
+    private void cargar() throws IOException {
+        long inicio = System.nanoTime();
+        LongAdder productos = new LongAdder();
+        IndiceTrigramas nuevo = listo ? new IndiceTrigramas() : indice;
+        nuevo.iniciarCarga();
+        enCarga = nuevo;
+        try {
+            productoService.recorrerCatalogo(null, (id, nombre, descripcion, precio) -> {
+                nuevo.indexarSiFalta(id, nombre, descripcion, precio == null ? Double.NaN : precio);
+                productos.increment();
+            });
+            indice = nuevo;
+            listo = true;
+            // los resultados de búsqueda cambian aunque el catálogo no: los ETag viejos ya no valen
+            versionCatalogo.incrementar();
+            log.info("✅ Índice de búsqueda cargado: {} productos, {} trigramas en {} ms",
+                    productos.sum(), nuevo.getTrigramas(), (System.nanoTime() - inicio) / 1_000_000);
+        } finally {
+            enCarga = null;
+            nuevo.terminarCarga();
+        }
+    }
+
+    private void cargarSinFallar() {
+        try {
+            cargar();
+        } catch (Exception e) {
+            log.error("❌ No se pudo cargar el índice de búsqueda: {}", e.getMessage(), e);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiarProducto(ProductoCambiado evento) {
+        if (!activa) {
+            return;
+        }
+        // enCarga antes que indice: si la carga termina entre las dos lecturas, el cambio va
+        // igualmente al índice nuevo (y si empieza después, su recorrido ya lo ve confirmado)
+        IndiceTrigramas cargando = enCarga;
+        IndiceTrigramas actual = indice;
+        aplicar(actual, evento);
+        if (cargando != null && cargando != actual) {
+            aplicar(cargando, evento);
+        }
+    }
+
+    private static void aplicar(IndiceTrigramas indice, ProductoCambiado evento) {
+        if (evento.tipo() == ProductoCambiado.Tipo.BAJA) {
+            indice.eliminar(evento.id());
+        } else {
+            indice.indexar(evento.id(), evento.nombre(), evento.descripcion(),
+                    evento.precio() == null ? Double.NaN : evento.precio());
+        }
+    }
+
+    /**
+     * Los {@code limite} productos que mejor casan con {@code texto} dentro del rango de
+     * precios (extremos null = sin límite). Mientras el índice se carga puede devolver
+     * resultados incompletos.
+     */
+    public List<ProductoResumen> buscar(String texto, Double precioMin, Double precioMax, int limite) {
+        if (!activa) {
+            throw new IllegalStateException("La búsqueda está desactivada (app.busqueda.enabled=false)");
+        }
+        int k = Math.max(1, Math.min(limite, ProductoService.TAMANO_PAGINA_MAXIMO));
+        return indice.buscar(texto, precioMin, precioMax, k).stream()
+                // sin versión: desde los resultados se edita, y editar ya lee la versión actual
+                .map(r -> new ProductoResumen(r.id(), r.nombre(), Double.isNaN(r.precio()) ? null : r.precio(), null))
+                .toList();
+    }
+
+    public boolean isActiva() {
+        return activa;
+    }
+
+    public boolean isListo() {
+        return listo;
+    }
+
+    public int getProductosIndexados() {
+        return indice.getTamano();
+    }
+}
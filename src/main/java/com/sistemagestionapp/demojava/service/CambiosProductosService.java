@@ -0,0 +1,184 @@
+package com.sistemagestionapp.demojava.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.sistemagestionapp.demojava.cambios.DifusorSse;
+import jakarta.annotation.PreDestroy;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.messaging.ChangeStreamRequest;
+import org.springframework.data.mongodb.core.messaging.DefaultMessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.MessageListener;
+import org.springframework.data.mongodb.core.messaging.MessageListenerContainer;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Canal de cambios del catálogo para los navegadores (Server-Sent Events): cada alta,
+ * modificación o baja se manda como un evento "producto" con la fila cambiada, y la página
+ * actualiza solo esa fila en vez de volver a pedir la tabla entera.
+ *
+ * <p>Por defecto el origen son los {@link ProductoCambiado} de esta instancia. Con
+ * {@code app.cambios.origen=change-stream} y el motor Mongo se leen del change stream de
+ * la colección, que trae también lo escrito desde otras instancias o fuera de la
+ * aplicación (necesita un replica set). Si el change stream falla se vuelve a los eventos
+ * locales y se pide a los navegadores que recarguen, porque se han podido perder cambios.</p>
+ */
+@Service
+public class CambiosProductosService {
+
+    public static final String EVENTO = "producto";
+
+    private static final Logger log = LoggerFactory.getLogger(CambiosProductosService.class);
+
+    /** Lo que recibe el navegador: la fila tal como la pinta la tabla (en una baja, solo el id). */
+    record Cambio(ProductoCambiado.Tipo tipo, String id, String nombre, Double precio, Long version) {
+    }
+
+    private final ObjectMapper objectMapper;
+    private final ObjectProvider<MongoTemplate> mongoTemplate;
+    private final boolean mongo;
+    private final boolean changeStreamPedido;
+    private final DifusorSse difusor;
+
+    private volatile boolean changeStreamActivo;
+    private MessageListenerContainer contenedor;
+
+    public CambiosProductosService(ObjectMapper objectMapper,
+                                   ObjectProvider<MongoTemplate> mongoTemplate,
+                                   @Value("${app.db.engine:h2}") String dbEngine,
+                                   @Value("${app.cambios.origen:eventos}") String origen,
+                                   @Value("${app.cambios.buffer:256}") int capacidadBuffer,
+                                   @Value("${app.cambios.max-suscriptores:10000}") int maxSuscriptores,
+                                   @Value("${app.cambios.historial:1024}") int tamanoHistorial,
+                                   @Value("${app.cambios.hilos-envio:4}") int hilosEnvio,
+                                   @Value("${app.cambios.timeout-minutos:30}") long timeoutMinutos,
+                                   @Value("${app.cambios.latido-segundos:20}") long latidoSegundos) {
+        this.objectMapper = objectMapper;
+        this.mongoTemplate = mongoTemplate;
+        this.mongo = "mongo".equalsIgnoreCase(dbEngine);
+        this.changeStreamPedido = "change-stream".equalsIgnoreCase(origen);
+        this.difusor = new DifusorSse(capacidadBuffer, maxSuscriptores, tamanoHistorial, hilosEnvio,
+                timeoutMinutos * 60_000, latidoSegundos * 1000);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        if (!changeStreamPedido) {
+            return;
+        }
+        MongoTemplate template = mongo ? mongoTemplate.getIfAvailable() : null;
+        if (template == null) {
+            log.warn("app.cambios.origen=change-stream solo vale con el motor Mongo: se usan los eventos locales");
+            return;
+        }
+        DefaultMessageListenerContainer nuevo = new DefaultMessageListenerContainer(template);
+        MessageListener<ChangeStreamDocument<Document>, Document> oyente = mensaje -> alCambiarDocumento(mensaje.getRaw());
+        ChangeStreamRequest<Document> peticion = ChangeStreamRequest.builder(oyente)
+                .collection("productos")
+                .filter(Aggregation.newAggregation(Aggregation.match(
+                        Criteria.where("operationType").in("insert", "update", "replace", "delete"))))
+                .fullDocumentLookup(FullDocument.UPDATE_LOOKUP)
+                .build();
+        nuevo.register(peticion, Document.class, error -> {
+            log.error("❌ Change stream de productos caído, se vuelve a los eventos locales: {}", error.getMessage(), error);
+            changeStreamActivo = false;
+            difusor.pedirRecarga();
+        });
+        nuevo.start();
+        contenedor = nuevo;
+        changeStreamActivo = true;
+        log.info("✅ Cambios de productos leídos del change stream de Mongo");
+    }
+
+    @PreDestroy
+    public void parar() {
+        if (contenedor != null) {
+            contenedor.stop();
+        }
+        difusor.close();
+    }
+
+    /**
+     * Nueva conexión SSE. {@code ultimoId} es la cabecera Last-Event-ID que manda el
+     * navegador al reconectar.
+     *
+     * @throws IllegalStateException si se ha llegado al máximo de conexiones
+     */
+    public SseEmitter suscribir(String ultimoId) {
+        return difusor.suscribir(ultimoId);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiarProducto(ProductoCambiado evento) {
+        if (changeStreamActivo) {
+            return;
+        }
+        publicar(new Cambio(evento.tipo(), evento.id(), evento.nombre(), evento.precio(), evento.version()));
+    }
+
+    private void alCambiarDocumento(ChangeStreamDocument<Document> cambio) {
+        if (cambio == null || cambio.getDocumentKey() == null) {
+            return;
+        }
+        String id = texto(cambio.getDocumentKey().get("_id"));
+        Document documento = cambio.getFullDocument();
+        switch (cambio.getOperationType()) {
+            case INSERT -> publicar(desdeDocumento(ProductoCambiado.Tipo.ALTA, id, documento));
+            case UPDATE, REPLACE -> {
+                // con UPDATE_LOOKUP el documento puede faltar si se borró justo después
+                if (documento != null) {
+                    publicar(desdeDocumento(ProductoCambiado.Tipo.MODIFICACION, id, documento));
+                }
+            }
+            case DELETE -> publicar(new Cambio(ProductoCambiado.Tipo.BAJA, id, null, null, null));
+            default -> {
+            }
+        }
+    }
+
+    private static Cambio desdeDocumento(ProductoCambiado.Tipo tipo, String id, Document documento) {
+        if (documento == null) {
+            return new Cambio(tipo, id, null, null, null);
+        }
+        Number precio = documento.get("precio", Number.class);
+        Number version = documento.get("version", Number.class);
+        return new Cambio(tipo, id, documento.getString("nombre"),
+                precio == null ? null : precio.doubleValue(),
+                version == null ? 0L : version.longValue());
+    }
+
+    private static String texto(BsonValue id) {
+        if (id == null) {
+            return null;
+        }
+        if (id.isObjectId()) {
+            return id.asObjectId().getValue().toHexString();
+        }
+        return id.isString() ? id.asString().getValue() : id.toString();
+    }
+
+    private void publicar(Cambio cambio) {
+        try {
+            difusor.publicar(EVENTO, objectMapper.writeValueAsString(cambio));
+        } catch (JsonProcessingException e) {
+            log.warn("No se pudo serializar el cambio del producto {}: {}", cambio.id(), e.getMessage());
+        }
+    }
+
+    public DifusorSse getDifusor() {
+        return difusor;
+    }
+}
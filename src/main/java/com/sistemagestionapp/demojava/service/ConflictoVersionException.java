@@ -0,0 +1,40 @@
+package com.sistemagestionapp.demojava.service;
+
+import org.springframework.dao.OptimisticLockingFailureException;
+
+/**
+ * Otro usuario ha cambiado o borrado el producto desde que se leyó: la escritura
+ * condicional a la versión no ha tocado ninguna fila. Lleva la versión actual (null
+ * si el producto ya no existe) para que la pantalla pueda explicarlo.
+ */
+public class ConflictoVersionException extends OptimisticLockingFailureException {
+
+    private final String id;
+    private final Long versionEsperada;
+    private final Long versionActual;
+
+    public ConflictoVersionException(String id, Long versionEsperada, Long versionActual) {
+        super(versionActual == null
+                ? "El producto " + id + " ya no existe"
+                : "El producto " + id + " ha cambiado (versión " + versionEsperada + ", ahora " + versionActual + ")");
+        this.id = id;
+        this.versionEsperada = versionEsperada;
+        this.versionActual = versionActual;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Long getVersionEsperada() {
+        return versionEsperada;
+    }
+
+    public Long getVersionActual() {
+        return versionActual;
+    }
+
+    public boolean isBorrado() {
+        return versionActual == null;
+    }
+}
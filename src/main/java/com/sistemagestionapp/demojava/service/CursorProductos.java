@@ -0,0 +1,68 @@
+package com.sistemagestionapp.demojava.service;
+
+import com.sistemagestionapp.demojava.model.OrdenProductos;
+import com.sistemagestionapp.demojava.model.ProductoResumen;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Cursor opaco de la paginación por keyset: guarda el valor de la columna de
+ * ordenación y el id de la fila frontera, codificados en Base64 URL-safe.
+ */
+final class CursorProductos {
+
+    private static final char SEPARADOR = '\n';
+
+    private final Object valor;
+    private final String id;
+
+    private CursorProductos(Object valor, String id) {
+        this.valor = valor;
+        this.id = id;
+    }
+
+    Object getValor() {
+        return valor;
+    }
+
+    String getId() {
+        return id;
+    }
+
+    static String codificar(OrdenProductos orden, ProductoResumen fila) {
+        String texto = switch (orden) {
+            case ID -> fila.getId();
+            case NOMBRE -> fila.getNombre() + SEPARADOR + fila.getId();
+            case PRECIO -> fila.getPrecio() + String.valueOf(SEPARADOR) + fila.getId();
+        };
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(texto.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodifica el cursor recibido en la URL. Si está vacío o no es válido
+     * devuelve null y el listado empieza por la primera página.
+     */
+    static CursorProductos decodificar(OrdenProductos orden, String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String texto = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (orden == OrdenProductos.ID) {
+                return new CursorProductos(null, texto);
+            }
+            // el id nunca contiene el separador, el nombre sí podría
+            int corte = texto.lastIndexOf(SEPARADOR);
+            if (corte < 0) {
+                return null;
+            }
+            String valor = texto.substring(0, corte);
+            String id = texto.substring(corte + 1);
+            return new CursorProductos(orden == OrdenProductos.PRECIO ? Double.valueOf(valor) : valor, id);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package com.sistemagestionapp.demojava.service;
+
+import com.sistemagestionapp.demojava.model.ModificacionProducto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Escritura diferida (write-behind) de las modificaciones de productos, para cuando llegan
+ * miles de cambios de precio por minuto y una transacción por cada uno satura el pool.
+ *
+ * <p>Con {@code app.escritura.diferida.enabled=true} cada modificación va a una cola en
+ * memoria acotada a {@code max-pendientes} productos. Un cambio de un producto que ya tiene
+ * otro pendiente se junta con él (gana el último y se comprueba la versión del primero) solo
+ * si no pide versión o pide la que dejará el pendiente al escribirse. Si pide la misma que el
+ * pendiente, los dos partían del mismo dato y el segundo falla ya con
+ * {@link ConflictoVersionException}, como fallaría sin escritura diferida; con cualquier otra
+ * versión se escribe directamente y decide la base de datos. Un hilo vacía la
+ * cola en lotes de {@code tamano-lote} con {@link ProductoService#guardarModificaciones}
+ * (una transacción y un lote JDBC, o un bulkWrite) cuando se llena un lote o han pasado
+ * {@code intervalo-ms} desde el primer pendiente.</p>
+ *
+ * <p>{@code confirmacion=escritura} (por defecto): quien llama espera a que su lote esté
+ * confirmado, y recibe el {@link ConflictoVersionException} si lo hubo; muchas peticiones
+ * comparten el commit (group commit). {@code confirmacion=cola}: se responde nada más
+ * encolar; es más rápido, pero lo pendiente se pierde si el proceso muere y los conflictos
+ * solo quedan en el log y en app.escritura.diferida.conflictos. Mientras no se escribe, las
+ * lecturas siguen viendo el valor anterior.</p>
+ *
+ * <p>Las altas y las bajas no pasan por aquí: siguen yendo directas a ProductoService.</p>
+ */
+@Service
+public class EscrituraDiferidaService {
+
+    private static final Logger log = LoggerFactory.getLogger(EscrituraDiferidaService.class);
+
+    /** Lo pendiente de un producto y quienes esperan a que se escriba. */
+    private static final class Pendiente {
+        final String id;
+        final Long version;
+        String nombre;
+        String descripcion;
+        double precio;
+        final List<CompletableFuture<Void>> esperando = new ArrayList<>(1);
+
+        Pendiente(String id, Long version) {
+            this.id = id;
+            this.version = version;
+        }
+    }
+
+    private final ProductoService productoService;
+    private final boolean activa;
+    private final boolean esperarEscritura;
+    private final int maxPendientes;
+    private final int tamanoLote;
+    private final long intervaloNanos;
+    private final long esperaMaximaMs;
+
+    private final ReentrantLock candado = new ReentrantLock();
+    private final Condition hayPendientes = candado.newCondition();
+    private final Condition hayHueco = candado.newCondition();
+    private final LinkedHashMap<String, Pendiente> pendientes = new LinkedHashMap<>();
+    private long primerPendiente;   // nanoTime del más antiguo, con el candado
+    private boolean cerrando;
+
+    private final Timer vaciado;
+    private final LongAdder combinadas = new LongAdder();
+    private final LongAdder conflictos = new LongAdder();
+    private final LongAdder escritas = new LongAdder();
+    private Thread hilo;
+
+    public EscrituraDiferidaService(ProductoService productoService,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${app.escritura.diferida.enabled:false}") boolean activa,
+                                    @Value("${app.escritura.diferida.confirmacion:escritura}") String confirmacion,
+                                    @Value("${app.escritura.diferida.max-pendientes:10000}") int maxPendientes,
+                                    @Value("${app.escritura.diferida.tamano-lote:500}") int tamanoLote,
+                                    @Value("${app.escritura.diferida.intervalo-ms:50}") long intervaloMs,
+                                    @Value("${app.escritura.diferida.espera-maxima-ms:5000}") long esperaMaximaMs) {
+        if (!"escritura".equalsIgnoreCase(confirmacion) && !"cola".equalsIgnoreCase(confirmacion)) {
+            throw new IllegalArgumentException("app.escritura.diferida.confirmacion debe ser 'escritura' o 'cola': " + confirmacion);
+        }
+        this.productoService = productoService;
+        this.activa = activa;
+        this.esperarEscritura = "escritura".equalsIgnoreCase(confirmacion);
+        this.maxPendientes = Math.max(1, maxPendientes);
+        this.tamanoLote = Math.max(1, tamanoLote);
+        this.intervaloNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, intervaloMs));
+        this.esperaMaximaMs = esperaMaximaMs;
+        this.vaciado = Timer.builder("app.escritura.diferida.vaciado")
+                .description("Escritura de un lote de modificaciones diferidas")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        if (!activa) {
+            return;
+        }
+        hilo = new Thread(this::bucle, "escritura-diferida");
+        hilo.setDaemon(true);
+        hilo.start();
+        log.info("✅ Escritura diferida de productos: lotes de {} cada {} ms, confirmación {}",
+                tamanoLote, TimeUnit.NANOSECONDS.toMillis(intervaloNanos), esperarEscritura ? "al escribir" : "al encolar");
+    }
+
+    /** Al parar se escribe todo lo pendiente antes de cerrar el contexto (y la base de datos). */
+    @PreDestroy
+    public void parar() throws InterruptedException {
+        candado.lock();
+        try {
+            cerrando = true;
+            hayPendientes.signalAll();
+            hayHueco.signalAll();
+        } finally {
+            candado.unlock();
+        }
+        if (hilo != null) {
+            hilo.join(TimeUnit.SECONDS.toMillis(30));
+        }
+    }
+
+    public boolean isActiva() {
+        return activa;
+    }
+
+    /**
+     * Como {@link ProductoService#guardar}, pero las modificaciones se encolan si la
+     * escritura diferida está activa (las altas siempre van directas).
+     *
+     * @throws ConflictoVersionException con confirmación "escritura", si su lote encontró otra versión
+     * @throws IllegalStateException     si la cola sigue llena o el lote no se confirma en espera-maxima-ms
+     */
+    public void guardar(String id, String nombre, String descripcion, double precio, Long version) {
+        if (!activa || id == null || id.isBlank() || hilo == null) {
+            productoService.guardar(id, nombre, descripcion, precio, version);
+            return;
+        }
+        CompletableFuture<Void> confirmacion = encolar(id, nombre, descripcion, precio, version);
+        if (confirmacion == null) {
+            productoService.guardar(id, nombre, descripcion, precio, version);
+            return;
+        }
+        if (!esperarEscritura) {
+            return;
+        }
+        try {
+            confirmacion.get(esperaMaximaMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            // sigue en la cola: se escribirá, pero no se puede confirmar
+            throw new IllegalStateException("La modificación del producto " + id + " no se ha confirmado en "
+                    + esperaMaximaMs + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrumpido esperando la escritura del producto " + id, e);
+        }
+    }
+
+    /**
+     * @return la confirmación de la escritura, o null si no se puede juntar con lo pendiente
+     *         de ese producto y hay que escribirla directamente
+     * @throws ConflictoVersionException si pide la misma versión que un cambio ya pendiente
+     */
+    private CompletableFuture<Void> encolar(String id, String nombre, String descripcion, double precio, Long version) {
+        CompletableFuture<Void> confirmacion = new CompletableFuture<>();
+        candado.lock();
+        try {
+            Pendiente pendiente = pendientes.get(id);
+            if (pendiente == null) {
+                long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(esperaMaximaMs);
+                while (pendientes.size() >= maxPendientes && !cerrando) {
+                    long falta = limite - System.nanoTime();
+                    if (falta <= 0) {
+                        throw new IllegalStateException("Cola de escritura diferida llena (" + maxPendientes + " productos)");
+                    }
+                    hayHueco.awaitNanos(falta);
+                }
+                if (cerrando) {
+                    throw new IllegalStateException("La escritura diferida se está cerrando");
+                }
+                // mientras se esperaba hueco puede haber llegado otro cambio del mismo producto
+                pendiente = pendientes.get(id);
+            }
+            if (pendiente == null) {
+                pendiente = new Pendiente(id, version);
+                if (pendientes.isEmpty()) {
+                    primerPendiente = System.nanoTime();
+                }
+                pendientes.put(id, pendiente);
+                if (pendientes.size() == 1 || pendientes.size() >= tamanoLote) {
+                    hayPendientes.signal();
+                }
+            } else if (version != null && !version.equals(siguienteVersion(pendiente))) {
+                if (version.equals(pendiente.version)) {
+                    conflictos.increment();
+                    throw new ConflictoVersionException(id, version, siguienteVersion(pendiente));
+                }
+                return null;
+            } else {
+                combinadas.increment();
+            }
+            pendiente.nombre = nombre;
+            pendiente.descripcion = descripcion;
+            pendiente.precio = precio;
+            if (esperarEscritura) {
+                pendiente.esperando.add(confirmacion);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrumpido esperando hueco en la escritura diferida", e);
+        } finally {
+            candado.unlock();
+        }
+        return confirmacion;
+    }
+
+    // La versión que tendrá el producto cuando se escriba lo pendiente (null si no se sabe)
+    private static Long siguienteVersion(Pendiente pendiente) {
+        return pendiente.version == null ? null : pendiente.version + 1;
+    }
+
+    private void bucle() {
+        while (true) {
+            List<Pendiente> lote;
+            try {
+                lote = siguienteLote();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (lote == null) {
+                return;
+            }
+            escribir(lote);
+        }
+    }
+
+    // Espera a que haya un lote lleno o a que el más antiguo cumpla el intervalo; null al cerrar sin pendientes
+    private List<Pendiente> siguienteLote() throws InterruptedException {
+        candado.lock();
+        try {
+            while (true) {
+                if (pendientes.isEmpty()) {
+                    if (cerrando) {
+                        return null;
+                    }
+                    hayPendientes.await();
+                    continue;
+                }
+                long falta = primerPendiente + intervaloNanos - System.nanoTime();
+                if (pendientes.size() >= tamanoLote || falta <= 0 || cerrando) {
+                    break;
+                }
+                hayPendientes.awaitNanos(falta);
+            }
+            List<Pendiente> lote = new ArrayList<>(Math.min(tamanoLote, pendientes.size()));
+            Iterator<Pendiente> it = pendientes.values().iterator();
+            while (it.hasNext() && lote.size() < tamanoLote) {
+                lote.add(it.next());
+                it.remove();
+            }
+            // lo que queda ya lleva esperando: sale en la siguiente vuelta sin volver a esperar
+            primerPendiente = pendientes.isEmpty() ? 0 : primerPendiente;
+            hayHueco.signalAll();
+            return lote;
+        } finally {
+            candado.unlock();
+        }
+    }
+
+    private void escribir(List<Pendiente> lote) {
+        List<ModificacionProducto> modificaciones = new ArrayList<>(lote.size());
+        for (Pendiente p : lote) {
+            modificaciones.add(new ModificacionProducto(p.id, p.nombre, p.descripcion, p.precio, p.version));
+        }
+        Map<String, ConflictoVersionException> fallos;
+        try {
+            fallos = vaciado.recordCallable(() -> productoService.guardarModificaciones(modificaciones));
+        } catch (Exception e) {
+            // el lote entero ha fallado: uno a uno, para que un producto no arrastre a los demás
+            log.warn("El lote de {} modificaciones diferidas falló ({}); se reintentan una a una",
+                    lote.size(), e.getMessage());
+            escribirUnoAUno(lote);
+            return;
+        }
+        for (Pendiente p : lote) {
+            completar(p, fallos.get(p.id));
+        }
+    }
+
+    private void escribirUnoAUno(List<Pendiente> lote) {
+        for (Pendiente p : lote) {
+            try {
+                productoService.guardar(p.id, p.nombre, p.descripcion, p.precio, p.version);
+                completar(p, null);
+            } catch (RuntimeException e) {
+                completar(p, e);
+            }
+        }
+    }
+
+    private void completar(Pendiente p, RuntimeException error) {
+        if (error == null) {
+            escritas.increment();
+            p.esperando.forEach(c -> c.complete(null));
+            return;
+        }
+        if (error instanceof ConflictoVersionException) {
+            conflictos.increment();
+        }
+        if (p.esperando.isEmpty()) {
+            // confirmación al encolar: ya no hay nadie a quien avisar
+            log.warn("❌ Modificación diferida del producto {} descartada: {}", p.id, error.getMessage());
+        }
+        p.esperando.forEach(c -> c.completeExceptionally(error));
+    }
+
+    public int getPendientes() {
+        candado.lock();
+        try {
+            return pendientes.size();
+        } finally {
+            candado.unlock();
+        }
+    }
+
+    public long getCombinadas() {
+        return combinadas.sum();
+    }
+
+    public long getConflictos() {
+        return conflictos.sum();
+    }
+
+    public long getEscritas() {
+        return escritas.sum();
+    }
+}
@@ -0,0 +1,261 @@
+package com.sistemagestionapp.demojava.service;
+
+import com.sistemagestionapp.demojava.estadisticas.HistogramaPrecios;
+import com.sistemagestionapp.demojava.model.EstadisticasCatalogo;
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Número de productos y precio mínimo, máximo, medio y percentiles del catálogo sin
+ * recorrerlo en cada petición.
+ *
+ * <p>Se calculan una vez con un GROUP BY precio ($group en Mongo) y después se mantienen
+ * con los eventos {@link ProductoCambiado}: cada alta, modificación o baja suma o resta su
+ * precio. Media, mínimo y máximo son exactos; los percentiles salen de un
+ * {@link HistogramaPrecios} con error relativo acotado. Solo cuando se quita el precio
+ * mínimo o máximo se vuelve a preguntar a la base de datos, por el índice de precio.</p>
+ *
+ * <p>Cada {@code app.estadisticas.recalculo-minutos} se recalcula todo: recoge los cambios
+ * hechos desde otras instancias, igual que las cachés locales, y corrige el caso raro de un
+ * cambio confirmado justo mientras corría la agregación, que puede contarse dos veces.</p>
+ */
+@Service
+@Timed(value = "app.servicio", histogram = true)
+public class EstadisticasCatalogoService {
+
+    private static final Logger log = LoggerFactory.getLogger(EstadisticasCatalogoService.class);
+
+    private static final double[] CUANTILES = {0.5, 0.9, 0.95, 0.99};
+    private static final String[] NOMBRES_CUANTILES = {"p50", "p90", "p95", "p99"};
+
+    private final ProductoService productoService;
+    private final VersionCatalogo versionCatalogo;
+    private final double errorRelativo;
+    private final long recalculoMinutos;
+
+    private final Object candado = new Object();
+    private Acumulado actual;                   // null hasta la primera carga
+    private List<ProductoCambiado> pendientes;  // no null mientras se recalcula
+    private volatile EstadisticasCatalogo instantanea;
+    private ScheduledExecutorService programador;
+
+    public EstadisticasCatalogoService(ProductoService productoService,
+                                       VersionCatalogo versionCatalogo,
+                                       @Value("${app.estadisticas.error-relativo:0.01}") double errorRelativo,
+                                       @Value("${app.estadisticas.recalculo-minutos:60}") long recalculoMinutos) {
+        this.productoService = productoService;
+        this.versionCatalogo = versionCatalogo;
+        this.errorRelativo = errorRelativo;
+        this.recalculoMinutos = recalculoMinutos;
+        // se valida ya para que un valor erróneo falle al arrancar
+        new HistogramaPrecios(errorRelativo);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void programarRecalculo() {
+        programador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "estadisticas-catalogo");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        if (recalculoMinutos > 0) {
+            programador.scheduleWithFixedDelay(this::recalcularSinFallar, 0, recalculoMinutos, TimeUnit.MINUTES);
+        } else {
+            programador.execute(this::recalcularSinFallar);
+        }
+    }
+
+    @PreDestroy
+    public void parar() {
+        if (programador != null) {
+            programador.shutdownNow();
+        }
+    }
+
+    /**
+     * Vuelve a calcular todo desde la base de datos. Mientras tanto se siguen aplicando los
+     * cambios a las estadísticas actuales y se apuntan para repetirlos sobre las nuevas.
+     */
+    public void recalcular() {
+        long inicio = System.nanoTime();
+        synchronized (candado) {
+            pendientes = new ArrayList<>();
+        }
+        try {
+            Acumulado nuevo = new Acumulado(errorRelativo);
+            productoService.recorrerPrecios(nuevo::cargar);
+            synchronized (candado) {
+                pendientes.forEach(nuevo::aplicar);
+                actual = nuevo;
+                corregirExtremos(nuevo);
+                instantanea = null;
+            }
+            // /api/productos/stats puede haber cambiado aunque no haya habido escrituras
+            versionCatalogo.incrementar();
+            log.info("✅ Estadísticas del catálogo calculadas: {} productos, {} cubetas en {} ms",
+                    nuevo.productos, nuevo.histograma.getCubetas(), (System.nanoTime() - inicio) / 1_000_000);
+        } finally {
+            synchronized (candado) {
+                pendientes = null;
+            }
+        }
+    }
+
+    private void recalcularSinFallar() {
+        try {
+            recalcular();
+        } catch (Exception e) {
+            log.error("❌ No se pudieron calcular las estadísticas del catálogo: {}", e.getMessage(), e);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiarProducto(ProductoCambiado evento) {
+        synchronized (candado) {
+            if (pendientes != null) {
+                pendientes.add(evento);
+            }
+            if (actual != null) {
+                actual.aplicar(evento);
+                corregirExtremos(actual);
+            }
+            instantanea = null;
+        }
+    }
+
+    /**
+     * Estadísticas actuales. Entre escrituras se devuelve siempre el mismo objeto; tras una
+     * escritura se rehace recorriendo las cubetas del histograma, no los productos.
+     *
+     * @throws IllegalStateException si aún no se han calculado por primera vez
+     */
+    public EstadisticasCatalogo obtener() {
+        EstadisticasCatalogo resultado = instantanea;
+        if (resultado != null) {
+            return resultado;
+        }
+        synchronized (candado) {
+            if (actual == null) {
+                throw new IllegalStateException("Las estadísticas del catálogo aún se están calculando");
+            }
+            corregirExtremos(actual);
+            resultado = actual.estadisticas();
+            if (!actual.extremosPendientes) {
+                instantanea = resultado;
+            }
+            return resultado;
+        }
+    }
+
+    public boolean isListas() {
+        synchronized (candado) {
+            return actual != null;
+        }
+    }
+
+    // Con el candado cogido: así ningún cambio posterior al commit se cuela entre la consulta
+    // y la asignación. Si falla se deja pendiente para el siguiente intento.
+    private void corregirExtremos(Acumulado acumulado) {
+        if (!acumulado.extremosPendientes) {
+            return;
+        }
+        if (acumulado.histograma.getTotal() == 0) {
+            acumulado.minimo = null;
+            acumulado.maximo = null;
+            acumulado.extremosPendientes = false;
+            return;
+        }
+        try {
+            acumulado.minimo = productoService.precioExtremo(false);
+            acumulado.maximo = productoService.precioExtremo(true);
+            acumulado.extremosPendientes = false;
+        } catch (RuntimeException e) {
+            log.warn("No se pudo releer el precio mínimo/máximo: {}", e.getMessage());
+        }
+    }
+
+    /** Contadores de una pasada: los de la carga más los cambios aplicados desde entonces. */
+    private static final class Acumulado {
+        final HistogramaPrecios histograma;
+        long productos;
+        BigDecimal suma = BigDecimal.ZERO;   // exacta: sumar y restar doubles acumularía error
+        Double minimo;
+        Double maximo;
+        boolean extremosPendientes;
+
+        Acumulado(double errorRelativo) {
+            this.histograma = new HistogramaPrecios(errorRelativo);
+        }
+
+        void cargar(Double precio, long n) {
+            productos += n;
+            if (precio == null) {
+                return;
+            }
+            histograma.anadir(precio, n);
+            suma = suma.add(BigDecimal.valueOf(precio).multiply(BigDecimal.valueOf(n)));
+            if (!extremosPendientes) {
+                minimo = minimo == null ? precio : Math.min(minimo, precio);
+                maximo = maximo == null ? precio : Math.max(maximo, precio);
+            }
+        }
+
+        void aplicar(ProductoCambiado evento) {
+            switch (evento.tipo()) {
+                case ALTA -> cargar(evento.precio(), 1);
+                case MODIFICACION -> {
+                    if (!Objects.equals(evento.precio(), evento.precioAnterior())) {
+                        quitar(evento.precioAnterior());
+                        cargar(evento.precio(), 1);
+                    }
+                }
+                case BAJA -> quitar(evento.precioAnterior());
+            }
+        }
+
+        void quitar(Double precio) {
+            productos--;
+            if (precio == null) {
+                return;
+            }
+            histograma.quitar(precio);
+            suma = suma.subtract(BigDecimal.valueOf(precio));
+            // puede que otro producto tenga el mismo precio o no: lo dice la base de datos
+            if (precio.equals(minimo) || precio.equals(maximo)) {
+                extremosPendientes = true;
+            }
+        }
+
+        EstadisticasCatalogo estadisticas() {
+            long conPrecio = histograma.getTotal();
+            Map<String, Double> percentiles = new LinkedHashMap<>();
+            for (int i = 0; i < CUANTILES.length; i++) {
+                percentiles.put(NOMBRES_CUANTILES[i], conPrecio == 0 ? null : histograma.cuantil(CUANTILES[i]));
+            }
+            Double media = conPrecio == 0 ? null
+                    : suma.divide(BigDecimal.valueOf(conPrecio), MathContext.DECIMAL64).doubleValue();
+            return new EstadisticasCatalogo(productos, conPrecio,
+                    extremosPendientes ? null : minimo,
+                    extremosPendientes ? null : maximo,
+                    media, percentiles, histograma.getErrorRelativo());
+        }
+    }
+}
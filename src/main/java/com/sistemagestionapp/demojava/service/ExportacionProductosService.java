@@ -0,0 +1,97 @@
+package com.sistemagestionapp.demojava.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Exportación del catálogo a CSV o NDJSON escribiendo directamente en la salida
+ * que se le pasa (la respuesta HTTP). Las filas llegan de
+ * {@link ProductoService#recorrerCatalogo(String, ProductoService.VisitanteProducto)}
+ * y se escriben según se leen, así que la memoria usada no depende del número de productos.
+ */
+@Service
+public class ExportacionProductosService {
+
+    private static final Logger log = LoggerFactory.getLogger(ExportacionProductosService.class);
+
+    private static final int TAMANO_BUFFER = 64 * 1024;
+
+    public enum Formato { CSV, NDJSON }
+
+    private final ProductoService productoService;
+    private final ObjectMapper objectMapper;
+
+    public ExportacionProductosService(ProductoService productoService, ObjectMapper objectMapper) {
+        this.productoService = productoService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @param desdeId si llega, se exportan solo los productos con id mayor (para reanudar);
+     *                en CSV tampoco se repite la cabecera
+     * @return número de productos exportados
+     */
+    public long exportar(Formato formato, String desdeId, OutputStream salida) throws IOException {
+        long inicio = System.nanoTime();
+        LongAdder filas = new LongAdder();
+        boolean reanudando = desdeId != null && !desdeId.isBlank();
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8), TAMANO_BUFFER);
+
+        if (formato == Formato.CSV) {
+            if (!reanudando) {
+                writer.write("id,nombre,descripcion,precio\n");
+            }
+            StringBuilder linea = new StringBuilder(128);
+            productoService.recorrerCatalogo(desdeId, (id, nombre, descripcion, precio) -> {
+                linea.setLength(0);
+                linea.append(id).append(',');
+                FormatoProductos.escribirCampoCsv(linea, nombre);
+                linea.append(',');
+                FormatoProductos.escribirCampoCsv(linea, descripcion);
+                linea.append(',');
+                if (precio != null) {
+                    linea.append(precio);
+                }
+                linea.append('\n');
+                writer.append(linea);
+                filas.increment();
+            });
+            writer.flush();
+        } else {
+            JsonGenerator json = objectMapper.getFactory().createGenerator(writer);
+            // un objeto por línea: sin el espacio que Jackson pone entre valores raíz
+            json.setRootValueSeparator(null);
+            productoService.recorrerCatalogo(desdeId, (id, nombre, descripcion, precio) -> {
+                json.writeStartObject();
+                json.writeStringField("id", id);
+                json.writeStringField("nombre", nombre);
+                json.writeStringField("descripcion", descripcion);
+                if (precio == null) {
+                    json.writeNullField("precio");
+                } else {
+                    json.writeNumberField("precio", precio);
+                }
+                json.writeEndObject();
+                json.writeRaw('\n');
+                filas.increment();
+            });
+            json.flush();
+        }
+
+        log.info("ℹ️ Exportación {}: {} productos en {} ms", formato, filas.sum(),
+                (System.nanoTime() - inicio) / 1_000_000);
+        return filas.sum();
+    }
+}
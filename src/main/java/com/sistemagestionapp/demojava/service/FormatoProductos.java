@@ -0,0 +1,74 @@
+package com.sistemagestionapp.demojava.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Utilidades de formato para la importación y exportación de productos en CSV.
+ * El CSV tiene las columnas nombre, descripcion, precio (más id al exportar);
+ * los campos pueden ir entre comillas dobles y las comillas se escapan duplicándolas.
+ * No se admiten saltos de línea dentro de un campo: cada registro es una línea.
+ */
+final class FormatoProductos {
+
+    static final String CABECERA_IMPORTACION = "nombre,descripcion,precio";
+
+    private FormatoProductos() {
+    }
+
+    static List<String> parsearLineaCsv(String linea) {
+        List<String> campos = new ArrayList<>(3);
+        StringBuilder actual = new StringBuilder();
+        boolean entreComillas = false;
+
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+            if (entreComillas) {
+                if (c == '"') {
+                    if (i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                        actual.append('"');
+                        i++;
+                    } else {
+                        entreComillas = false;
+                    }
+                } else {
+                    actual.append(c);
+                }
+            } else if (c == '"') {
+                entreComillas = true;
+            } else if (c == ',') {
+                campos.add(actual.toString());
+                actual.setLength(0);
+            } else {
+                actual.append(c);
+            }
+        }
+        if (entreComillas) {
+            throw new IllegalArgumentException("comillas sin cerrar");
+        }
+        campos.add(actual.toString());
+        return campos;
+    }
+
+    static void escribirCampoCsv(StringBuilder destino, String valor) {
+        if (valor == null) {
+            return;
+        }
+        boolean necesitaComillas = valor.indexOf(',') >= 0 || valor.indexOf('"') >= 0
+                || valor.indexOf('\n') >= 0 || valor.indexOf('\r') >= 0;
+        if (!necesitaComillas) {
+            destino.append(valor);
+            return;
+        }
+        destino.append('"');
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            if (c == '"') {
+                destino.append('"');
+            }
+            // los saltos de línea se sustituyen para mantener un registro por línea
+            destino.append(c == '\n' || c == '\r' ? ' ' : c);
+        }
+        destino.append('"');
+    }
+}
@@ -0,0 +1,165 @@
+package com.sistemagestionapp.demojava.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sistemagestionapp.demojava.model.Producto;
+import com.sistemagestionapp.demojava.model.ResultadoImportacion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Importación masiva de productos desde CSV o NDJSON (un objeto JSON por línea).
+ *
+ * <p>El cuerpo se lee línea a línea y solo se tiene en memoria el lote en curso, así que
+ * el consumo no depende del tamaño del fichero. Cada lote se escribe con
+ * {@link ProductoService#guardarLote(List)}; un lote que falla se anota y se sigue con el siguiente.</p>
+ */
+@Service
+public class ImportacionProductosService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportacionProductosService.class);
+
+    // para no devolver un JSON enorme si el fichero entero está mal
+    private static final int MAX_ERRORES = 100;
+
+    public enum Formato { CSV, NDJSON }
+
+    private final ProductoService productoService;
+    private final ObjectMapper objectMapper;
+    private final int tamanoLote;
+
+    public ImportacionProductosService(ProductoService productoService,
+                                       ObjectMapper objectMapper,
+                                       @Value("${app.importacion.tamano-lote:1000}") int tamanoLote) {
+        this.productoService = productoService;
+        this.objectMapper = objectMapper;
+        this.tamanoLote = Math.max(1, tamanoLote);
+    }
+
+    public ResultadoImportacion importar(InputStream entrada, Formato formato) throws IOException {
+        long inicio = System.nanoTime();
+        long filasLeidas = 0;
+        long filasInsertadas = 0;
+        long numeroLinea = 0;
+        int lotes = 0;
+        List<ResultadoImportacion.Error> errores = new ArrayList<>();
+        List<Producto> lote = new ArrayList<>(tamanoLote);
+        long lineaInicioLote = 1;
+
+        BufferedReader lector = new BufferedReader(new InputStreamReader(entrada, StandardCharsets.UTF_8));
+        String linea;
+        while ((linea = lector.readLine()) != null) {
+            numeroLinea++;
+            if (linea.isBlank()) {
+                continue;
+            }
+            if (numeroLinea == 1 && formato == Formato.CSV && esCabecera(linea)) {
+                continue;
+            }
+
+            filasLeidas++;
+            try {
+                if (lote.isEmpty()) {
+                    lineaInicioLote = numeroLinea;
+                }
+                lote.add(formato == Formato.CSV ? desdeCsv(linea) : desdeJson(linea));
+            } catch (IllegalArgumentException | IOException e) {
+                anadirError(errores, new ResultadoImportacion.Error(0, numeroLinea, 1, e.getMessage()));
+                continue;
+            }
+
+            if (lote.size() >= tamanoLote) {
+                lotes++;
+                filasInsertadas += escribirLote(lote, lotes, lineaInicioLote, errores);
+                lote.clear();
+            }
+        }
+        if (!lote.isEmpty()) {
+            lotes++;
+            filasInsertadas += escribirLote(lote, lotes, lineaInicioLote, errores);
+        }
+
+        long duracionNanos = System.nanoTime() - inicio;
+        double filasPorSegundo = duracionNanos == 0 ? 0 : filasInsertadas * 1_000_000_000.0 / duracionNanos;
+        long duracionMs = duracionNanos / 1_000_000;
+
+        log.info("ℹ️ Importación {}: {} filas leídas, {} insertadas en {} lotes, {} ms ({} filas/s), {} errores",
+                formato, filasLeidas, filasInsertadas, lotes, duracionMs, Math.round(filasPorSegundo), errores.size());
+
+        return new ResultadoImportacion(filasLeidas, filasInsertadas, lotes, errores, duracionMs, filasPorSegundo);
+    }
+
+    private int escribirLote(List<Producto> lote, int numeroLote, long lineaInicio,
+                             List<ResultadoImportacion.Error> errores) {
+        try {
+            return productoService.guardarLote(lote);
+        } catch (LoteIncompletoException e) {
+            anadirError(errores, new ResultadoImportacion.Error(numeroLote, lineaInicio,
+                    lote.size() - e.getInsertados(), e.getMessage()));
+            return e.getInsertados();
+        } catch (RuntimeException e) {
+            log.warn("⚠️ Lote {} de la importación rechazado: {}", numeroLote, e.getMessage());
+            anadirError(errores, new ResultadoImportacion.Error(numeroLote, lineaInicio, lote.size(), e.getMessage()));
+            return 0;
+        }
+    }
+
+    private static void anadirError(List<ResultadoImportacion.Error> errores, ResultadoImportacion.Error error) {
+        if (errores.size() < MAX_ERRORES) {
+            errores.add(error);
+        }
+    }
+
+    private static boolean esCabecera(String linea) {
+        return linea.replace("\"", "").replace(" ", "")
+                .toLowerCase().startsWith(FormatoProductos.CABECERA_IMPORTACION);
+    }
+
+    private static Producto desdeCsv(String linea) {
+        List<String> campos = FormatoProductos.parsearLineaCsv(linea);
+        if (campos.size() < 3) {
+            throw new IllegalArgumentException("se esperaban 3 columnas (nombre,descripcion,precio) y hay " + campos.size());
+        }
+        return nuevoProducto(campos.get(0), campos.get(1), campos.get(2));
+    }
+
+    private Producto desdeJson(String linea) throws IOException {
+        JsonNode nodo = objectMapper.readTree(linea);
+        if (nodo == null || !nodo.isObject()) {
+            throw new IllegalArgumentException("la línea no es un objeto JSON");
+        }
+        JsonNode precio = nodo.get("precio");
+        return nuevoProducto(
+                nodo.path("nombre").asText(null),
+                nodo.path("descripcion").asText(null),
+                precio == null || precio.isNull() ? null : precio.asText());
+    }
+
+    private static Producto nuevoProducto(String nombre, String descripcion, String precio) {
+        if (nombre == null || nombre.isBlank()) {
+            throw new IllegalArgumentException("el nombre es obligatorio");
+        }
+        if (precio == null || precio.isBlank()) {
+            throw new IllegalArgumentException("el precio es obligatorio");
+        }
+        Producto p = new Producto();
+        p.setNombre(nombre.trim());
+        p.setDescripcion(descripcion == null || descripcion.isBlank() ? null : descripcion.trim());
+        try {
+            p.setPrecio(Double.valueOf(precio.trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("precio no válido: " + precio);
+        }
+        return p;
+    }
+}
@@ -0,0 +1,19 @@
+package com.sistemagestionapp.demojava.service;
+
+/**
+ * Un lote de la importación se ha escrito solo en parte (bulkWrite desordenado de Mongo):
+ * lleva cuántos documentos sí se insertaron.
+ */
+public class LoteIncompletoException extends RuntimeException {
+
+    private final int insertados;
+
+    public LoteIncompletoException(int insertados, String mensaje, Throwable causa) {
+        super(mensaje, causa);
+        this.insertados = insertados;
+    }
+
+    public int getInsertados() {
+        return insertados;
+    }
+}
@@ -0,0 +1,43 @@
+package com.sistemagestionapp.demojava.service;
+
+import com.sistemagestionapp.demojava.model.ProductoAnterior;
+
+/**
+ * Evento que publica {@link ProductoService} por cada alta, modificación o baja de un
+ * producto. Se escucha con {@code @TransactionalEventListener(fallbackExecution = true)}
+ * para recibirlo solo cuando la escritura ya está confirmada.
+ *
+ * <p>En una baja solo van el id y el precio que tenía. {@code precioAnterior} es el
+ * precio antes de una modificación o baja (null en las altas), para quien mantenga
+ * agregados sin releer el catálogo.</p>
+ */
+public record ProductoCambiado(Tipo tipo, String id, String nombre, String descripcion, Double precio,
+                               Long version, Double precioAnterior) {
+
+    public enum Tipo {
+        ALTA, MODIFICACION, BAJA
+    }
+
+    static ProductoCambiado alta(String id, String nombre, String descripcion, Double precio, Long version) {
+        return new ProductoCambiado(Tipo.ALTA, id, nombre, descripcion, precio, version, null);
+    }
+
+    static ProductoCambiado modificacion(String id, String nombre, String descripcion, Double precio, Long version,
+                                         Double precioAnterior) {
+        return new ProductoCambiado(Tipo.MODIFICACION, id, nombre, descripcion, precio, version, precioAnterior);
+    }
+
+    static ProductoCambiado modificacion(String id, String nombre, String descripcion, Double precio,
+                                         ProductoAnterior anterior) {
+        return new ProductoCambiado(Tipo.MODIFICACION, id, nombre, descripcion, precio, anterior.version() + 1,
+                anterior.precio());
+    }
+
+    static ProductoCambiado baja(String id, Double precioAnterior) {
+        return new ProductoCambiado(Tipo.BAJA, id, null, null, null, null, precioAnterior);
+    }
+
+    static ProductoCambiado baja(String id, ProductoAnterior anterior) {
+        return new ProductoCambiado(Tipo.BAJA, id, null, null, null, null, anterior.precio());
+    }
+}
@@ -1,98 +1,594 @@
 package com.sistemagestionapp.demojava.service;
 
+import com.sistemagestionapp.demojava.cache.AgrupadorLlamadas;
+import com.sistemagestionapp.demojava.cache.CacheLocal;
+import com.sistemagestionapp.demojava.cache.FragmentoHtml;
+import com.sistemagestionapp.demojava.model.ModificacionProducto;
+import com.sistemagestionapp.demojava.model.OrdenProductos;
+import com.sistemagestionapp.demojava.model.PaginaProductos;
 import com.sistemagestionapp.demojava.model.Producto;
+import com.sistemagestionapp.demojava.model.ProductoAnterior;
+import com.sistemagestionapp.demojava.model.ProductoResumen;
 import com.sistemagestionapp.demojava.model.mongo.ProductoMongo;
 import com.sistemagestionapp.demojava.repository.ProductoRepository;
+import com.sistemagestionapp.demojava.repository.ProductosFragmentados;
 import com.sistemagestionapp.demojava.repository.mongo.ProductoMongoRepository;
 
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.BulkOperationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
 
 @Service
+// latencia de cada método público, etiquetada con class y method
+@Timed(value = "app.servicio", histogram = true)
 public class ProductoService {
 
+    /**
+     * Recibe las filas del catálogo una a una (exportación, reconstrucción de índices...)
+     * sin crear objetos intermedios. Puede lanzar IOException si escribe en la respuesta.
+     */
+    @FunctionalInterface
+    public interface VisitanteProducto {
+        void visitar(String id, String nombre, String descripcion, Double precio) throws IOException;
+    }
+
+    public static final int TAMANO_PAGINA_POR_DEFECTO = 20;
+    public static final int TAMANO_PAGINA_MAXIMO = 100;
+
+    private static final String LISTADO_COMPLETO = "todos";
+
     private final ProductoRepository productoRepository;            // null si mongo
+    private final ProductosFragmentados productosSql;               // el repositorio, repartido si hay fragmentos
     private final ProductoMongoRepository productoMongoRepository;  // null si sql
     private final String dbEngine;
+    private final boolean cqrs;
+    private final int tamanoFetch;
+
+    // Cachés read-through: producto por id, páginas del listado y tabla ya renderizada (ver CacheConfig)
+    private final CacheLocal<String, Object> cacheProductos;
+    private final CacheLocal<String, PaginaProductos> cachePaginas;
+    private final CacheLocal<String, FragmentoHtml> cacheTabla;
+    // Fallos de caché simultáneos del mismo producto, y listados completos a la vez, hacen una sola consulta
+    private final AgrupadorLlamadas<String, Object> agrupadorProductos;
+    private final AgrupadorLlamadas<String, List<?>> agrupadorListado;
+    private final VersionCatalogo versionCatalogo;
+    private final ApplicationEventPublisher eventos;
 
     public ProductoService(
             ObjectProvider<ProductoRepository> productoRepository,
             ObjectProvider<ProductoMongoRepository> productoMongoRepository,
-            @Value("${app.db.engine:h2}") String dbEngine
+            ProductosFragmentados productosSql,
+            @Value("${app.db.engine:h2}") String dbEngine,
+            @Value("${app.cqrs.enabled:false}") boolean cqrs,
+            @Value("${app.exportacion.fetch-size:500}") int tamanoFetch,
+            @Qualifier("cacheProductos") CacheLocal<String, Object> cacheProductos,
+            @Qualifier("cachePaginasProductos") CacheLocal<String, PaginaProductos> cachePaginas,
+            @Qualifier("cacheTablaProductos") CacheLocal<String, FragmentoHtml> cacheTabla,
+            @Qualifier("agrupadorProductos") AgrupadorLlamadas<String, Object> agrupadorProductos,
+            @Qualifier("agrupadorListadoProductos") AgrupadorLlamadas<String, List<?>> agrupadorListado,
+            VersionCatalogo versionCatalogo,
+            ApplicationEventPublisher eventos
     ) {
         this.productoRepository = productoRepository.getIfAvailable();
         this.productoMongoRepository = productoMongoRepository.getIfAvailable();
+        this.productosSql = productosSql;
         this.dbEngine = dbEngine == null ? "h2" : dbEngine.toLowerCase();
+        this.cqrs = cqrs;
+        this.tamanoFetch = Math.max(1, tamanoFetch);
+        this.cacheProductos = cacheProductos;
+        this.cachePaginas = cachePaginas;
+        this.cacheTabla = cacheTabla;
+        this.agrupadorProductos = agrupadorProductos;
+        this.agrupadorListado = agrupadorListado;
+        this.versionCatalogo = versionCatalogo;
+        this.eventos = eventos;
     }
 
     private boolean isMongo() {
         return "mongo".equalsIgnoreCase(dbEngine);
     }
 
-    @Transactional(readOnly = true)
+    /**
+     * Listado, páginas y detalle se leen de Mongo también en modo CQRS, donde son una copia
+     * de SQL que mantiene {@link ProyeccionProductosService}. Lo demás lee siempre de la
+     * fuente de verdad.
+     */
+    private boolean leerDeMongo() {
+        return isMongo() || cqrs;
+    }
+
+    /**
+     * Catálogo completo. Las peticiones simultáneas comparten la misma consulta y reciben la
+     * misma lista, que no se debe modificar. Sin @Transactional: quien espera la consulta de
+     * otro no debe tener una conexión cogida; findAll ya abre su transacción de lectura.
+     */
     public List<?> listarTodos() {
-        if (isMongo()) {
+        return agrupadorListado.ejecutar(LISTADO_COMPLETO, clave -> cargarTodos());
+    }
+
+    private List<?> cargarTodos() {
+        if (leerDeMongo()) {
             if (productoMongoRepository == null) throw new IllegalStateException("ProductoMongoRepository no disponible (perfil mongo mal configurado)");
             return productoMongoRepository.findAll();
         }
         if (productoRepository == null) throw new IllegalStateException("ProductoRepository no disponible (perfil sql mal configurado)");
-        return productoRepository.findAll();
+        return productosSql.findAll();
     }
 
-    @Transactional(readOnly = true)
-    public Object buscarPorId(String id) {
+    /**
+     * Recorre el catálogo completo en orden de id, empezando después de {@code desdeId}
+     * (null = desde el principio), con memoria constante: en SQL un Stream JPA con
+     * fetch size sobre un cursor JDBC y en Mongo un cursor del servidor.
+     * Sirve para exportar y para reanudar una exportación cortada.
+     */
+    public void recorrerCatalogo(String desdeId, VisitanteProducto visitante) throws IOException {
+        String desde = desdeId == null || desdeId.isBlank() ? null : desdeId.trim();
+        try {
+            if (isMongo()) {
+                if (productoMongoRepository == null) throw new IllegalStateException("ProductoMongoRepository no disponible (perfil mongo mal configurado)");
+                productoMongoRepository.recorrer(desde, tamanoFetch, p ->
+                        visitarSinExcepcion(visitante, p.getId(), p.getNombre(), p.getDescripcion(), p.getPrecio()));
+                return;
+            }
+
+            if (productoRepository == null) throw new IllegalStateException("ProductoRepository no disponible (perfil sql mal configurado)");
+            Long desdeLong;
+            try {
+                desdeLong = desde == null ? null : Long.valueOf(desde);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Id de reanudación no válido: " + desde);
+            }
+            productosSql.recorrer(desdeLong, tamanoFetch, p ->
+                    visitarSinExcepcion(visitante, String.valueOf(p.getId()), p.getNombre(), p.getDescripcion(), p.getPrecio()));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void visitarSinExcepcion(VisitanteProducto visitante, String id, String nombre,
+                                            String descripcion, Double precio) {
+        try {
+            visitante.visitar(id, nombre, descripcion, precio);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Pasa al consumidor cada precio distinto con su número de productos, agregados en la
+     * base de datos (GROUP BY en SQL, $group en Mongo). Lee del primario.
+     */
+    public void recorrerPrecios(BiConsumer<Double, Long> consumidor) {
         if (isMongo()) {
+            if (productoMongoRepository == null) throw new IllegalStateException("ProductoMongoRepository no disponible (perfil mongo mal configurado)");
+            productoMongoRepository.recorrerPrecios(consumidor);
+            return;
+        }
+        if (productoRepository == null) throw new IllegalStateException("ProductoRepository no disponible (perfil sql mal configurado)");
+        productosSql.recorrerPrecios(consumidor);
+    }
+
+    /**
+     * Precio mínimo o máximo del catálogo (null si no hay), por el índice de precio y
+     * leyendo del primario, porque se pide justo después de una escritura.
+     */
+    public Double precioExtremo(boolean maximo) {
+        if (isMongo()) {
+            if (productoMongoRepository == null) throw new IllegalStateException("ProductoMongoRepository no disponible (perfil mongo mal configurado)");
+            return productoMongoRepository.precioExtremo(maximo);
+        }
+        if (productoRepository == null) throw new IllegalStateException("ProductoRepository no disponible (perfil sql mal configurado)");
+        return productosSql.precioExtremo(maximo);
+    }
+
+    /**
+     * Listado paginado por keyset (seek) sobre el id, con orden opcional por nombre o precio.
+     * Solo se leen las columnas de la tabla y nunca se usa OFFSET, así que el coste
+     * de cada página no depende de lo lejos que esté del principio.
+     *
+     * @param orden   "id", "nombre" o "precio" (por defecto id)
+     * @param despues cursor de la última fila de la página anterior (para ir hacia delante)
+     * @param antes   cursor de la primera fila de la página siguiente (para ir hacia atrás)
+     * @param tamano  número de filas por página, limitado a {@link #TAMANO_PAGINA_MAXIMO}
+     *
+     * Las páginas se sirven desde la caché local; no lleva @Transactional para que un
+     * acierto no abra transacción ni pida conexión (la consulta del repositorio ya es readOnly).
+     */
+    public PaginaProductos listarPagina(String orden, String despues, String antes, int tamano) {
+        OrdenProductos o = OrdenProductos.desde(orden);
+        int limite = Math.max(1, Math.min(tamano, TAMANO_PAGINA_MAXIMO));
+        String clave = o.getCampo() + '|' + limite + '|' + valorOVacio(despues) + '|' + valorOVacio(antes);
+
+        return cachePaginas.obtener(clave, k -> cargarPagina(o, despues, antes, limite));
+    }
+
+    private PaginaProductos cargarPagina(OrdenProductos o, String despues, String antes, int limite) {
+
+        boolean haciaAtras = antes != null && !antes.isBlank();
+        CursorProductos cursor = CursorProductos.decodificar(o, haciaAtras ? antes : despues);
+        if (cursor != null && !leerDeMongo() && !esIdNumerico(cursor.getId())) {
+            // cursor de otro motor o manipulado: empezamos desde el principio
+            cursor = null;
+        }
+        if (cursor == null) {
+            haciaAtras = false;
+        }
+
+        // pedimos una fila de más para saber si hay otra página en ese sentido
+        List<ProductoResumen> filas = new ArrayList<>(buscarPagina(o, cursor, haciaAtras, limite + 1));
+        boolean hayMas = filas.size() > limite;
+        if (hayMas) {
+            filas.remove(filas.size() - 1);
+        }
+        if (haciaAtras) {
+            Collections.reverse(filas);
+        }
+
+        boolean haySiguiente = haciaAtras || hayMas;
+        boolean hayAnterior = haciaAtras ? hayMas : cursor != null;
+
+        String siguiente = haySiguiente && !filas.isEmpty()
+                ? CursorProductos.codificar(o, filas.get(filas.size() - 1)) : null;
+        String anterior = hayAnterior && !filas.isEmpty()
+                ? CursorProductos.codificar(o, filas.get(0)) : null;
+
+        return new PaginaProductos(filas, o, limite, siguiente, anterior);
+    }
+
+    private List<ProductoResumen> buscarPagina(OrdenProductos orden, CursorProductos cursor,
+                                               boolean haciaAtras, int limite) {
+        Object valor = cursor == null ? null : cursor.getValor();
+
+        if (leerDeMongo()) {
+            if (productoMongoRepository == null) throw new IllegalStateException("ProductoMongoRepository no disponible (perfil mongo mal configurado)");
+            String id = cursor == null ? null : cursor.getId();
+            return productoMongoRepository.buscarPagina(orden, valor, id, haciaAtras, limite);
+        }
+
+        if (productoRepository == null) throw new IllegalStateException("ProductoRepository no disponible (perfil sql mal configurado)");
+        Long id = cursor == null ? null : Long.valueOf(cursor.getId());
+        return productosSql.buscarPagina(orden, valor, id, haciaAtras, limite);
+    }
+
+    private static String valorOVacio(String valor) {
+        return valor == null ? "" : valor;
+    }
+
+    private static boolean esIdNumerico(String id) {
+        try {
+            Long.parseLong(id);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Producto completo por id, pasando por la caché local; los fallos simultáneos del mismo
+     * id hacen una sola consulta.
+     * Igual que listarPagina, sin @Transactional para que los aciertos no toquen la base de datos.
+     */
+    public Object buscarPorId(String id) {
+        return cacheProductos.obtener(claveProducto(id), clave -> agrupadorProductos.ejecutar(clave, this::cargarPorId));
+    }
+
+    // En SQL "01" y "1" son el mismo producto: una sola entrada, la que se invalida al escribir
+    private String claveProducto(String id) {
+        return isMongo() || id == null || !esIdNumerico(id) ? id : Long.valueOf(id).toString();
+    }
+
+    private Object cargarPorId(String id) {
+        if (leerDeMongo()) {
             if (productoMongoRepository == null) throw new IllegalStateException("ProductoMongoRepository no disponible (perfil mongo mal configurado)");
             return productoMongoRepository.findById(id)
                     .orElseThrow(() -> new IllegalArgumentException("Producto no encontrado: " + id));
         }
         if (productoRepository == null) throw new IllegalStateException("ProductoRepository no disponible (perfil sql mal configurado)");
-        return productoRepository.findById(Long.valueOf(id))
+        return productosSql.findById(Long.valueOf(id))
                 .orElseThrow(() -> new IllegalArgumentException("Producto no encontrado: " + id));
     }
 
+    /**
+     * Alta (id vacío) o modificación de un producto. La modificación es una única sentencia
+     * condicional a {@code version}, sin leer antes el producto: findAndModify en Mongo y un
+     * UPDATE en SQL, que devuelven lo que había para que el evento lleve el precio sustituido
+     * (en MySQL, que no devuelve filas, un SELECT ... FOR UPDATE justo antes en la misma transacción).
+     * Con {@code version} null no se comprueba la versión (el último que escribe gana).
+     *
+     * @throws ConflictoVersionException si otro usuario lo ha cambiado o borrado entretanto
+     */
     @Transactional
-    public void guardar(String id, String nombre, String descripcion, double precio) {
+    public void guardar(String id, String nombre, String descripcion, double precio, Long version) {
+        boolean nuevo = id == null || id.isBlank();
+
         if (isMongo()) {
             if (productoMongoRepository == null) throw new IllegalStateException("ProductoMongoRepository no disponible (perfil mongo mal configurado)");
 
-            ProductoMongo p = (id == null || id.isBlank())
-                    ? new ProductoMongo()
-                    : productoMongoRepository.findById(id).orElse(new ProductoMongo());
+            if (nuevo) {
+                ProductoMongo p = new ProductoMongo();
+                p.setNombre(nombre);
+                p.setDescripcion(descripcion);
+                p.setPrecio(precio);
+                productoMongoRepository.insert(p);
+                invalidarCaches(p.getId());
+                eventos.publishEvent(ProductoCambiado.alta(p.getId(), nombre, descripcion, precio, p.getVersion()));
+                return;
+            }
+
+            ProductoMongo anterior = productoMongoRepository.actualizarSiVersion(id, nombre, descripcion, precio, version);
+            if (anterior == null) {
+                throw new ConflictoVersionException(id, version, productoMongoRepository.versionActual(id));
+            }
+            invalidarCaches(id);
+            long nuevaVersion = (anterior.getVersion() == null ? 0L : anterior.getVersion()) + 1;
+            eventos.publishEvent(ProductoCambiado.modificacion(id, nombre, descripcion, precio, nuevaVersion,
+                    anterior.getPrecio()));
+            return;
+        }
 
+        if (productoRepository == null) throw new IllegalStateException("ProductoRepository no disponible (perfil sql mal configurado)");
+
+        if (nuevo) {
+            Producto p = new Producto();
             p.setNombre(nombre);
             p.setDescripcion(descripcion);
             p.setPrecio(precio);
-
-            productoMongoRepository.save(p);
+            productosSql.insertar(p);
+            invalidarCaches(String.valueOf(p.getId()));
+            eventos.publishEvent(ProductoCambiado.alta(String.valueOf(p.getId()), nombre, descripcion, precio, p.getVersion()));
             return;
         }
 
-        if (productoRepository == null) throw new IllegalStateException("ProductoRepository no disponible (perfil sql mal configurado)");
+        Long idSql = Long.valueOf(id);
+        ProductoAnterior anterior = productosSql.actualizarSiVersion(idSql, nombre, descripcion, precio, version);
+        if (anterior == null) {
+            throw new ConflictoVersionException(id, version, productosSql.versionActual(idSql));
+        }
+        invalidarCaches(id);
+        eventos.publishEvent(ProductoCambiado.modificacion(id, nombre, descripcion, precio, anterior));
+    }
 
-        Producto p = (id == null || id.isBlank())
-                ? new Producto()
-                : productoRepository.findById(Long.valueOf(id)).orElse(new Producto());
+    /**
+     * Muchas modificaciones en una sola transacción (escritura diferida): una lectura de
+     * los valores anteriores para todos y un único lote de UPDATE condicionales en SQL, o un
+     * bulkWrite en Mongo. Cada una se comprueba contra su {@code version} igual que en
+     * {@link #guardar}; las que no la cumplen se devuelven como conflicto y no impiden
+     * escribir las demás. Sin versión, si alguien escribe entre la lectura y el lote, esa
+     * se repite sola con {@link #guardar}. Se invalida la caché una vez para todo el lote.
+     *
+     * @return los conflictos por id (vacío si se escribieron todas)
+     */
+    @Transactional
+    public Map<String, ConflictoVersionException> guardarModificaciones(List<ModificacionProducto> modificaciones) {
+        Map<String, ConflictoVersionException> conflictos = new HashMap<>();
+        if (modificaciones.isEmpty()) {
+            return conflictos;
+        }
 
-        p.setNombre(nombre);
-        p.setDescripcion(descripcion);
-        p.setPrecio(precio);
+        List<ProductoResumen> leidos;
+        if (isMongo()) {
+            if (productoMongoRepository == null) throw new IllegalStateException("ProductoMongoRepository no disponible (perfil mongo mal configurado)");
+            leidos = productoMongoRepository.resumenes(modificaciones.stream().map(ModificacionProducto::id).toList());
+        } else {
+            if (productoRepository == null) throw new IllegalStateException("ProductoRepository no disponible (perfil sql mal configurado)");
+            leidos = productosSql.resumenes(modificaciones.stream().map(m -> Long.valueOf(m.id())).toList());
+        }
+        Map<String, ProductoResumen> anteriores = new HashMap<>();
+        leidos.forEach(r -> anteriores.put(r.getId(), r));
+
+        // cada una condicionada a la versión leída, como en guardar
+        List<ModificacionProducto> aplicables = new ArrayList<>(modificaciones.size());
+        for (ModificacionProducto m : modificaciones) {
+            ProductoResumen anterior = anteriores.get(m.id());
+            if (anterior == null || (m.version() != null && !m.version().equals(anterior.getVersion()))) {
+                conflictos.put(m.id(), new ConflictoVersionException(m.id(), m.version(),
+                        anterior == null ? null : anterior.getVersion()));
+            } else {
+                aplicables.add(new ModificacionProducto(m.id(), m.nombre(), m.descripcion(), m.precio(),
+                        anterior.getVersion()));
+            }
+        }
+
+        Set<String> actualizados = isMongo()
+                ? productoMongoRepository.actualizarLote(aplicables)
+                : productosSql.actualizarLote(aplicables);
+
+        Set<String> tocados = new HashSet<>();
+        for (ModificacionProducto m : modificaciones) {
+            if (conflictos.containsKey(m.id())) {
+                continue;
+            }
+            if (actualizados.contains(m.id())) {
+                ProductoResumen anterior = anteriores.get(m.id());
+                tocados.add(m.id());
+                eventos.publishEvent(ProductoCambiado.modificacion(m.id(), m.nombre(), m.descripcion(), m.precio(),
+                        anterior.getVersion() + 1, anterior.getPrecio()));
+            } else if (m.version() == null) {
+                // ha cambiado entre la lectura y el lote: sin versión pedida gana esta escritura
+                try {
+                    guardar(m.id(), m.nombre(), m.descripcion(), m.precio(), null);
+                } catch (ConflictoVersionException e) {
+                    conflictos.put(m.id(), e);  // borrado entretanto
+                }
+            } else {
+                conflictos.put(m.id(), new ConflictoVersionException(m.id(), m.version(), versionActual(m.id())));
+            }
+        }
+        if (!tocados.isEmpty()) {
+            invalidarCaches(tocados);
+        }
+        return conflictos;
+    }
 
-        productoRepository.save(p);
+    private Long versionActual(String id) {
+        return isMongo() ? productoMongoRepository.versionActual(id) : productosSql.versionActual(Long.valueOf(id));
     }
 
+    /**
+     * Borra el producto con una única sentencia condicional a {@code version} (null = sin
+     * comprobarla): un findAndRemove en Mongo y un DELETE en SQL, que devuelven el precio que
+     * tenía igual que en {@link #guardar}.
+     *
+     * @throws ConflictoVersionException si otro usuario lo ha cambiado entretanto
+     */
     @Transactional
-    public void borrarPorId(String id) {
+    public void borrarPorId(String id, Long version) {
         if (isMongo()) {
             if (productoMongoRepository == null) throw new IllegalStateException("ProductoMongoRepository no disponible (perfil mongo mal configurado)");
-            productoMongoRepository.deleteById(id);
+            ProductoMongo borrado = productoMongoRepository.borrarSiVersion(id, version);
+            if (borrado == null) {
+                lanzarSiConflicto(id, version, productoMongoRepository.versionActual(id));
+            }
+            invalidarCaches(id);
+            if (borrado != null) {
+                eventos.publishEvent(ProductoCambiado.baja(id, borrado.getPrecio()));
+            }
             return;
         }
         if (productoRepository == null) throw new IllegalStateException("ProductoRepository no disponible (perfil sql mal configurado)");
-        productoRepository.deleteById(Long.valueOf(id));
+        Long idSql = Long.valueOf(id);
+        ProductoAnterior anterior = productosSql.borrarSiVersion(idSql, version);
+        if (anterior == null) {
+            lanzarSiConflicto(id, version, productosSql.versionActual(idSql));
+        }
+        invalidarCaches(id);
+        if (anterior != null) {
+            eventos.publishEvent(ProductoCambiado.baja(id, anterior));
+        }
+    }
+
+    // Borrar algo que ya no existe no es un conflicto (el resultado es el que se quería);
+    // que exista con otra versión, sí
+    private static void lanzarSiConflicto(String id, Long version, Long versionActual) {
+        if (versionActual != null) {
+            throw new ConflictoVersionException(id, version, versionActual);
+        }
+    }
+
+    /**
+     * Inserta un lote de productos nuevos de una vez (importación masiva).
+     * En SQL es una transacción con INSERT agrupados en lotes JDBC; en Mongo, un
+     * bulkWrite desordenado. Si en Mongo fallan algunos documentos se lanza
+     * {@link LoteIncompletoException} con los que sí se insertaron.
+     * Se publica un {@link ProductoCambiado} por cada producto que queda insertado, dentro
+     * de la transacción (en modo CQRS sus filas de salida se confirman con el lote).
+     *
+     * @return número de productos insertados
+     */
+    @Transactional
+    public int guardarLote(List<Producto> lote) {
+        if (lote.isEmpty()) {
+            return 0;
+        }
+        try {
+            if (isMongo()) {
+                if (productoMongoRepository == null) throw new IllegalStateException("ProductoMongoRepository no disponible (perfil mongo mal configurado)");
+
+                List<ProductoMongo> documentos = new ArrayList<>(lote.size());
+                for (Producto p : lote) {
+                    ProductoMongo pm = new ProductoMongo();
+                    // _id generado aquí para conocerlo sin releer (el bulk insert no lo devuelve)
+                    pm.setId(new ObjectId().toHexString());
+                    pm.setNombre(p.getNombre());
+                    pm.setDescripcion(p.getDescripcion());
+                    pm.setPrecio(p.getPrecio());
+                    // el bulk insert no inicializa @Version
+                    pm.setVersion(0L);
+                    documentos.add(pm);
+                }
+                try {
+                    int insertados = productoMongoRepository.insertarLote(documentos);
+                    publicarAltas(documentos, Set.of());
+                    return insertados;
+                } catch (BulkOperationException e) {
+                    Set<Integer> fallidos = new HashSet<>();
+                    e.getErrors().forEach(error -> fallidos.add(error.getIndex()));
+                    publicarAltas(documentos, fallidos);
+
+                    int insertados = e.getResult().getInsertedCount();
+                    String primerError = e.getErrors().isEmpty() ? e.getMessage() : e.getErrors().get(0).getMessage();
+                    throw new LoteIncompletoException(insertados,
+                            e.getErrors().size() + " documentos rechazados: " + primerError, e);
+                }
+            }
+
+            if (productoRepository == null) throw new IllegalStateException("ProductoRepository no disponible (perfil sql mal configurado)");
+            int insertados = productosSql.insertarLote(lote);
+            for (Producto p : lote) {
+                eventos.publishEvent(ProductoCambiado.alta(String.valueOf(p.getId()), p.getNombre(),
+                        p.getDescripcion(), p.getPrecio(), p.getVersion()));
+            }
+            return insertados;
+        } finally {
+            // aunque falle, parte del lote puede haberse escrito
+            invalidarCaches(List.of());
+        }
+    }
+
+    private void publicarAltas(List<ProductoMongo> documentos, Set<Integer> fallidos) {
+        for (int i = 0; i < documentos.size(); i++) {
+            if (!fallidos.contains(i)) {
+                ProductoMongo pm = documentos.get(i);
+                eventos.publishEvent(ProductoCambiado.alta(pm.getId(), pm.getNombre(),
+                        pm.getDescripcion(), pm.getPrecio(), pm.getVersion()));
+            }
+        }
+    }
+
+    /**
+     * Quita de la caché los productos tocados y todas las páginas del listado, ya sean datos o
+     * tabla renderizada (cualquier alta, cambio o baja puede mover filas entre páginas) y
+     * cambia la versión del catálogo.
+     * Se invalida ya y otra vez al terminar la transacción, para que una lectura
+     * concurrente que vio los datos antiguos antes del commit no los deje cacheados.
+     */
+    private void invalidarCaches(Collection<String> ids) {
+        invalidarAhora(ids);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidarAhora(ids);
+                }
+            });
+        }
+    }
+
+    /** Para el proyector CQRS: lo que se lee de Mongo ha cambiado. */
+    void invalidarLecturas(Collection<String> ids) {
+        invalidarAhora(ids);
+    }
+
+    private void invalidarCaches(String id) {
+        invalidarCaches(Collections.singleton(id));
+    }
+
+    private void invalidarAhora(Collection<String> ids) {
+        ids.forEach(id -> cacheProductos.invalidar(claveProducto(id)));
+        ids.forEach(id -> agrupadorProductos.olvidar(claveProducto(id)));
+        agrupadorListado.olvidarTodo();
+        cachePaginas.invalidarTodo();
+        cacheTabla.invalidarTodo();
+        versionCatalogo.incrementar();
     }
 }
\ No newline at end of file
@@ -0,0 +1,304 @@
+package com.sistemagestionapp.demojava.service;
+
+import com.sistemagestionapp.demojava.model.Producto;
+import com.sistemagestionapp.demojava.model.SalidaProducto;
+import com.sistemagestionapp.demojava.repository.ProductoRepository;
+import com.sistemagestionapp.demojava.repository.ProductosFragmentados;
+import com.sistemagestionapp.demojava.repository.SalidaProductoRepository;
+import com.sistemagestionapp.demojava.repository.mongo.ProductoMongoRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Modo CQRS ({@code app.cqrs.enabled=true}, con un perfil SQL y Mongo activo): SQL es la
+ * fuente de verdad y todas las escrituras siguen yendo a {@link ProductoRepository}, pero
+ * el listado, las páginas y el detalle se leen de una copia en Mongo (colección productos,
+ * _id = id SQL en texto). Así las lecturas escalan con réplicas de Mongo sin cargar el
+ * primario SQL.
+ *
+ * <p>Cada {@link ProductoCambiado} deja una fila en {@code salida_productos} (outbox) dentro
+ * de la misma transacción que el cambio. Un hilo la recoge en lotes de
+ * {@code app.cqrs.tamano-lote}: relee de SQL el estado actual de esos productos, lo escribe
+ * en Mongo en un bulkWrite y borra las filas. Como se copia el estado y no el evento, da
+ * igual el orden y repetir un lote es inofensivo. Las filas se leen con FOR UPDATE y el
+ * bloqueo dura hasta que están copiadas, así que con varias instancias los lotes no se
+ * pisan. El hilo se despierta al confirmarse cada cambio y, si no, cada
+ * {@code app.cqrs.intervalo-ms}; las lecturas van unos milisegundos por detrás
+ * (app.cqrs.retraso).</p>
+ *
+ * <p>Reconstrucción: con {@code app.cqrs.reconstruir=true}, o si la colección está vacía y
+ * SQL no, al arrancar se copia todo el catálogo y se borra lo que sobre en Mongo. Con
+ * varias instancias conviene lanzarla solo en una.</p>
+ */
+@Service
+public class ProyeccionProductosService {
+
+    private static final Logger log = LoggerFactory.getLogger(ProyeccionProductosService.class);
+
+    private final boolean activa;
+    private final ProductoService productoService;
+    private final ProductoRepository productoRepository;            // null si mongo
+    private final ProductoMongoRepository productoMongoRepository;  // null si h2
+    private final SalidaProductoRepository salidaRepository;        // null si mongo
+    private final TransactionTemplate transaccion;                  // lectura-escritura: lee del primario
+    private final int tamanoLote;
+    private final int tamanoFetch;
+    private final long intervaloMs;
+    private final boolean reconstruir;
+
+    private final Object aviso = new Object();
+    private boolean avisado;   // con el monitor de aviso
+    private volatile boolean cerrando;
+    private volatile long pendienteMasAntiguo;  // cota del creado de lo pendiente (0 = nada)
+
+    private final Timer retraso;
+    private final LongAdder proyectados = new LongAdder();
+    private final LongAdder errores = new LongAdder();
+    private Thread hilo;
+
+    public ProyeccionProductosService(ProductoService productoService,
+                                      ObjectProvider<ProductoRepository> productoRepository,
+                                      ObjectProvider<ProductoMongoRepository> productoMongoRepository,
+                                      ObjectProvider<SalidaProductoRepository> salidaRepository,
+                                      ObjectProvider<PlatformTransactionManager> transactionManager,
+                                      ProductosFragmentados fragmentos,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${app.cqrs.enabled:false}") boolean activa,
+                                      @Value("${app.cqrs.tamano-lote:500}") int tamanoLote,
+                                      @Value("${app.cqrs.intervalo-ms:500}") long intervaloMs,
+                                      @Value("${app.cqrs.reconstruir:false}") boolean reconstruir,
+                                      @Value("${app.exportacion.fetch-size:500}") int tamanoFetch) {
+        this.activa = activa;
+        this.productoService = productoService;
+        this.productoRepository = productoRepository.getIfAvailable();
+        this.productoMongoRepository = productoMongoRepository.getIfAvailable();
+        this.salidaRepository = salidaRepository.getIfAvailable();
+        PlatformTransactionManager tm = transactionManager.getIfAvailable();
+        if (activa && (this.productoRepository == null || this.salidaRepository == null
+                || this.productoMongoRepository == null || tm == null)) {
+            throw new IllegalStateException("app.cqrs.enabled=true necesita un perfil SQL (mysql/postgres) con Mongo activo");
+        }
+        if (activa && fragmentos.isActivo()) {
+            // la salida y el proyector solo conocen el fragmento 0
+            throw new IllegalStateException("app.cqrs.enabled=true no admite productos en varios fragmentos (app.db.fragmentos.hosts)");
+        }
+        this.transaccion = tm == null ? null : new TransactionTemplate(tm);
+        this.tamanoLote = Math.max(1, tamanoLote);
+        this.tamanoFetch = Math.max(1, tamanoFetch);
+        this.intervaloMs = Math.max(1, intervaloMs);
+        this.reconstruir = reconstruir;
+        this.retraso = Timer.builder("app.cqrs.retraso")
+                .description("Desde que se confirma un cambio hasta que está en la copia de lectura")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * Escribe la fila de salida en la transacción del cambio (por eso es un @EventListener
+     * normal y no transaccional): si el cambio se deshace, la fila también.
+     */
+    @EventListener
+    public void registrarSalida(ProductoCambiado cambio) {
+        if (!activa) {
+            return;
+        }
+        salidaRepository.save(new SalidaProducto(cambio.id(), System.currentTimeMillis()));
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            avisar();
+        } else if (!TransactionSynchronizationManager.hasResource(aviso)) {
+            // un solo aviso por transacción, aunque sea una importación de miles de altas
+            TransactionSynchronizationManager.bindResource(aviso, Boolean.TRUE);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    avisar();
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(aviso);
+                }
+            });
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        if (!activa) {
+            return;
+        }
+        hilo = new Thread(this::bucle, "proyector-productos");
+        hilo.setDaemon(true);
+        hilo.start();
+        log.info("✅ Modo CQRS: escrituras en SQL, lecturas de Mongo (lotes de {}, sondeo cada {} ms)",
+                tamanoLote, intervaloMs);
+    }
+
+    @PreDestroy
+    public void parar() throws InterruptedException {
+        cerrando = true;
+        avisar();
+        if (hilo != null) {
+            hilo.join(TimeUnit.SECONDS.toMillis(30));
+        }
+    }
+
+    private void bucle() {
+        try {
+            if (reconstruir || (productoMongoRepository.count() == 0 && productoRepository.count() > 0)) {
+                reconstruir();
+            }
+        } catch (RuntimeException e) {
+            errores.increment();
+            log.error("❌ No se pudo reconstruir la copia de lectura de productos", e);
+        }
+        while (!cerrando) {
+            int proyectadas = 0;
+            try {
+                proyectadas = proyectarLote();
+            } catch (RuntimeException e) {
+                // las filas siguen en la salida: se reintenta en el siguiente intervalo
+                errores.increment();
+                log.warn("❌ Error proyectando productos a Mongo: {}", e.getMessage());
+            }
+            if (proyectadas < tamanoLote) {
+                esperarAviso();
+            }
+        }
+    }
+
+    /**
+     * Copia a Mongo los productos de las filas de salida más antiguas y las borra, todo en
+     * una transacción que tiene las filas bloqueadas.
+     *
+     * @return número de filas procesadas
+     */
+    private int proyectarLote() {
+        List<SalidaProducto> filas = transaccion.execute(estado -> {
+            List<SalidaProducto> pendientes = salidaRepository.findByOrderByIdAsc(PageRequest.of(0, tamanoLote));
+            if (pendientes.isEmpty()) {
+                return pendientes;
+            }
+            Set<String> ids = new LinkedHashSet<>();
+            List<Long> numericos = new ArrayList<>();
+            for (SalidaProducto fila : pendientes) {
+                if (ids.add(fila.getProductoId())) {
+                    numericos.add(Long.valueOf(fila.getProductoId()));
+                }
+            }
+            List<Producto> vigentes = productoRepository.findAllById(numericos);
+            Set<String> borrados = new HashSet<>(ids);
+            vigentes.forEach(p -> borrados.remove(String.valueOf(p.getId())));
+
+            productoMongoRepository.proyectar(vigentes, borrados, new Date());
+            salidaRepository.deleteAllByIdInBatch(pendientes.stream().map(SalidaProducto::getId).toList());
+            return pendientes;
+        });
+
+        // con un lote incompleto no queda nada; si no, lo pendiente es posterior a este lote
+        pendienteMasAntiguo = filas.size() < tamanoLote ? 0
+                : filas.stream().mapToLong(SalidaProducto::getCreado).max().orElse(0);
+        if (filas.isEmpty()) {
+            return 0;
+        }
+        // otra lectura pudo cachear la copia antigua entre el commit en SQL y ahora
+        productoService.invalidarLecturas(filas.stream().map(SalidaProducto::getProductoId).distinct().toList());
+        long ahora = System.currentTimeMillis();
+        for (SalidaProducto fila : filas) {
+            retraso.record(Math.max(0, ahora - fila.getCreado()), TimeUnit.MILLISECONDS);
+        }
+        proyectados.add(filas.size());
+        return filas.size();
+    }
+
+    /**
+     * Copia todo el catálogo de SQL (del primario, en streaming) y después borra de Mongo los
+     * documentos que no se han tocado: productos que ya no existen o que no vienen de SQL.
+     */
+    private void reconstruir() {
+        long t0 = System.nanoTime();
+        Date inicio = new Date();
+        long[] copiados = {0};
+        transaccion.executeWithoutResult(estado -> {
+            List<Producto> lote = new ArrayList<>(tamanoLote);
+            productoRepository.recorrer(null, tamanoFetch, p -> {
+                lote.add(p);
+                if (lote.size() == tamanoLote) {
+                    productoMongoRepository.proyectar(lote, List.of(), inicio);
+                    copiados[0] += lote.size();
+                    lote.clear();
+                }
+            });
+            productoMongoRepository.proyectar(lote, List.of(), inicio);
+            copiados[0] += lote.size();
+        });
+        long retirados = productoMongoRepository.borrarProyectadosAntesDe(inicio);
+        productoService.invalidarLecturas(List.of());
+        log.info("✅ Copia de lectura de productos reconstruida: {} copiados, {} retirados en {} ms",
+                copiados[0], retirados, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0));
+    }
+
+    private void avisar() {
+        synchronized (aviso) {
+            avisado = true;
+            aviso.notifyAll();
+        }
+    }
+
+    private void esperarAviso() {
+        synchronized (aviso) {
+            try {
+                if (!avisado && !cerrando) {
+                    aviso.wait(intervaloMs);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cerrando = true;
+            }
+            avisado = false;
+        }
+    }
+
+    public boolean isActiva() {
+        return activa;
+    }
+
+    /**
+     * Segundos que lleva esperando lo que queda en la salida, aproximado por la última fila
+     * del último lote completo (0 si el último lote la vació).
+     */
+    public double getSegundosPendiente() {
+        long creado = pendienteMasAntiguo;
+        return creado == 0 ? 0 : Math.max(0, System.currentTimeMillis() - creado) / 1000.0;
+    }
+
+    public long getProyectados() {
+        return proyectados.sum();
+    }
+
+    public long getErrores() {
+        return errores.sum();
+    }
+}
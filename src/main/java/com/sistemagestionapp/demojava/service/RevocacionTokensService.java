@@ -0,0 +1,141 @@
+package com.sistemagestionapp.demojava.service;
+
+import com.sistemagestionapp.demojava.model.TokenRevocado;
+import com.sistemagestionapp.demojava.model.mongo.TokenRevocadoMongo;
+import com.sistemagestionapp.demojava.repository.TokenRevocadoRepository;
+import com.sistemagestionapp.demojava.repository.mongo.TokenRevocadoMongoRepository;
+import com.sistemagestionapp.demojava.security.FiltroTokenSesion;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lista de sesiones con token cerradas antes de caducar (modo app.auth.modo=token).
+ *
+ * <p>Comprobar si un token está revocado no consulta la base de datos: se mira un mapa en
+ * memoria (id de sesión → caducidad) que solo guarda los logouts cuyo token aún no ha
+ * caducado, así que se queda pequeño. Cada logout se guarda en la tabla / colección
+ * tokens_revocados y cada {@code app.auth.token.revocaciones-segundos} se leen las de los
+ * demás nodos. En el nodo donde se hace el logout es inmediato; en el resto tarda como
+ * mucho ese intervalo.</p>
+ */
+@Service
+public class RevocacionTokensService implements FiltroTokenSesion.Revocaciones {
+
+    private static final Logger log = LoggerFactory.getLogger(RevocacionTokensService.class);
+
+    private final TokenRevocadoRepository repository;            // null si mongo
+    private final TokenRevocadoMongoRepository mongoRepository;  // null si sql
+    private final String dbEngine;
+    private final boolean activo;
+    private final long intervaloSegundos;
+
+    private final ConcurrentHashMap<Long, Long> revocados = new ConcurrentHashMap<>();
+    private ScheduledExecutorService programador;
+
+    public RevocacionTokensService(ObjectProvider<TokenRevocadoRepository> repository,
+                                   ObjectProvider<TokenRevocadoMongoRepository> mongoRepository,
+                                   @Value("${app.db.engine:h2}") String dbEngine,
+                                   @Value("${app.auth.modo:sesion}") String modo,
+                                   @Value("${app.auth.token.revocaciones-segundos:5}") long intervaloSegundos) {
+        this.repository = repository.getIfAvailable();
+        this.mongoRepository = mongoRepository.getIfAvailable();
+        this.dbEngine = (dbEngine == null ? "h2" : dbEngine.toLowerCase());
+        this.activo = "token".equalsIgnoreCase(modo);
+        this.intervaloSegundos = Math.max(1, intervaloSegundos);
+    }
+
+    private boolean isMongo() {
+        return "mongo".equalsIgnoreCase(dbEngine);
+    }
+
+    /** Carga las revocaciones vigentes y programa la lectura periódica (solo en modo token). */
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        if (!activo) {
+            return;
+        }
+        programador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "revocaciones-token");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        sincronizarSinFallar();
+        programador.scheduleWithFixedDelay(this::sincronizarSinFallar,
+                intervaloSegundos, intervaloSegundos, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void parar() {
+        if (programador != null) {
+            programador.shutdownNow();
+        }
+    }
+
+    /**
+     * Revoca la sesión {@code id} hasta {@code expira} (segundos epoch): en este nodo al
+     * momento y en los demás cuando lean la base de datos.
+     */
+    @Override
+    public void revocar(long id, long expira) {
+        revocados.put(id, expira);
+        if (isMongo()) {
+            if (mongoRepository == null) throw new IllegalStateException("TokenRevocadoMongoRepository no disponible");
+            mongoRepository.save(new TokenRevocadoMongo(id, new Date(expira * 1000)));
+        } else {
+            if (repository == null) throw new IllegalStateException("TokenRevocadoRepository no disponible");
+            repository.save(new TokenRevocado(id, expira));
+        }
+    }
+
+    @Override
+    public boolean estaRevocado(long id) {
+        return revocados.containsKey(id);
+    }
+
+    public int getRevocados() {
+        return revocados.size();
+    }
+
+    /**
+     * Añade las revocaciones de los demás nodos y olvida las caducadas. Se añade en vez de
+     * sustituir el mapa para no perder una revocación local que se guardó mientras se leía.
+     */
+    void sincronizar() {
+        long ahora = System.currentTimeMillis() / 1000;
+        if (isMongo()) {
+            if (mongoRepository == null) return;
+            // los caducados los borra el índice TTL
+            for (TokenRevocadoMongo revocado : mongoRepository.findByExpiraAfter(new Date(ahora * 1000))) {
+                revocados.put(revocado.getId(), revocado.getExpira().getTime() / 1000);
+            }
+        } else {
+            if (repository == null) return;
+            repository.borrarCaducados(ahora);
+            for (TokenRevocado revocado : repository.findByExpiraGreaterThan(ahora)) {
+                revocados.put(revocado.getId(), revocado.getExpira());
+            }
+        }
+        revocados.values().removeIf(expira -> expira <= ahora);
+    }
+
+    private void sincronizarSinFallar() {
+        try {
+            sincronizar();
+        } catch (Exception e) {
+            // se sigue con lo que ya hay en memoria y se reintenta en la siguiente vuelta
+            log.error("❌ No se pudieron leer los tokens revocados: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -1,47 +1,110 @@
 package com.sistemagestionapp.demojava.service;
 
+import com.sistemagestionapp.demojava.cache.AgrupadorLlamadas;
+import com.sistemagestionapp.demojava.cache.CacheLocal;
+import com.sistemagestionapp.demojava.cache.FiltroBloom;
+import com.sistemagestionapp.demojava.model.CredencialesUsuario;
 import com.sistemagestionapp.demojava.model.Usuario;
 import com.sistemagestionapp.demojava.model.mongo.UsuarioMongo;
 import com.sistemagestionapp.demojava.repository.UsuarioRepository;
 import com.sistemagestionapp.demojava.repository.mongo.UsuarioMongoRepository;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
 @Service
-public class UsuarioService implements UserDetailsService {
+// latencia de cada método público, etiquetada con class y method
+@Timed(value = "app.servicio", histogram = true)
+public class UsuarioService implements UserDetailsService, UserDetailsPasswordService {
+
+    private static final Logger log = LoggerFactory.getLogger(UsuarioService.class);
+
+    // Todos los usuarios tienen el mismo rol: la lista se crea una sola vez
+    private static final List<GrantedAuthority> ROLES_USUARIO = List.of(new SimpleGrantedAuthority("ROLE_USER"));
 
     private final UsuarioRepository usuarioRepository;            // null si mongo
     private final UsuarioMongoRepository usuarioMongoRepository;  // null si sql
     private final ObjectProvider<PasswordEncoder> passwordEncoderProvider;
     private final String dbEngine;
+    private final CacheLocal<String, CredencialesUsuario> cacheUsuarios;
+    private final AgrupadorLlamadas<String, CredencialesUsuario> agrupadorUsuarios;
+    private final FiltroBloom filtroCorreos;
+
+    // hasta que no se ha cargado el filtro entero, sus "no está" no son fiables
+    private volatile boolean filtroCargado;
 
     public UsuarioService(
             ObjectProvider<UsuarioRepository> usuarioRepository,
             ObjectProvider<UsuarioMongoRepository> usuarioMongoRepository,
             ObjectProvider<PasswordEncoder> passwordEncoderProvider,
-            @Value("${app.db.engine:h2}") String dbEngine
+            @Value("${app.db.engine:h2}") String dbEngine,
+            @Qualifier("cacheUsuarios") CacheLocal<String, CredencialesUsuario> cacheUsuarios,
+            @Qualifier("agrupadorUsuarios") AgrupadorLlamadas<String, CredencialesUsuario> agrupadorUsuarios,
+            FiltroBloom filtroCorreos
     ) {
         this.usuarioRepository = usuarioRepository.getIfAvailable();
         this.usuarioMongoRepository = usuarioMongoRepository.getIfAvailable();
         this.passwordEncoderProvider = passwordEncoderProvider;
         this.dbEngine = (dbEngine == null ? "h2" : dbEngine.toLowerCase());
+        this.cacheUsuarios = cacheUsuarios;
+        this.agrupadorUsuarios = agrupadorUsuarios;
+        this.filtroCorreos = filtroCorreos;
     }
 
     private boolean isMongo() {
         return "mongo".equalsIgnoreCase(dbEngine);
     }
 
+    // Con la collation por defecto de MySQL "Bob@x" y "bob@x" son el mismo usuario
+    private boolean isMysql() {
+        return "mysql".equalsIgnoreCase(dbEngine);
+    }
+
+    /**
+     * Se consulta primero la caché de credenciales; solo en un fallo se va a SQL o Mongo, y
+     * los logins simultáneos del mismo correo (o un ataque contra él) comparten esa consulta.
+     * Sin @Transactional para que un acierto no abra transacción (findByCorreo ya es readOnly).
+     * Siempre se devuelve un User nuevo: Spring Security le borra la contraseña tras el login.
+     *
+     * La caché usa el correo en minúsculas, como {@link #invalidarUsuario}, para que un cambio
+     * de contraseña invalide también lo cargado con otras mayúsculas. Donde la base de datos sí
+     * las distingue, lo que se encuentra para otra variante no vale y se consulta el correo tal
+     * cual. El agrupador, en cambio, usa el correo exacto: solo se comparte una consulta que
+     * busca lo mismo, y el "no encontrado" de una variante no le llega a otra.
+     */
     @Override
-    @Transactional(readOnly = true)
     public UserDetails loadUserByUsername(String correo) throws UsernameNotFoundException {
+        CredencialesUsuario credenciales = cacheUsuarios.obtener(claveCache(correo),
+                clave -> agrupadorUsuarios.ejecutar(correo, this::cargarCredenciales));
+        if (!mismoUsuario(credenciales.correo(), correo)) {
+            credenciales = cargarCredenciales(correo);
+        }
+        return new User(credenciales.correo(), credenciales.passwordHash(), ROLES_USUARIO);
+    }
+
+    private CredencialesUsuario cargarCredenciales(String correo) {
 
         if (isMongo()) {
             if (usuarioMongoRepository == null) {
@@ -51,10 +114,7 @@ public class UsuarioService implements UserDetailsService {
             UsuarioMongo u = usuarioMongoRepository.findByCorreo(correo)
                     .orElseThrow(() -> new UsernameNotFoundException("Usuario no encontrado en Mongo: " + correo));
 
-            return User.withUsername(u.getCorreo())
-                    .password(u.getPassword())
-                    .roles("USER")
-                    .build();
+            return new CredencialesUsuario(u.getCorreo(), u.getPassword());
         }
 
         if (usuarioRepository == null) {
@@ -64,14 +124,94 @@ public class UsuarioService implements UserDetailsService {
         Usuario u = usuarioRepository.findByCorreo(correo)
                 .orElseThrow(() -> new UsernameNotFoundException("Usuario no encontrado en SQL: " + correo));
 
-        return User.withUsername(u.getCorreo())
-                .password(u.getPassword())
-                .roles("USER")
-                .build();
+        return new CredencialesUsuario(u.getCorreo(), u.getPassword());
+    }
+
+    /**
+     * Lo llama DaoAuthenticationProvider tras un login correcto cuando el hash guardado
+     * tiene un coste BCrypt menor que el configurado: se guarda el hash nuevo y se
+     * invalida la caché de login de ese usuario.
+     */
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        String correo = user.getUsername();
+
+        if (isMongo()) {
+            if (usuarioMongoRepository == null) throw new IllegalStateException("UsuarioMongoRepository no disponible");
+            usuarioMongoRepository.findByCorreo(correo).ifPresent(u -> {
+                u.setPassword(newPassword);
+                usuarioMongoRepository.save(u);
+            });
+        } else {
+            if (usuarioRepository == null) throw new IllegalStateException("UsuarioRepository no disponible");
+            usuarioRepository.findByCorreo(correo).ifPresent(u -> {
+                u.setPassword(newPassword);
+                usuarioRepository.save(u);
+            });
+        }
+
+        invalidarUsuario(correo);
+        return User.withUserDetails(user).password(newPassword).build();
+    }
+
+    /**
+     * Saca de la caché de login a un usuario que se ha dado de alta o ha cambiado.
+     */
+    public void invalidarUsuario(String correo) {
+        if (correo != null) {
+            cacheUsuarios.invalidar(claveCache(correo));
+            // las cargas en curso pueden ser de cualquier variante del correo
+            agrupadorUsuarios.olvidarTodo();
+        }
+    }
+
+    private static String claveCache(String correo) {
+        return correo == null ? "" : correo.toLowerCase(Locale.ROOT);
+    }
+
+    private boolean mismoUsuario(String guardado, String tecleado) {
+        return guardado.equals(tecleado) || (isMysql() && guardado.equalsIgnoreCase(tecleado));
     }
 
+    /**
+     * Carga en el filtro de Bloom todos los correos existentes, recorriéndolos en streaming
+     * (solo la columna correo, sin entidades). Mientras no termina, las comprobaciones
+     * van siempre a la base de datos.
+     */
+    @EventListener(ApplicationReadyEvent.class)
     @Transactional(readOnly = true)
+    public void cargarFiltroCorreos() {
+        LongAdder total = new LongAdder();
+        if (isMongo()) {
+            if (usuarioMongoRepository == null) return;
+            try (Stream<UsuarioMongo> usuarios = usuarioMongoRepository.streamCorreos()) {
+                usuarios.forEach(u -> {
+                    anadirAlFiltro(u.getCorreo());
+                    total.increment();
+                });
+            }
+        } else {
+            if (usuarioRepository == null) return;
+            try (Stream<String> correos = usuarioRepository.streamCorreos()) {
+                correos.forEach(correo -> {
+                    anadirAlFiltro(correo);
+                    total.increment();
+                });
+            }
+        }
+        filtroCargado = true;
+        log.info("ℹ️ Filtro de correos cargado con {} usuarios ({} bits, {} hashes)",
+                total.sum(), filtroCorreos.getNumBits(), filtroCorreos.getNumHashes());
+    }
+
+    /**
+     * Si el filtro de Bloom dice que el correo no está, se responde sin consultar la base de datos.
+     */
     public boolean existePorCorreo(String correo) {
+        if (filtroCargado && !filtroCorreos.puedeContener(claveFiltro(correo))) {
+            return false;
+        }
         if (isMongo()) {
             if (usuarioMongoRepository == null) throw new IllegalStateException("UsuarioMongoRepository no disponible");
             return usuarioMongoRepository.existsByCorreo(correo);
@@ -80,32 +220,67 @@ public class UsuarioService implements UserDetailsService {
         return usuarioRepository.existsByCorreo(correo);
     }
 
-    @Transactional
-    public void registrarUsuario(Usuario usuario) {
+    /**
+     * Da de alta un usuario. La unicidad del correo la garantiza la restricción única
+     * (columna unique en SQL, índice único en Mongo): se inserta directamente y un
+     * duplicado se detecta por la excepción, sin el "comprobar y luego insertar" que
+     * dejaba una carrera entre dos registros simultáneos.
+     *
+     * Solo cuando el filtro de Bloom dice que el correo puede existir se pregunta antes,
+     * para no gastar un hash BCrypt en un duplicado evidente.
+     *
+     * Sin @Transactional: el save lleva su propia transacción y así una violación de la
+     * restricción no deja marcada como rollback-only una transacción exterior.
+     *
+     * @return true si se ha creado, false si ya existía un usuario con ese correo
+     */
+    public boolean registrarUsuario(Usuario usuario) {
         PasswordEncoder encoder = passwordEncoderProvider.getIfAvailable();
         if (encoder == null) {
             throw new IllegalStateException("No hay PasswordEncoder disponible. Revisa PasswordConfig/WebSecurityConfig.");
         }
 
+        if (existePorCorreo(usuario.getCorreo())) {
+            return false;
+        }
+
         // ✅ en registro siempre llega password en claro
         usuario.setPassword(encoder.encode(usuario.getPassword()));
 
-        if (isMongo()) {
-            if (usuarioMongoRepository == null) throw new IllegalStateException("UsuarioMongoRepository no disponible");
-            if (usuarioMongoRepository.existsByCorreo(usuario.getCorreo())) return;
+        try {
+            if (isMongo()) {
+                if (usuarioMongoRepository == null) throw new IllegalStateException("UsuarioMongoRepository no disponible");
 
-            UsuarioMongo um = new UsuarioMongo();
-            um.setNombre(usuario.getNombre());
-            um.setCorreo(usuario.getCorreo());
-            um.setPassword(usuario.getPassword());
+                UsuarioMongo um = new UsuarioMongo();
+                um.setNombre(usuario.getNombre());
+                um.setCorreo(usuario.getCorreo());
+                um.setPassword(usuario.getPassword());
 
-            usuarioMongoRepository.save(um);
-            return;
+                usuarioMongoRepository.insert(um);
+            } else {
+                if (usuarioRepository == null) throw new IllegalStateException("UsuarioRepository no disponible");
+                usuarioRepository.save(usuario);
+            }
+        } catch (DataIntegrityViolationException e) {
+            // DuplicateKeyException (Mongo) también hereda de aquí
+            anadirAlFiltro(usuario.getCorreo());
+            return false;
         }
 
-        if (usuarioRepository == null) throw new IllegalStateException("UsuarioRepository no disponible");
-        if (usuarioRepository.existsByCorreo(usuario.getCorreo())) return;
+        anadirAlFiltro(usuario.getCorreo());
+        invalidarUsuario(usuario.getCorreo());
+        return true;
+    }
+
+    private void anadirAlFiltro(String correo) {
+        if (correo != null) {
+            filtroCorreos.anadir(claveFiltro(correo));
+        }
+    }
 
-        usuarioRepository.save(usuario);
+    // En minúsculas: si la base de datos compara sin distinguir mayúsculas (MySQL),
+    // el filtro nunca debe decir "no está" para una variante del mismo correo
+    private static String claveFiltro(String correo) {
+        return correo == null ? "" : correo.toLowerCase(Locale.ROOT);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,63 @@
+package com.sistemagestionapp.demojava.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Contador de versión de todo el catálogo: cambia con cada alta, modificación o baja
+ * de productos (lo incrementa {@link ProductoService}). Con él se construyen los ETag
+ * y el Last-Modified de los listados sin tocar la base de datos.
+ *
+ * <p>El ETag lleva además un identificador de esta instancia: tras un reinicio, o si el
+ * balanceador manda la petición a otra instancia, el ETag no coincide y se responde 200.</p>
+ *
+ * <p>Los cambios hechos desde otra instancia no incrementan este contador. Para que un 304
+ * no los oculte indefinidamente, ETag y Last-Modified cambian también cada
+ * {@code app.cache.paginas.ttl-segundos}, lo que tardan en caducar aquí las páginas
+ * cacheadas: un cliente ve los cambios de otras instancias con el mismo retraso que las
+ * cachés locales, no más.</p>
+ */
+@Component
+public class VersionCatalogo {
+
+    private final String instancia = Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+    private final AtomicLong version = new AtomicLong();
+    private final long periodoMs;
+    // en ms; al arrancar no sabemos cuándo cambió el catálogo por última vez
+    private volatile long ultimaModificacion = System.currentTimeMillis();
+
+    public VersionCatalogo(@Value("${app.cache.paginas.ttl-segundos:60}") long periodoSegundos) {
+        // con la caché de páginas desactivada (0) se revalida cada segundo
+        this.periodoMs = TimeUnit.SECONDS.toMillis(Math.max(1, periodoSegundos));
+    }
+
+    void incrementar() {
+        version.incrementAndGet();
+        ultimaModificacion = System.currentTimeMillis();
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    /** Última escritura en esta instancia o, si es posterior, el inicio del periodo actual. */
+    public long getUltimaModificacion() {
+        return Math.max(ultimaModificacion, periodo(System.currentTimeMillis()) * periodoMs);
+    }
+
+    /**
+     * ETag fuerte de los listados en la versión actual. Cada URL (página, orden, tamaño)
+     * tiene su propia entrada en la caché del navegador, así que no hace falta incluirlos.
+     */
+    public String etag() {
+        return "\"" + instancia + "-" + version.get() + "-" + periodo(System.currentTimeMillis()) + "\"";
+    }
+
+    private long periodo(long ahoraMs) {
+        return ahoraMs / periodoMs;
+    }
+}